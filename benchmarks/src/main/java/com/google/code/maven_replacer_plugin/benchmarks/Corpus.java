@@ -0,0 +1,109 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.code.maven_replacer_plugin.Replacement;
+
+/**
+ * Synthetic, reproducible inputs for the benchmarks. The same sizes and token counts always
+ * produce the same content, so results can be compared between runs and between versions.
+ */
+final class Corpus {
+	static final String CHANGED_VALUE = "change me";
+	private static final long SEED = 20190101L;
+	private static final String[] WORDS = { "lorem", "ipsum", "dolor", "sit", "amet", "consectetur",
+			"adipiscing", "elit", "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore", "et" };
+
+	private Corpus() {
+	}
+
+	static String token(int index) {
+		return "@token" + index + "@";
+	}
+
+	static String value(int index) {
+		return "value" + index;
+	}
+
+	/**
+	 * Plain text of about the given size in which roughly one word in eight is one of the tokens.
+	 */
+	static String text(int size, int tokenCount) {
+		Random random = new Random(SEED);
+		StringBuilder text = new StringBuilder(size + 64);
+		int lineLength = 0;
+		while (text.length() < size) {
+			String word = random.nextInt(8) == 0 ? token(random.nextInt(tokenCount)) : WORDS[random.nextInt(WORDS.length)];
+			text.append(word);
+			lineLength += word.length() + 1;
+			if (lineLength > 80) {
+				text.append('\n');
+				lineLength = 0;
+			} else {
+				text.append(' ');
+			}
+		}
+		return text.toString();
+	}
+
+	static List<Replacement> replacements(int tokenCount, boolean regex) {
+		List<Replacement> replacements = new ArrayList<Replacement>(tokenCount);
+		for (int i = 0; i < tokenCount; i++) {
+			replacements.add(replacement(regex ? "@token" + i + "@(?!\\d)" : token(i), value(i)));
+		}
+		return replacements;
+	}
+
+	static Replacement replacement(String token, String value) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		return replacement;
+	}
+
+	static String xml(int size) {
+		Random random = new Random(SEED);
+		StringBuilder xml = new StringBuilder(size + 256);
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<people>\n");
+		for (int i = 0; xml.length() < size; i++) {
+			xml.append("  <person id=\"").append(i).append("\">\n");
+			xml.append("    <firstname>").append(WORDS[random.nextInt(WORDS.length)]).append("</firstname>\n");
+			xml.append("    <lastname>").append(random.nextBoolean() ? CHANGED_VALUE : WORDS[random.nextInt(WORDS.length)])
+					.append("</lastname>\n");
+			xml.append("  </person>\n");
+		}
+		return xml.append("</people>\n").toString();
+	}
+
+	static String json(int size) {
+		Random random = new Random(SEED);
+		StringBuilder json = new StringBuilder(size + 256);
+		json.append("{\n  \"people\": [\n");
+		for (int i = 0; json.length() < size; i++) {
+			if (i > 0) {
+				json.append(",\n");
+			}
+			json.append("    {\"id\": ").append(i);
+			json.append(", \"firstname\": \"").append(WORDS[random.nextInt(WORDS.length)]);
+			json.append("\", \"lastname\": \"").append(random.nextBoolean() ? CHANGED_VALUE : WORDS[random.nextInt(WORDS.length)]);
+			json.append("\"}");
+		}
+		return json.append("\n  ]\n}\n").toString();
+	}
+
+	/**
+	 * A token value map file with the given number of entries, with a comment every ten lines.
+	 */
+	static String tokenValueMap(int entries) {
+		StringBuilder map = new StringBuilder();
+		for (int i = 0; i < entries; i++) {
+			if (i % 10 == 0) {
+				map.append("# entries ").append(i).append(" onwards\n");
+			}
+			map.append(token(i)).append('=').append(value(i)).append('\n');
+		}
+		return map.toString();
+	}
+}
@@ -0,0 +1,57 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.JsonPathReplacer;
+import com.google.code.maven_replacer_plugin.PatternFlagsFactory;
+import com.google.code.maven_replacer_plugin.Replacement;
+import com.google.code.maven_replacer_plugin.TokenReplacer;
+
+/**
+ * Replaces a token in the values of a JSON document selected by a jsonpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonPathReplacerBenchmark {
+
+	@Param({ "4096", "1048576" })
+	public int size;
+
+	@Param({ "false", "true" })
+	public boolean regex;
+
+	private String content;
+	private Replacement replacement;
+	private JsonPathReplacer replacer;
+
+	@Setup
+	public void setUp() {
+		content = Corpus.json(size);
+		replacement = Corpus.replacement(regex ? "change\\s+me" : Corpus.CHANGED_VALUE, "changed");
+		replacement.setJsonpath("$.people[*].lastname");
+		replacer = new JsonPathReplacer(new TokenReplacer());
+	}
+
+	@Benchmark
+	public String replace(Throughput throughput) {
+		String result = replacer.replace(content, replacement, regex, PatternFlagsFactory.NO_FLAGS);
+		throughput.processed(content.length());
+		return result;
+	}
+}
@@ -0,0 +1,91 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.PatternFlagsFactory;
+import com.google.code.maven_replacer_plugin.Replacement;
+import com.google.code.maven_replacer_plugin.ReplacementEngine;
+import com.google.code.maven_replacer_plugin.ReplacementProcessor;
+import com.google.code.maven_replacer_plugin.ReplacerFactory;
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+/**
+ * Replaces a file on disk end to end, from reading it to writing the output, with each engine.
+ * The output is deleted before each invocation, so that it is always written rather than left as
+ * is for already having the replaced content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplacementProcessorBenchmark {
+	private static final String ENCODING = "UTF-8";
+
+	@Param({ "4096", "4194304" })
+	public int size;
+
+	@Param({ "5", "500" })
+	public int tokens;
+
+	@Param({ "false", "true" })
+	public boolean regex;
+
+	@Param({ "sequential", "literal", "fused" })
+	public String engine;
+
+	private File folder;
+	private String inputFile;
+	private String outputFile;
+	private List<Replacement> replacements;
+	private ReplacementProcessor processor;
+
+	@Setup
+	public void setUp() throws IOException {
+		folder = File.createTempFile("replacer", "benchmark");
+		folder.delete();
+		folder.mkdirs();
+		inputFile = new File(folder, "input.txt").getPath();
+		outputFile = new File(folder, "output.txt").getPath();
+
+		FileUtils fileUtils = new FileUtils();
+		fileUtils.writeToFile(inputFile, Corpus.text(size, tokens), ENCODING);
+		replacements = ReplacementEngine.fromName(engine).prepare(Corpus.replacements(tokens, regex), regex,
+				PatternFlagsFactory.NO_FLAGS);
+		processor = new ReplacementProcessor(fileUtils, new ReplacerFactory());
+	}
+
+	@Setup(Level.Invocation)
+	public void deleteOutput() {
+		new File(outputFile).delete();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		org.apache.commons.io.FileUtils.deleteDirectory(folder);
+	}
+
+	@Benchmark
+	public void replace(Throughput throughput) throws IOException {
+		processor.replace(replacements, regex, inputFile, outputFile, PatternFlagsFactory.NO_FLAGS, ENCODING);
+		throughput.processed(size);
+	}
+}
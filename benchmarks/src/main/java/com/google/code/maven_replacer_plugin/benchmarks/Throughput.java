@@ -0,0 +1,28 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the megabytes of input processed. JMH divides the count by the measurement time, so it
+ * shows up next to each benchmark as megabytesPerSecond.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class Throughput {
+	private static final double BYTES_PER_MEGABYTE = 1000 * 1000;
+
+	public double megabytesPerSecond;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		megabytesPerSecond = 0;
+	}
+
+	void processed(long bytes) {
+		megabytesPerSecond += bytes / BYTES_PER_MEGABYTE;
+	}
+}
@@ -0,0 +1,62 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.PatternFlagsFactory;
+import com.google.code.maven_replacer_plugin.Replacement;
+import com.google.code.maven_replacer_plugin.TokenReplacer;
+
+/**
+ * Applies every replacement to an in-memory string, one after the other, as the plugin does for each file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenReplacerBenchmark {
+
+	@Param({ "4096", "4194304" })
+	public int size;
+
+	@Param({ "5", "500" })
+	public int tokens;
+
+	@Param({ "false", "true" })
+	public boolean regex;
+
+	private String content;
+	private List<Replacement> replacements;
+	private TokenReplacer replacer;
+
+	@Setup
+	public void setUp() {
+		content = Corpus.text(size, tokens);
+		replacements = Corpus.replacements(tokens, regex);
+		replacer = new TokenReplacer();
+	}
+
+	@Benchmark
+	public String replace(Throughput throughput) {
+		String result = content;
+		for (Replacement replacement : replacements) {
+			result = replacer.replace(result, replacement, regex, PatternFlagsFactory.NO_FLAGS);
+		}
+		throughput.processed(content.length());
+		return result;
+	}
+}
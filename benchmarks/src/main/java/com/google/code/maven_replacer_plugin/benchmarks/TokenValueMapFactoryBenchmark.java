@@ -0,0 +1,75 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.Replacement;
+import com.google.code.maven_replacer_plugin.TokenValueMapCache;
+import com.google.code.maven_replacer_plugin.TokenValueMapFactory;
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+/**
+ * Loads the replacements of a token value map file, parsing it every time, as the factory's cache
+ * holds no map of more than one pair; and, separately, from a cache that holds it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenValueMapFactoryBenchmark {
+	private static final String ENCODING = "UTF-8";
+
+	@Param({ "10", "100000" })
+	public int entries;
+
+	private File mapFile;
+	private long mapSize;
+	private TokenValueMapFactory factory;
+	private TokenValueMapFactory cachingFactory;
+
+	@Setup
+	public void setUp() throws IOException {
+		mapFile = File.createTempFile("replacer", ".properties");
+		FileUtils fileUtils = new FileUtils();
+		fileUtils.writeToFile(mapFile.getPath(), Corpus.tokenValueMap(entries), ENCODING);
+		mapSize = mapFile.length();
+		factory = new TokenValueMapFactory(fileUtils, new TokenValueMapCache(1));
+		cachingFactory = new TokenValueMapFactory(fileUtils, new TokenValueMapCache(TokenValueMapCache.DEFAULT_MAX_PAIRS));
+	}
+
+	@TearDown
+	public void tearDown() {
+		mapFile.delete();
+	}
+
+	@Benchmark
+	public List<Replacement> load(Throughput throughput) throws IOException {
+		List<Replacement> replacements = factory.replacementsForFile(mapFile.getPath(), true, false, ENCODING);
+		throughput.processed(mapSize);
+		return replacements;
+	}
+
+	@Benchmark
+	public List<Replacement> loadCached(Throughput throughput) throws IOException {
+		List<Replacement> replacements = cachingFactory.replacementsForFile(mapFile.getPath(), true, false, ENCODING);
+		throughput.processed(mapSize);
+		return replacements;
+	}
+}
@@ -0,0 +1,374 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.defaultString;
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces a whole set of literal tokens in a single scan of the content.
+ *
+ * All tokens are compiled into one Aho-Corasick automaton. Where matches overlap, the token
+ * listed first wins, and each token is matched left to right without overlapping itself, which
+ * is what applying the tokens one after another with {@link String#replace} does.
+ * The one difference is that replaced text is never scanned again, so a value that contains
+ * (or combines with its surroundings into) a later token is left as is.
+ */
+public class AhoCorasickReplacer implements Replacer {
+	private static final int ROOT = 0;
+	private static final int NO_EDGE = -1;
+	private static final int NO_OUTPUT = -1;
+
+	private final String[] tokens;
+	private final String[] values;
+
+	private final char[][] edgeChars;
+	private final int[][] edgeTargets;
+	private final int[] failure;
+	private final int[] output;
+	private final int[] outputLink;
+	private final int[] depth;
+	private final int longestToken;
+
+	public AhoCorasickReplacer(List<String> tokens, List<String> values) {
+		if (tokens.size() != values.size()) {
+			throw new IllegalArgumentException("Each token requires a value");
+		}
+		this.tokens = tokens.toArray(new String[tokens.size()]);
+		this.values = new String[values.size()];
+		for (int i = 0; i < this.values.length; i++) {
+			this.values[i] = defaultString(values.get(i));
+		}
+
+		List<Map<Character, Integer>> trie = new ArrayList<Map<Character, Integer>>();
+		List<Integer> outputs = new ArrayList<Integer>();
+		List<Integer> depths = new ArrayList<Integer>();
+		trie.add(new HashMap<Character, Integer>());
+		outputs.add(NO_OUTPUT);
+		depths.add(0);
+		for (int i = 0; i < this.tokens.length; i++) {
+			if (isEmpty(this.tokens[i])) {
+				throw new IllegalArgumentException("Token or token file required");
+			}
+			int node = ROOT;
+			for (char c : this.tokens[i].toCharArray()) {
+				Integer next = trie.get(node).get(c);
+				if (next == null) {
+					next = trie.size();
+					trie.add(new HashMap<Character, Integer>());
+					outputs.add(NO_OUTPUT);
+					depths.add(depths.get(node) + 1);
+					trie.get(node).put(c, next);
+				}
+				node = next;
+			}
+			if (outputs.get(node) == NO_OUTPUT) {
+				outputs.set(node, i);
+			}
+		}
+
+		int size = trie.size();
+		this.edgeChars = new char[size][];
+		this.edgeTargets = new int[size][];
+		this.output = new int[size];
+		this.depth = new int[size];
+		for (int node = 0; node < size; node++) {
+			freezeEdges(node, trie.get(node));
+			output[node] = outputs.get(node);
+			depth[node] = depths.get(node);
+		}
+		this.failure = new int[size];
+		this.outputLink = new int[size];
+		buildFailureLinks();
+		int longest = 0;
+		for (String token : this.tokens) {
+			longest = Math.max(longest, token.length());
+		}
+		this.longestToken = longest;
+	}
+
+	private void freezeEdges(int node, Map<Character, Integer> edges) {
+		char[] chars = new char[edges.size()];
+		int i = 0;
+		for (Character c : edges.keySet()) {
+			chars[i++] = c;
+		}
+		Arrays.sort(chars);
+		int[] targets = new int[chars.length];
+		for (i = 0; i < chars.length; i++) {
+			targets[i] = edges.get(chars[i]);
+		}
+		edgeChars[node] = chars;
+		edgeTargets[node] = targets;
+	}
+
+	private void buildFailureLinks() {
+		int[] queue = new int[failure.length];
+		int head = 0;
+		int tail = 0;
+		failure[ROOT] = ROOT;
+		outputLink[ROOT] = NO_OUTPUT;
+		for (int child : edgeTargets[ROOT]) {
+			failure[child] = ROOT;
+			outputLink[child] = NO_OUTPUT;
+			queue[tail++] = child;
+		}
+
+		while (head < tail) {
+			int node = queue[head++];
+			for (int i = 0; i < edgeChars[node].length; i++) {
+				char c = edgeChars[node][i];
+				int child = edgeTargets[node][i];
+				int fallback = failure[node];
+				while (fallback != ROOT && edge(fallback, c) == NO_EDGE) {
+					fallback = failure[fallback];
+				}
+				int target = edge(fallback, c);
+				failure[child] = target == NO_EDGE ? ROOT : target;
+				outputLink[child] = output[failure[child]] != NO_OUTPUT ? failure[child] : outputLink[failure[child]];
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	private int edge(int node, char c) {
+		int index = Arrays.binarySearch(edgeChars[node], c);
+		return index < 0 ? NO_EDGE : edgeTargets[node][index];
+	}
+
+	public String replace(String content, Replacement replacement, boolean regex, int regexFlags) {
+		return replace(content);
+	}
+
+	public String replace(String content) {
+		if (isEmpty(content)) {
+			return content;
+		}
+
+		List<int[]> matches = new ArrayList<int[]>();
+		int node = ROOT;
+		for (int i = 0; i < content.length(); i++) {
+			node = step(node, content.charAt(i), i + 1, matches);
+		}
+		if (matches.isEmpty()) {
+			return content;
+		}
+
+		StringBuilder result = new StringBuilder(content.length());
+		appendReplaced(result, content, content.length(), selectMatches(matches).values());
+		return result.toString();
+	}
+
+	/**
+	 * Wraps a writer so that everything written through it has the tokens replaced on the way.
+	 * Only the characters that could still be part of a match, or whose matches could still be
+	 * decided otherwise, are held back, so memory stays bounded by the longest token, even over
+	 * runs of overlapping matches, whatever the amount written.
+	 * Closing the returned writer writes out the remaining characters and closes the wrapped writer.
+	 */
+	public Writer newWriter(Writer out) {
+		return new ReplacingWriter(out);
+	}
+
+	/**
+	 * Advances the automaton by one character, adding the matches that end at {@code end}.
+	 */
+	private int step(int node, char c, int end, List<int[]> matches) {
+		int next = edge(node, c);
+		while (next == NO_EDGE && node != ROOT) {
+			node = failure[node];
+			next = edge(node, c);
+		}
+		node = next == NO_EDGE ? ROOT : next;
+
+		for (int hit = output[node] != NO_OUTPUT ? node : outputLink[node]; hit != NO_OUTPUT; hit = outputLink[hit]) {
+			int token = output[hit];
+			matches.add(new int[] { end - tokens[token].length(), token });
+		}
+		return node;
+	}
+
+	/**
+	 * Appends the first {@code length} characters of the content, with the selected matches replaced.
+	 * The selected matches must be in order, and end within those characters.
+	 */
+	private void appendReplaced(StringBuilder result, CharSequence content, int length, Collection<int[]> selected) {
+		int position = 0;
+		for (int[] match : selected) {
+			result.append(content, position, match[0]);
+			result.append(values[match[1]]);
+			position = match[0] + tokens[match[1]].length();
+		}
+		result.append(content, position, length);
+	}
+
+	private TreeMap<Integer, int[]> selectMatches(List<int[]> matches) {
+		Collections.sort(matches, new Comparator<int[]>() {
+			public int compare(int[] left, int[] right) {
+				if (left[1] != right[1]) {
+					return left[1] < right[1] ? -1 : 1;
+				}
+				return left[0] < right[0] ? -1 : (left[0] == right[0] ? 0 : 1);
+			}
+		});
+
+		TreeMap<Integer, int[]> accepted = new TreeMap<Integer, int[]>();
+		for (int[] match : matches) {
+			int start = match[0];
+			int end = start + tokens[match[1]].length();
+			Map.Entry<Integer, int[]> before = accepted.floorEntry(start);
+			if (before != null && before.getKey() + tokens[before.getValue()[1]].length() > start) {
+				continue;
+			}
+			Map.Entry<Integer, int[]> after = accepted.ceilingEntry(start);
+			if (after != null && after.getKey() < end) {
+				continue;
+			}
+			accepted.put(start, match);
+		}
+		return accepted;
+	}
+
+	/**
+	 * The index of the first of the sorted starts from the given position.
+	 */
+	private static int firstFrom(int[] starts, int position) {
+		int low = 0;
+		int high = starts.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (starts[middle] < position) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private final class ReplacingWriter extends Writer {
+		private final Writer out;
+		private final StringBuilder pending = new StringBuilder();
+		private final List<int[]> matches = new ArrayList<int[]>();
+		private int node = ROOT;
+
+		ReplacingWriter(Writer out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(char[] buffer, int offset, int length) throws IOException {
+			for (int i = offset; i < offset + length; i++) {
+				pending.append(buffer[i]);
+				node = step(node, buffer[i], pending.length(), matches);
+			}
+			writeDecided();
+		}
+
+		/**
+		 * Writes out everything before the first match that could still be selected otherwise, and
+		 * that no selected match spans. Future matches start no earlier than the characters that
+		 * could still be part of a match, so only the matches they could overlap are undecided,
+		 * along with those whose selection follows from an undecided one: the overlapping matches
+		 * of later tokens, and later overlapping matches of the same token. Everything before is
+		 * selected as it will be however the content goes on.
+		 */
+		private void writeDecided() throws IOException {
+			int possible = pending.length() - depth[node];
+			if (possible <= 0) {
+				return;
+			}
+			TreeMap<Integer, int[]> selected = selectMatches(matches);
+			int decided = Math.min(possible, firstUndecided(possible));
+			Map.Entry<Integer, int[]> spanning = selected.lowerEntry(decided);
+			if (spanning != null && spanning.getKey() + tokens[spanning.getValue()[1]].length() > decided) {
+				decided = spanning.getKey();
+			}
+			if (decided > 0) {
+				writePending(decided, selected);
+			}
+		}
+
+		/**
+		 * The start of the first match whose selection could change with matches starting from the
+		 * given position, or that position when there is none.
+		 */
+		private int firstUndecided(int possible) {
+			int[][] byStart = matches.toArray(new int[matches.size()][]);
+			Arrays.sort(byStart, new Comparator<int[]>() {
+				public int compare(int[] left, int[] right) {
+					return left[0] < right[0] ? -1 : (left[0] == right[0] ? 0 : 1);
+				}
+			});
+			int[] starts = new int[byStart.length];
+			for (int i = 0; i < byStart.length; i++) {
+				starts[i] = byStart[i][0];
+			}
+
+			boolean[] undecided = new boolean[byStart.length];
+			int[] queue = new int[byStart.length];
+			int tail = 0;
+			for (int i = 0; i < byStart.length; i++) {
+				if (byStart[i][0] + tokens[byStart[i][1]].length() > possible) {
+					undecided[i] = true;
+					queue[tail++] = i;
+				}
+			}
+			int first = possible;
+			for (int head = 0; head < tail; head++) {
+				int[] match = byStart[queue[head]];
+				int end = match[0] + tokens[match[1]].length();
+				first = Math.min(first, match[0]);
+				for (int j = firstFrom(starts, match[0] - longestToken + 1); j < starts.length && starts[j] < end; j++) {
+					int[] other = byStart[j];
+					if (!undecided[j] && other[0] + tokens[other[1]].length() > match[0]
+							&& (other[1] > match[1] || other[1] == match[1] && other[0] > match[0])) {
+						undecided[j] = true;
+						queue[tail++] = j;
+					}
+				}
+			}
+			return first;
+		}
+
+		/**
+		 * Writes out the first {@code length} characters, with the selected matches among them replaced.
+		 */
+		private void writePending(int length, TreeMap<Integer, int[]> selected) throws IOException {
+			List<int[]> remainingMatches = new ArrayList<int[]>();
+			for (int[] match : matches) {
+				if (match[0] >= length) {
+					remainingMatches.add(new int[] { match[0] - length, match[1] });
+				}
+			}
+
+			StringBuilder result = new StringBuilder(length);
+			appendReplaced(result, pending, length, selected.headMap(length).values());
+			out.write(result.toString());
+			pending.delete(0, length);
+			matches.clear();
+			matches.addAll(remainingMatches);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			writePending(pending.length(), selectMatches(matches));
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Remembers, between builds, which files were replaced with which replacements, so that files
+ * whose input and output are unchanged since can be skipped.
+ *
+ * The state is a properties file holding a fingerprint of the replacements and, for each input
+ * file, its size, modification time and hash along with the output file's size and modification
+ * time. When the fingerprint changes every file is replaced again. Only files replaced or found
+ * up to date in the current run are kept, so files no longer selected drop out of the state.
+ * Files may be checked and recorded from several threads at once.
+ */
+public class BuildState {
+	private static final String FINGERPRINT_KEY = "fingerprint";
+	private static final String SEPARATOR = "|";
+	private static final String SEPARATOR_PATTERN = "\\|";
+	private static final String DIGEST_ALGORITHM = "SHA-1";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 8192;
+
+	private final File stateFile;
+	private final Properties previous = new Properties();
+	private final Properties current = new Properties();
+
+	public BuildState(String stateFile, String fingerprint) throws IOException {
+		this.stateFile = new File(stateFile);
+		if (this.stateFile.isFile()) {
+			InputStream input = new FileInputStream(this.stateFile);
+			try {
+				previous.load(input);
+			} finally {
+				input.close();
+			}
+		}
+		if (!fingerprint.equals(previous.getProperty(FINGERPRINT_KEY))) {
+			previous.clear();
+		}
+		current.setProperty(FINGERPRINT_KEY, fingerprint);
+	}
+
+	/**
+	 * Fingerprint of everything that determines the replaced content: the resolved tokens and
+	 * values (which already include delimiters and the contents of token and value files),
+	 * xpath, xpath mode, jsonpath and jsontype of each replacement, and the regex settings, encoding, engine and
+	 * whether format is preserved.
+	 */
+	public static String fingerprint(List<Replacement> replacements, boolean regex, int regexFlags, String encoding,
+			String engine, boolean preserveFormat) {
+		MessageDigest digest = newDigest();
+		update(digest, String.valueOf(regex));
+		update(digest, String.valueOf(regexFlags));
+		update(digest, encoding);
+		update(digest, engine);
+		update(digest, String.valueOf(preserveFormat));
+		for (Replacement replacement : replacements) {
+			update(digest, replacement.getToken());
+			update(digest, replacement.getValue());
+			update(digest, replacement.getXpath());
+			update(digest, replacement.getJsonpath());
+			update(digest, replacement.getJsontype());
+			update(digest, String.valueOf(replacement.isXpathInPlace()));
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Whether the input file has the same content as when it was last recorded with this output
+	 * file, and the output file has not been touched since. An input file whose modification time
+	 * changed but whose content did not is still up to date.
+	 */
+	public boolean isUpToDate(String inputFile, String outputFile) throws IOException {
+		String entry = previous.getProperty(inputFile);
+		if (entry == null) {
+			return false;
+		}
+		String[] fields = entry.split(SEPARATOR_PATTERN, 6);
+		File input = new File(inputFile);
+		File output = new File(outputFile);
+		if (!fields[5].equals(outputFile) || !output.isFile() || output.length() != Long.parseLong(fields[3])
+				|| output.lastModified() != Long.parseLong(fields[4])) {
+			return false;
+		}
+		if (!input.isFile() || input.length() != Long.parseLong(fields[0])) {
+			return false;
+		}
+		if (input.lastModified() != Long.parseLong(fields[1]) && !hash(input).equals(fields[2])) {
+			return false;
+		}
+		current.setProperty(inputFile, entry(input, fields[2], outputFile, output));
+		return true;
+	}
+
+	/**
+	 * Records the input and output files as they are after replacing.
+	 */
+	public void record(String inputFile, String outputFile) throws IOException {
+		File input = new File(inputFile);
+		current.setProperty(inputFile, entry(input, hash(input), outputFile, new File(outputFile)));
+	}
+
+	public void save() throws IOException {
+		File folder = stateFile.getAbsoluteFile().getParentFile();
+		if (!folder.mkdirs() && !folder.isDirectory()) {
+			throw new IOException("Error creating directory: " + folder);
+		}
+		OutputStream output = new FileOutputStream(stateFile);
+		try {
+			current.store(output, "maven-replacer-plugin build state");
+		} finally {
+			output.close();
+		}
+	}
+
+	private String entry(File input, String hash, String outputFile, File output) {
+		return input.length() + SEPARATOR + input.lastModified() + SEPARATOR + hash + SEPARATOR + output.length()
+				+ SEPARATOR + output.lastModified() + SEPARATOR + outputFile;
+	}
+
+	private static String hash(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		InputStream input = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			input.close();
+		}
+		return toHex(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, String text) {
+		if (text == null) {
+			digest.update((byte) 0);
+			return;
+		}
+		byte[] bytes = text.getBytes(UTF_8);
+		digest.update((byte) 1);
+		digest.update(String.valueOf(bytes.length).getBytes(UTF_8));
+		digest.update((byte) ':');
+		digest.update(bytes);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(DIGEST_ALGORITHM + " not available", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,249 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * A jsonpath made only of child steps, resolved against a Gson tree in a single walk without
+ * going through json-path.
+ *
+ * Supported steps are {@code .name}, {@code ['name']}, {@code [index]}, and the wildcards
+ * {@code .*} and {@code [*]}, which select every property of an object or element of an array.
+ * For example {@code $.paths['/pets'].get.parameters[*].name}. Steps that find nothing (a
+ * missing property, an index out of range, a name applied to an array) select nothing, as they
+ * do in json-path. Paths with filters, slices, unions or deep scan ({@code ..}) do not compile.
+ */
+public class CompiledJsonPath {
+	private static final Pattern STEP = Pattern.compile(
+			"\\.([A-Za-z_$][\\w$\\-]*|\\*)|\\[\\s*(?:'((?:[^'\\\\]|\\\\.)*)'|\"((?:[^\"\\\\]|\\\\.)*)\"|(\\d+)|(\\*))\\s*\\]");
+	private static final Object WILDCARD = new Object();
+
+	private final String path;
+	private final Object[] steps;
+
+	private CompiledJsonPath(String path, List<Object> steps) {
+		this.path = path;
+		this.steps = steps.toArray();
+	}
+
+	/**
+	 * The compiled path, or null when the path is not within the supported subset.
+	 */
+	public static CompiledJsonPath compile(String path) {
+		String trimmed = path == null ? "" : path.trim();
+		if (!trimmed.startsWith("$")) {
+			return null;
+		}
+		List<Object> steps = new ArrayList<Object>();
+		Matcher step = STEP.matcher(trimmed);
+		int position = 1;
+		while (position < trimmed.length()) {
+			if (!step.find(position) || step.start() != position) {
+				return null;
+			}
+			if (step.group(1) != null) {
+				steps.add("*".equals(step.group(1)) ? WILDCARD : step.group(1));
+			} else if (step.group(2) != null || step.group(3) != null) {
+				String name = step.group(2) != null ? step.group(2) : step.group(3);
+				steps.add(name.replaceAll("\\\\(.)", "$1"));
+			} else if (step.group(4) != null) {
+				try {
+					steps.add(Integer.valueOf(step.group(4)));
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			} else {
+				steps.add(WILDCARD);
+			}
+			position = step.end();
+		}
+		return new CompiledJsonPath(trimmed, steps);
+	}
+
+	/**
+	 * A definite path as json-path lists the paths it finds, such as {@code $['it's'][0]['name']},
+	 * or null when the path is not written that way. Names are written as they are, without
+	 * escaping quotes, so each name runs to the first {@code ']} followed by another step or the
+	 * end of the path.
+	 */
+	public static CompiledJsonPath definite(String path) {
+		if (path == null || !path.startsWith("$")) {
+			return null;
+		}
+		List<Object> steps = new ArrayList<Object>();
+		int position = 1;
+		while (position < path.length()) {
+			if (path.startsWith("['", position)) {
+				int end = path.indexOf("']", position + 2);
+				while (end >= 0 && end + 2 < path.length() && path.charAt(end + 2) != '[') {
+					end = path.indexOf("']", end + 1);
+				}
+				if (end < 0) {
+					return null;
+				}
+				steps.add(path.substring(position + 2, end));
+				position = end + 2;
+			} else if (path.startsWith("[", position)) {
+				int end = path.indexOf(']', position);
+				try {
+					steps.add(Integer.valueOf(path.substring(position + 1, end < 0 ? position : end)));
+				} catch (NumberFormatException e) {
+					return null;
+				}
+				position = end + 1;
+			} else {
+				return null;
+			}
+		}
+		return new CompiledJsonPath(path, steps);
+	}
+
+	/**
+	 * Handles to the values the path selects, in document order. The path must select values
+	 * within the root rather than the root itself.
+	 */
+	public List<Target> resolve(JsonElement root) {
+		if (steps.length == 0) {
+			throw new IllegalArgumentException("Cannot replace the root of the document: " + path);
+		}
+		List<Target> targets = new ArrayList<Target>();
+		resolve(root, null, 0, targets);
+		return targets;
+	}
+
+	/**
+	 * Handles to the values selected within an element found at the given depth of the path,
+	 * that is, matching its first {@code depth} steps. The element is held as the only item of
+	 * the holder, which the returned handle replaces when the path ends at that element.
+	 */
+	public List<Target> resolveWithin(JsonArray holder, int depth) {
+		List<Target> targets = new ArrayList<Target>();
+		if (depth == steps.length) {
+			targets.add(new Target(null, holder, null, 0));
+		} else {
+			resolve(holder.get(0), null, depth, targets);
+		}
+		return targets;
+	}
+
+	/**
+	 * Whether the path selects the value at the given location, made of property names and
+	 * array indexes from the root.
+	 */
+	public boolean selects(List<Object> location) {
+		return location.size() == steps.length && selectsWithin(location);
+	}
+
+	/**
+	 * Whether the path selects the value at the given location or values within it.
+	 */
+	public boolean selectsWithin(List<Object> location) {
+		if (location.size() > steps.length) {
+			return false;
+		}
+		for (int i = 0; i < location.size(); i++) {
+			if (steps[i] != WILDCARD && !steps[i].equals(location.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The number of steps, zero for the root itself.
+	 */
+	public int size() {
+		return steps.length;
+	}
+
+	private void resolve(JsonElement node, Target nodeTarget, int index, List<Target> targets) {
+		Object step = steps[index];
+		boolean last = index == steps.length - 1;
+		if (node.isJsonObject()) {
+			JsonObject object = node.getAsJsonObject();
+			if (step == WILDCARD) {
+				List<String> names = new ArrayList<String>();
+				for (Map.Entry<String, JsonElement> property : object.entrySet()) {
+					names.add(property.getKey());
+				}
+				for (String name : names) {
+					select(new Target(nodeTarget, object, name, -1), last, index, targets);
+				}
+			} else if (step instanceof String && object.has((String) step)) {
+				select(new Target(nodeTarget, object, (String) step, -1), last, index, targets);
+			}
+		} else if (node.isJsonArray()) {
+			JsonArray array = node.getAsJsonArray();
+			if (step == WILDCARD) {
+				for (int i = 0; i < array.size(); i++) {
+					select(new Target(nodeTarget, array, null, i), last, index, targets);
+				}
+			} else if (step instanceof Integer && (Integer) step < array.size()) {
+				select(new Target(nodeTarget, array, null, (Integer) step), last, index, targets);
+			}
+		}
+	}
+
+	private void select(Target target, boolean last, int index, List<Target> targets) {
+		if (last) {
+			targets.add(target);
+		} else {
+			resolve(target.get(), target, index + 1, targets);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+
+	/**
+	 * A selected value, held as its parent and the property name or element index within it,
+	 * so that it can be replaced in place.
+	 */
+	public static final class Target {
+		private final Target parentTarget;
+		private final JsonElement parent;
+		private final String name;
+		private final int index;
+
+		Target(Target parentTarget, JsonElement parent, String name, int index) {
+			this.parentTarget = parentTarget;
+			this.parent = parent;
+			this.name = name;
+			this.index = index;
+		}
+
+		public JsonElement get() {
+			return name != null ? parent.getAsJsonObject().get(name) : parent.getAsJsonArray().get(index);
+		}
+
+		public void set(JsonElement value) {
+			if (name != null) {
+				parent.getAsJsonObject().add(name, value);
+			} else {
+				parent.getAsJsonArray().set(index, value);
+			}
+		}
+
+		/**
+		 * The property names and array indexes leading to the value from the element the path was
+		 * resolved against.
+		 */
+		public List<Object> location() {
+			LinkedList<Object> location = new LinkedList<Object>();
+			for (Target target = this; target != null; target = target.parentTarget) {
+				location.addFirst(target.name != null ? target.name : Integer.valueOf(target.index));
+			}
+			return new ArrayList<Object>(location);
+		}
+	}
+}
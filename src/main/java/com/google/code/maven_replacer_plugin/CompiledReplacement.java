@@ -0,0 +1,208 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+import static org.apache.commons.lang.StringUtils.isNotEmpty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A configured replacement resolved once per execution: its token is unescaped and delimited, its
+ * value unescaped, its regex pattern compiled and the kind of replacer it needs decided, so that
+ * replacing a file does no more than match. Compiled replacements cannot be changed.
+ */
+public class CompiledReplacement extends Replacement {
+	private static final String IMMUTABLE = "Compiled replacements cannot be changed";
+
+	/**
+	 * The kind of replacer a replacement is applied by.
+	 */
+	public enum Kind {
+		TOKEN, XPATH, JSONPATH;
+
+		public static Kind of(Replacement replacement) {
+			if (isNotEmpty(replacement.getXpath())) {
+				return XPATH;
+			}
+			return isNotEmpty(replacement.getJsonpath()) ? JSONPATH : TOKEN;
+		}
+	}
+
+	private final Replacement source;
+	private final String token;
+	private final String value;
+	private final String encoding;
+	private final String xpath;
+	private final boolean xpathInPlace;
+	private final String jsonpath;
+	private final String jsontype;
+	private final Kind kind;
+	private final Pattern pattern;
+	private final int regexFlags;
+
+	public CompiledReplacement(Replacement source, boolean regex, int regexFlags) {
+		this.source = source;
+		this.token = source.getToken();
+		this.value = source.getValue();
+		this.encoding = source.getEncoding();
+		this.xpath = source.getXpath();
+		this.xpathInPlace = source.isXpathInPlace();
+		this.jsonpath = source.getJsonpath();
+		this.jsontype = source.getJsontype();
+		this.kind = Kind.of(source);
+		this.pattern = regex ? compile(token, regexFlags) : null;
+		this.regexFlags = regexFlags;
+	}
+
+	/**
+	 * Compiles each replacement, leaving those already compiled and groups as they are. A
+	 * {@link TokenValueTable} is returned as is, as its pairs are resolved when loaded and
+	 * compiling each of them would undo its compactness.
+	 */
+	public static List<Replacement> compile(List<Replacement> replacements, boolean regex, int regexFlags) {
+		if (replacements instanceof TokenValueTable) {
+			return replacements;
+		}
+		List<Replacement> compiled = new ArrayList<Replacement>(replacements.size());
+		for (Replacement replacement : replacements) {
+			if (replacement instanceof CompiledReplacement || replacement instanceof GroupedReplacement) {
+				compiled.add(replacement);
+			} else {
+				compiled.add(new CompiledReplacement(replacement, regex, regexFlags));
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * Invalid patterns are left to fail when first used, as they did before being compiled.
+	 */
+	private static Pattern compile(String token, int regexFlags) {
+		if (isEmpty(token)) {
+			return null;
+		}
+		try {
+			return PatternCache.SHARED.get(token, regexFlags);
+		} catch (PatternSyntaxException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The replacement this was compiled from.
+	 */
+	public Replacement getSource() {
+		return source;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * The token compiled with the given flags, or null when it was not compiled with them.
+	 */
+	public Pattern getPattern(int regexFlags) {
+		return regexFlags == this.regexFlags ? pattern : null;
+	}
+
+	@Override
+	public String getToken() {
+		return token;
+	}
+
+	@Override
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 * Whether the configured token and value were unescaped, which they already are.
+	 */
+	@Override
+	public boolean isUnescape() {
+		return source.isUnescape();
+	}
+
+	@Override
+	public String getEncoding() {
+		return encoding;
+	}
+
+	@Override
+	public String getXpath() {
+		return xpath;
+	}
+
+	@Override
+	public boolean isXpathInPlace() {
+		return xpathInPlace;
+	}
+
+	@Override
+	public String getJsonpath() {
+		return jsonpath;
+	}
+
+	@Override
+	public String getJsontype() {
+		return jsontype;
+	}
+
+	@Override
+	public void setTokenFile(String tokenFile) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setValueFile(String valueFile) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setToken(String token) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setValue(String value) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setUnescape(boolean unescape) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public Replacement withDelimiter(DelimiterBuilder delimiter) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setXpath(String xpath) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setXpathInPlace(boolean xpathInPlace) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setEncoding(String encoding) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setJsonpath(String jsonpath) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	@Override
+	public void setJsontype(String jsontype) {
+		throw new UnsupportedOperationException(IMMUTABLE);
+	}
+}
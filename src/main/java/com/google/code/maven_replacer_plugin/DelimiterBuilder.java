@@ -37,6 +37,14 @@ public class DelimiterBuilder {
 		}
 	}
 
+	public String getStart() {
+		return start;
+	}
+
+	public String getEnd() {
+		return end;
+	}
+
 	public String apply(String token) {
 		if (token == null || token.length() == 0) {
 			return token;
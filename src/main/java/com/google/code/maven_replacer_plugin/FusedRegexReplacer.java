@@ -0,0 +1,269 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.defaultString;
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Applies several regex replacements in a single scan by joining their tokens into one
+ * alternation, {@code (?<r0>token0)|(?<r1>token1)|...}, and expanding the value of whichever
+ * alternative matched. Group references in each value ($1, $2, ...) stay relative to that
+ * value's own token.
+ *
+ * Results differ from applying the replacements one after the other when:
+ * <ul>
+ * <li>matches of different tokens overlap: the leftmost match wins, and at the same position
+ * the token listed first wins, instead of the first-listed token replacing all of its matches first;</li>
+ * <li>a token uses lookarounds or anchors: they always see the original content rather than
+ * the content left by earlier replacements;</li>
+ * <li>a replaced value combines with its surroundings into a match for a later token.</li>
+ * </ul>
+ * Tokens that can be fused are chosen by {@link #canFuse(String, int)}; values that could
+ * themselves match a later token are never fused with it, and neither are values with group
+ * references, as the text they copy from the content could match any later token (see
+ * {@link ReplacementEngine#FUSED}).
+ * A single token is used as is, so it is applied exactly like a sequential regex replacement.
+ */
+public class FusedRegexReplacer implements Replacer {
+	private static final String GROUP_PREFIX = "r";
+	private static final int COPY_BUFFER_SIZE = 8192;
+
+	private final Pattern pattern;
+	private final int[] alternativeGroups;
+	private final List<List<Object>> values;
+
+	public FusedRegexReplacer(List<String> tokens, List<String> values, int regexFlags) {
+		if (tokens.size() != values.size()) {
+			throw new IllegalArgumentException("Each token requires a value");
+		}
+
+		this.alternativeGroups = new int[tokens.size()];
+		this.values = new ArrayList<List<Object>>(tokens.size());
+		if (tokens.size() == 1) {
+			this.pattern = compile(tokens.get(0), regexFlags);
+			this.values.add(parseValue(defaultString(values.get(0)), pattern.matcher("").groupCount()));
+			return;
+		}
+
+		StringBuilder alternation = new StringBuilder();
+		int group = 1;
+		for (int i = 0; i < tokens.size(); i++) {
+			if (i > 0) {
+				alternation.append('|');
+			}
+			alternation.append("(?<").append(GROUP_PREFIX).append(i).append('>').append(tokens.get(i)).append(')');
+			alternativeGroups[i] = group;
+			int groupCount = compile(tokens.get(i), regexFlags).matcher("").groupCount();
+			this.values.add(parseValue(defaultString(values.get(i)), groupCount));
+			group += groupCount + 1;
+		}
+		this.pattern = compile(alternation.toString(), regexFlags);
+	}
+
+	/**
+	 * Whether the token can be placed in an alternation without changing what it matches:
+	 * it must compile on its own, may not match empty content, and may not use back references,
+	 * named groups, unterminated quoting or (with the COMMENTS flag) comments.
+	 */
+	public static boolean canFuse(String token, int regexFlags) {
+		int flags = regexFlags == PatternFlagsFactory.NO_FLAGS ? 0 : regexFlags;
+		if (isEmpty(token) || (flags & Pattern.LITERAL) != 0) {
+			return false;
+		}
+		if ((flags & Pattern.COMMENTS) != 0 && token.indexOf('#') >= 0) {
+			return false;
+		}
+		if (token.matches("(?s).*\\\\(\\d|k<).*") || token.matches("(?s).*\\(\\?<[a-zA-Z].*")) {
+			return false;
+		}
+		if (token.lastIndexOf("\\Q") > token.lastIndexOf("\\E")) {
+			return false;
+		}
+
+		try {
+			return !compile(token, regexFlags).matcher("").matches();
+		} catch (PatternSyntaxException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Whether the value can be parsed as a replacement for a token with the given number of groups.
+	 */
+	public static boolean canExpand(String value, int groupCount) {
+		try {
+			parseValue(defaultString(value), groupCount);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Whether the value copies any group of its match, or cannot be parsed as a value at all.
+	 */
+	public static boolean hasGroupReferences(String value) {
+		try {
+			for (Object part : parseValue(defaultString(value), Integer.MAX_VALUE)) {
+				if (part instanceof Integer) {
+					return true;
+				}
+			}
+			return false;
+		} catch (IllegalArgumentException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * The literal text of a value, without its group references, used to check whether
+	 * a value could produce a match for another token.
+	 */
+	public static String literalText(String value) {
+		StringBuilder literal = new StringBuilder();
+		for (Object part : parseValue(defaultString(value), Integer.MAX_VALUE)) {
+			if (part instanceof String) {
+				literal.append(part);
+			}
+		}
+		return literal.toString();
+	}
+
+	public String replace(String content, Replacement replacement, boolean regex, int regexFlags) {
+		return replace(content);
+	}
+
+	public String replace(String content) {
+		Matcher matcher = pattern.matcher(content);
+		if (!matcher.find()) {
+			return content;
+		}
+
+		StringBuilder result = new StringBuilder(content.length());
+		int position = 0;
+		do {
+			int alternative = matchedAlternative(matcher);
+			result.append(content, position, matcher.start());
+			appendValue(result, matcher, alternative);
+			position = matcher.end();
+		} while (matcher.find());
+		result.append(content, position, content.length());
+		return result.toString();
+	}
+
+	/**
+	 * Writes the content with all matches replaced, without building the whole result in memory.
+	 * With a single token this gives the same result as {@link Matcher#replaceAll(String)}.
+	 */
+	public void replace(CharSequence content, Writer out) throws IOException {
+		Matcher matcher = pattern.matcher(content);
+		char[] buffer = new char[COPY_BUFFER_SIZE];
+		StringBuilder value = new StringBuilder();
+		int position = 0;
+		while (matcher.find()) {
+			copy(content, position, matcher.start(), out, buffer);
+			value.setLength(0);
+			appendValue(value, matcher, matchedAlternative(matcher));
+			out.append(value);
+			position = matcher.end();
+		}
+		copy(content, position, content.length(), out, buffer);
+	}
+
+	private void copy(CharSequence content, int from, int to, Writer out, char[] buffer) throws IOException {
+		while (from < to) {
+			int length = Math.min(buffer.length, to - from);
+			for (int i = 0; i < length; i++) {
+				buffer[i] = content.charAt(from + i);
+			}
+			out.write(buffer, 0, length);
+			from += length;
+		}
+	}
+
+	private int matchedAlternative(Matcher matcher) {
+		for (int i = 0; i < alternativeGroups.length; i++) {
+			if (matcher.start(alternativeGroups[i]) != -1) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("No alternative matched: " + matcher.group());
+	}
+
+	private void appendValue(StringBuilder result, Matcher matcher, int alternative) {
+		for (Object part : values.get(alternative)) {
+			if (part instanceof String) {
+				result.append((String) part);
+				continue;
+			}
+			String group = matcher.group(alternativeGroups[alternative] + (Integer) part);
+			if (group != null) {
+				result.append(group);
+			}
+		}
+	}
+
+	/**
+	 * Splits a value into literal text and group numbers, following the rules of
+	 * {@link Matcher#appendReplacement(StringBuffer, String)}.
+	 */
+	private static List<Object> parseValue(String value, int groupCount) {
+		List<Object> parts = new ArrayList<Object>();
+		StringBuilder literal = new StringBuilder();
+		int cursor = 0;
+		while (cursor < value.length()) {
+			char c = value.charAt(cursor);
+			if (c == '\\') {
+				cursor++;
+				if (cursor == value.length()) {
+					throw new IllegalArgumentException("character to be escaped is missing");
+				}
+				literal.append(value.charAt(cursor++));
+			} else if (c == '$') {
+				cursor++;
+				if (cursor == value.length() || !isDigit(value.charAt(cursor))) {
+					throw new IllegalArgumentException("Illegal group reference in: " + value);
+				}
+				int reference = value.charAt(cursor++) - '0';
+				while (cursor < value.length() && isDigit(value.charAt(cursor))) {
+					int next = reference * 10 + (value.charAt(cursor) - '0');
+					if (next > groupCount) {
+						break;
+					}
+					reference = next;
+					cursor++;
+				}
+				if (reference > groupCount) {
+					throw new IllegalArgumentException("No group " + reference + " in: " + value);
+				}
+				if (literal.length() > 0) {
+					parts.add(literal.toString());
+					literal.setLength(0);
+				}
+				parts.add(reference);
+			} else {
+				literal.append(c);
+				cursor++;
+			}
+		}
+		if (literal.length() > 0) {
+			parts.add(literal.toString());
+		}
+		return parts;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static Pattern compile(String regex, int regexFlags) {
+		return PatternCache.SHARED.get(regex, regexFlags);
+	}
+}
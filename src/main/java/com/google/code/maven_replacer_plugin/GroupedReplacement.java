@@ -0,0 +1,39 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Several configured replacements applied together by one {@link Replacer},
+ * built once per execution by a {@link ReplacementEngine}.
+ * Groups without a replacer of their own, such as consecutive xpath replacements, are applied by
+ * the replacer the {@link ReplacerFactory} creates for each file.
+ * A {@link TokenValueTable} is kept as is rather than copied, as copying would create a replacement
+ * for each of its pairs.
+ */
+public class GroupedReplacement extends Replacement {
+	private final List<Replacement> replacements;
+	private final Replacer replacer;
+	private final String description;
+
+	public GroupedReplacement(List<Replacement> replacements, Replacer replacer, String description) {
+		this.replacements = Collections.unmodifiableList(replacements instanceof TokenValueTable
+				? replacements : new ArrayList<Replacement>(replacements));
+		this.replacer = replacer;
+		this.description = description;
+	}
+
+	public List<Replacement> getReplacements() {
+		return replacements;
+	}
+
+	public Replacer getReplacer() {
+		return replacer;
+	}
+
+	@Override
+	public String getToken() {
+		return description;
+	}
+}
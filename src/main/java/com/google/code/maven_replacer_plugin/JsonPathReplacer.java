@@ -28,23 +28,43 @@ import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.ReadContext;
+import com.jayway.jsonpath.spi.json.GsonJsonProvider;
 
 import java.util.*;
 
+/**
+ * Replaces tokens within the values selected by a jsonpath.
+ *
+ * The content is parsed once into a Gson tree, which json-path reads through its Gson provider,
+ * so the same tree is used both to find the values and to replace them. A
+ * {@link GroupedReplacement} of jsonpath replacements is applied to that one tree, one replacement
+ * after another, and serialized once. Content in which no path matches is returned as is.
+ * Paths within the subset {@link CompiledJsonPath} supports are resolved without json-path.
+ *
+ * When preserving format, the replaced values are spliced into the original content instead of
+ * serializing the whole tree, falling back to serializing it where the content cannot be patched.
+ */
 public class JsonPathReplacer implements Replacer {
 
+    private static final Configuration JSON_CONFIG = Configuration.builder()
+            .jsonProvider(new GsonJsonProvider())
+            .options(Option.AS_PATH_LIST).build();
+
     private final TokenReplacer tokenReplacer;
-    private final Configuration jsonConfig;
     private final Gson gson;
+    private final boolean preserveFormat;
 
     public JsonPathReplacer(TokenReplacer tokenReplacer) {
+        this(tokenReplacer, false);
+    }
+
+    public JsonPathReplacer(TokenReplacer tokenReplacer, boolean preserveFormat) {
+        this.preserveFormat = preserveFormat;
         try {
             if (tokenReplacer == null) {
                 throw new IllegalArgumentException("Must supply a tokenReplacer to change the node's content.");
             }
             this.tokenReplacer = tokenReplacer;
-            jsonConfig = Configuration.builder()
-                    .options(Option.AS_PATH_LIST).build();
             gson = new GsonBuilder().serializeNulls().setPrettyPrinting().create();
         } catch (Exception e) {
             throw new IllegalStateException("Unable to initialise JSON processing: " + e.getMessage(), e);
@@ -53,82 +73,49 @@ public class JsonPathReplacer implements Replacer {
 
     public String replace(String content, Replacement replacement, boolean regex, int regexFlags) {
         try {
-            ReadContext doc = parseJson(content);
-            List<String> replacementTargets = findReplacementNodes(doc, replacement.getJsonpath());
-            if (replacementTargets.size() > 0) {
-                JsonParser parser = new JsonParser();
-                JsonElement element = parser.parse(content);
-                replaceContent(replacementTargets, replacement, regex, regexFlags, element);
-                return gson.toJson(element);
+            JsonElement element = new JsonParser().parse(content);
+            ReadContext doc = JsonPath.using(JSON_CONFIG).parse(element);
+            boolean replaced = false;
+            Set<List<Object>> changed = new LinkedHashSet<List<Object>>();
+            List<Replacement> replacements = replacement instanceof GroupedReplacement
+                    ? ((GroupedReplacement) replacement).getReplacements()
+                    : Collections.singletonList(replacement);
+            for (Replacement each : replacements) {
+                List<CompiledJsonPath.Target> replacementTargets = findReplacementNodes(doc, element, each.getJsonpath());
+                replaceContent(replacementTargets, each, regex, regexFlags, changed);
+                replaced |= replacementTargets.size() > 0;
+            }
+            if (!replaced || preserveFormat && changed.isEmpty()) {
+                return content;
             }
-            return content;
+            String patched = preserveFormat ? JsonSourceSpans.patch(content, element, changed) : null;
+            return patched != null ? patched : gson.toJson(element);
         } catch (Exception e) {
-            String cause = e.getMessage() != null ? e.getMessage() : e.getCause().getMessage();
+            String cause = e.getMessage() != null || e.getCause() == null ? e.getMessage() : e.getCause().getMessage();
             throw new RuntimeException("Error during JSON replacement: " + cause, e);
         }
     }
 
-    List<Object> getPathSegemnts(String path) {
-        List<Object> nodeSegments = new ArrayList<Object>();
-        StringTokenizer st = new StringTokenizer(path, "]");
-        while (st.hasMoreElements()) {
-            String token = st.nextToken();
-            if (token.charAt(1) == '\'') {
-                String name = token.substring(2, token.length() - 1);
-                nodeSegments.add(name);
-            } else {
-                Integer index = Integer.valueOf(token.substring(1));
-                nodeSegments.add(index);
-            }
-        }
-        return nodeSegments;
-    }
-
-    private JsonElement getTargetJsonObject(JsonElement jsonElement, Iterator<Object> iterator) {
-        if (iterator.hasNext()) {
-            Object segment = iterator.next();
-            JsonElement sibblingElement = null;
-            if (segment instanceof Integer) {
-                sibblingElement = jsonElement.getAsJsonArray().get((Integer) segment);
-            } else {
-                sibblingElement = jsonElement.getAsJsonObject().get((String) segment);
+    private void replaceContent(List<CompiledJsonPath.Target> replacementNodes, Replacement replacement, boolean regex, int regexFlags,
+            Set<List<Object>> changed) throws Exception {
+        for (CompiledJsonPath.Target target : replacementNodes) {
+            JsonElement value = target.get();
+            String replacedValue = tokenReplacer.replace(source(value), replacement, regex, regexFlags);
+            JsonElement replacedElement = normalizeValue(replacedValue, replacement);
+            target.set(replacedElement);
+            if (preserveFormat && !replacedElement.equals(value)) {
+                changed.add(target.location());
             }
-            return getTargetJsonObject(sibblingElement, iterator);
         }
-        return jsonElement;
     }
 
-    private void replaceContent(List<String> replacementNodes, Replacement replacement, boolean regex, int regexFlags, JsonElement jsonElement) throws Exception {
-        for (int i = 0; i < replacementNodes.size(); i++) {
-            String replacementNode = replacementNodes.get(i);
-            List<Object> nodeSegments = getPathSegemnts(replacementNode.substring(1));
-            JsonElement target = getTargetJsonObject(jsonElement, nodeSegments.subList(0, nodeSegments.size() - 1).iterator());
-
-            Object targetNode = nodeSegments.get(nodeSegments.size() - 1);
-            if (targetNode instanceof Integer) {
-                JsonElement item = target.getAsJsonArray().get((Integer) targetNode);
-                String source = item.isJsonPrimitive() || item.isJsonNull()
-                        ? item.getAsString()
-                        : item.toString();
-
-                String replacedValue = tokenReplacer.replace(source, replacement, regex, regexFlags);
-                JsonElement value = normalizeValue(replacedValue, replacement);
-                target.getAsJsonArray().set((Integer) targetNode, value);
-            } else {
-                JsonElement property = target.getAsJsonObject().get((String) targetNode);
-                String source = property.isJsonPrimitive() || property.isJsonNull()
-                        ? property.getAsString()
-                        : property.toString();
-                String replacedValue = tokenReplacer.replace(source, replacement, regex, regexFlags);
-
-                JsonElement value = normalizeValue(replacedValue, replacement);
-                target.getAsJsonObject().add((String) targetNode, value);
-
-            }
-        }
+    static String source(JsonElement item) {
+        return item.isJsonPrimitive() || item.isJsonNull()
+                ? item.getAsString()
+                : item.toString();
     }
 
-    private JsonElement normalizeValue(String value, Replacement replacement) {
+    static JsonElement normalizeValue(String value, Replacement replacement) {
         if ("string".equals(replacement.getJsontype()) || replacement.getJsontype() == null) {
             return new JsonPrimitive(value);
         } else if ("number".equals(replacement.getJsontype())) {
@@ -149,15 +136,31 @@ public class JsonPathReplacer implements Replacer {
         throw new IllegalArgumentException("Json type '" + replacement.getJsontype() + "' not supported. Supported values are [string|number|object|array|true|false|null");
     }
 
-    private ReadContext parseJson(String content) throws Exception {
-        return JsonPath.using(jsonConfig).parse(content);
-    }
+    /**
+     * Paths made of child steps and wildcards are resolved directly against the tree. Others are
+     * found by json-path, as definite paths that are then resolved the same way (see
+     * {@link CompiledJsonPath#definite}).
+     */
+    private List<CompiledJsonPath.Target> findReplacementNodes(ReadContext doc, JsonElement element, String jsonpathString) throws Exception {
+        CompiledJsonPath compiled = CompiledJsonPath.compile(jsonpathString);
+        if (compiled != null) {
+            return compiled.resolve(element);
+        }
 
-    private List<String> findReplacementNodes(ReadContext doc, String jsonpathString) throws Exception {
+        JsonArray paths;
         try {
-            return doc.read(jsonpathString);
+            paths = doc.read(jsonpathString);
         } catch (Exception e) {
             return Collections.EMPTY_LIST;
         }
+        List<CompiledJsonPath.Target> replacementNodes = new ArrayList<CompiledJsonPath.Target>(paths.size());
+        for (JsonElement path : paths) {
+            CompiledJsonPath definite = CompiledJsonPath.definite(path.getAsString());
+            if (definite == null) {
+                throw new IllegalArgumentException("Unexpected path found by " + jsonpathString + ": " + path);
+            }
+            replacementNodes.addAll(definite.resolve(element));
+        }
+        return replacementNodes;
     }
 }
@@ -0,0 +1,223 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+
+/**
+ * Splices replaced values back into the JSON source they were parsed from, leaving every other
+ * byte as it was.
+ *
+ * The source is scanned for the spans of the changed values, which are then written compactly
+ * in their place. Sources that are not strict JSON, such as those with comments or unquoted
+ * names that Gson accepts leniently, cannot be patched. Where a name is repeated within an
+ * object, its last value is the one patched, as it is the one Gson keeps.
+ */
+public class JsonSourceSpans {
+	private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+
+	private final String source;
+	private final Set<List<Object>> wanted;
+	private final Map<List<Object>, int[]> spans = new HashMap<List<Object>, int[]>();
+	private int position;
+
+	private JsonSourceSpans(String source, Set<List<Object>> wanted) {
+		this.source = source;
+		this.wanted = wanted;
+	}
+
+	/**
+	 * The source with the values at the changed locations, made of property names and array
+	 * indexes from the root, replaced by their values in the given tree. Returns null when the
+	 * source cannot be patched.
+	 */
+	public static String patch(String source, JsonElement root, Collection<List<Object>> changed) {
+		Set<List<Object>> outermost = outermost(changed);
+		JsonSourceSpans scanner = new JsonSourceSpans(source, outermost);
+		try {
+			scanner.value(new ArrayList<Object>());
+			scanner.skipWhitespace();
+			if (scanner.position != source.length() || scanner.spans.size() != outermost.size()) {
+				return null;
+			}
+		} catch (IndexOutOfBoundsException e) {
+			return null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		TreeMap<Integer, List<Object>> byStart = new TreeMap<Integer, List<Object>>();
+		for (Map.Entry<List<Object>, int[]> span : scanner.spans.entrySet()) {
+			byStart.put(span.getValue()[0], span.getKey());
+		}
+		StringBuilder patched = new StringBuilder(source.length());
+		int copied = 0;
+		for (List<Object> location : byStart.values()) {
+			int[] span = scanner.spans.get(location);
+			JsonElement value = valueAt(root, location);
+			if (value == null) {
+				return null;
+			}
+			patched.append(source, copied, span[0]).append(GSON.toJson(value));
+			copied = span[1];
+		}
+		return patched.append(source, copied, source.length()).toString();
+	}
+
+	/**
+	 * The locations not within another of the locations, as those are written out with it.
+	 */
+	private static Set<List<Object>> outermost(Collection<List<Object>> locations) {
+		Set<List<Object>> all = new HashSet<List<Object>>(locations);
+		Set<List<Object>> outermost = new HashSet<List<Object>>();
+		for (List<Object> location : all) {
+			boolean nested = false;
+			for (int length = 0; length < location.size() && !nested; length++) {
+				nested = all.contains(location.subList(0, length));
+			}
+			if (!nested) {
+				outermost.add(location);
+			}
+		}
+		return outermost;
+	}
+
+	private static JsonElement valueAt(JsonElement root, List<Object> location) {
+		JsonElement value = root;
+		for (Object step : location) {
+			if (step instanceof String && value.isJsonObject()) {
+				value = value.getAsJsonObject().get((String) step);
+			} else if (step instanceof Integer && value.isJsonArray() && (Integer) step < value.getAsJsonArray().size()) {
+				value = value.getAsJsonArray().get((Integer) step);
+			} else {
+				return null;
+			}
+			if (value == null) {
+				return null;
+			}
+		}
+		return value;
+	}
+
+	private void value(List<Object> location) {
+		skipWhitespace();
+		int start = position;
+		boolean selected = wanted.contains(location);
+		char c = source.charAt(position);
+		if (c == '{') {
+			position++;
+			skipWhitespace();
+			if (source.charAt(position) == '}') {
+				position++;
+			} else {
+				do {
+					skipWhitespace();
+					String name = string();
+					expect(':');
+					location.add(name);
+					value(location);
+					location.remove(location.size() - 1);
+					skipWhitespace();
+				} while (next(','));
+				expect('}');
+			}
+		} else if (c == '[') {
+			position++;
+			skipWhitespace();
+			if (source.charAt(position) == ']') {
+				position++;
+			} else {
+				int index = 0;
+				do {
+					location.add(index++);
+					value(location);
+					location.remove(location.size() - 1);
+					skipWhitespace();
+				} while (next(','));
+				expect(']');
+			}
+		} else if (c == '"') {
+			string();
+		} else {
+			while (position < source.length() && "-+.0123456789eEtruefalsn".indexOf(source.charAt(position)) >= 0) {
+				position++;
+			}
+			if (position == start) {
+				throw new IndexOutOfBoundsException("Unexpected " + c + " at " + position);
+			}
+		}
+		if (selected) {
+			spans.put(new ArrayList<Object>(location), new int[] { start, position });
+		}
+	}
+
+	private String string() {
+		if (source.charAt(position) != '"') {
+			throw new IndexOutOfBoundsException("Expected a string at " + position);
+		}
+		StringBuilder value = new StringBuilder();
+		for (position++; source.charAt(position) != '"'; position++) {
+			char c = source.charAt(position);
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+			c = source.charAt(++position);
+			switch (c) {
+			case 'u':
+				value.append((char) Integer.parseInt(source.substring(position + 1, position + 5), 16));
+				position += 4;
+				break;
+			case 'b':
+				value.append('\b');
+				break;
+			case 'f':
+				value.append('\f');
+				break;
+			case 'n':
+				value.append('\n');
+				break;
+			case 'r':
+				value.append('\r');
+				break;
+			case 't':
+				value.append('\t');
+				break;
+			default:
+				value.append(c);
+			}
+		}
+		position++;
+		return value.toString();
+	}
+
+	private boolean next(char c) {
+		if (position < source.length() && source.charAt(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(char c) {
+		skipWhitespace();
+		if (!next(c)) {
+			throw new IndexOutOfBoundsException("Expected " + c + " at " + position);
+		}
+	}
+
+	private void skipWhitespace() {
+		while (position < source.length() && " \t\r\n".indexOf(source.charAt(position)) >= 0) {
+			position++;
+		}
+	}
+}
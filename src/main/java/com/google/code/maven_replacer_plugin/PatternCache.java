@@ -0,0 +1,97 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded, thread-safe cache of compiled regex patterns keyed on token text and flags.
+ * The shared instance lives as long as the plugin's classloader, so all executions
+ * (and all files within an execution) reuse the same compiled patterns.
+ */
+public class PatternCache {
+	public static final int DEFAULT_MAX_SIZE = 1024;
+	public static final PatternCache SHARED = new PatternCache(DEFAULT_MAX_SIZE);
+
+	private final Map<Key, Pattern> patterns;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public PatternCache(final int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Pattern cache size must be positive: " + maxSize);
+		}
+		this.patterns = new LinkedHashMap<Key, Pattern>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	public Pattern get(String token, int flags) {
+		Key key = new Key(token, flags);
+		synchronized (patterns) {
+			Pattern pattern = patterns.get(key);
+			if (pattern != null) {
+				hits.incrementAndGet();
+				return pattern;
+			}
+		}
+
+		misses.incrementAndGet();
+		Pattern pattern = compile(token, flags);
+		synchronized (patterns) {
+			patterns.put(key, pattern);
+		}
+		return pattern;
+	}
+
+	private Pattern compile(String token, int flags) {
+		if (flags == PatternFlagsFactory.NO_FLAGS) {
+			return Pattern.compile(token);
+		}
+		return Pattern.compile(token, flags);
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (patterns) {
+			return patterns.size();
+		}
+	}
+
+	private static final class Key {
+		private final String token;
+		private final int flags;
+
+		Key(String token, int flags) {
+			this.token = token;
+			this.flags = flags;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return flags == key.flags && token.equals(key.token);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * token.hashCode() + flags;
+		}
+	}
+}
@@ -1,12 +1,17 @@
 package com.google.code.maven_replacer_plugin;
 
 import java.lang.reflect.Field;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 public class PatternFlagsFactory {
 	public static final int NO_FLAGS = -1;
 
+	private static final Map<String, Integer> PATTERN_FIELDS = readPatternFields();
+
 	public int buildFlags(List<String> flags) {
 		if (flags == null || flags.isEmpty()) {
 			return NO_FLAGS;
@@ -20,16 +25,25 @@ public class PatternFlagsFactory {
 	}
 
 	private int getStaticFieldValueOf(String fieldName) {
-		for (Field f  : Pattern.class.getFields()) {
-			if (f.getName().equalsIgnoreCase(fieldName)) {
-				try {
-					return (Integer)f.get(null);
-				} catch (Exception e) {
-					throw new IllegalStateException("Could not access Pattern field: " + f.getName() + " - is this an unsupported JVM?");
-				}
-			}
+		Integer value = fieldName == null ? null : PATTERN_FIELDS.get(fieldName.toUpperCase(Locale.ENGLISH));
+		if (value == null) {
+			throw new IllegalArgumentException("Unknown regex flag: " + fieldName);
 		}
+		return value;
+	}
 
-		throw new IllegalArgumentException("Unknown regex flag: " + fieldName);
+	private static Map<String, Integer> readPatternFields() {
+		Map<String, Integer> fields = new HashMap<String, Integer>();
+		for (Field f : Pattern.class.getFields()) {
+			if (f.getType() != int.class) {
+				continue;
+			}
+			try {
+				fields.put(f.getName().toUpperCase(Locale.ENGLISH), (Integer) f.get(null));
+			} catch (Exception e) {
+				throw new IllegalStateException("Could not access Pattern field: " + f.getName() + " - is this an unsupported JVM?");
+			}
+		}
+		return fields;
 	}
 }
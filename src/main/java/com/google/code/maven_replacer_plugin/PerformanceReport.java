@@ -0,0 +1,229 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+/**
+ * Collects, for each replaced file and each replacement applied to it, how long reading,
+ * replacing and writing took, the bytes read and written and the number of matches.
+ * The results are written as CSV, and the slowest files and replacements can be logged.
+ *
+ * Files are added once fully replaced, from any thread.
+ */
+public class PerformanceReport {
+	public static final int NOT_COUNTED = -1;
+
+	private static final String CSV_HEADER = "type,inputFile,outputFile,replacement,token,readMillis,replaceMillis,"
+			+ "writeMillis,bytesIn,bytesOut,matches";
+	private static final String SLOWEST_FILES_FORMAT = "Slowest %d of %d file%s:";
+	private static final String SLOWEST_FILE_FORMAT = "  %.1f ms %s (read %.1f ms, replace %.1f ms, write %.1f ms)";
+	private static final String SLOWEST_REPLACEMENTS_FORMAT = "Slowest %d of %d replacement%s:";
+	private static final String SLOWEST_REPLACEMENT_FORMAT = "  %.1f ms #%d %s (%s match%s)";
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	private final List<FileReport> files = new ArrayList<FileReport>();
+
+	public FileReport startFile(String inputFile, String outputFile) {
+		return new FileReport(inputFile, outputFile);
+	}
+
+	public synchronized void add(FileReport file) {
+		files.add(file);
+	}
+
+	public synchronized List<FileReport> getFiles() {
+		return new ArrayList<FileReport>(files);
+	}
+
+	/**
+	 * Writes one row per file followed by one row per replacement applied to it.
+	 */
+	public void writeCsv(FileUtils fileUtils, String reportFile) throws IOException {
+		StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+		for (FileReport file : getFiles()) {
+			appendRow(csv, "file", file.inputFile, file.outputFile, "", "", millis(file.readNanos),
+					millis(file.replaceNanos()), millis(file.writeNanos), String.valueOf(file.bytesIn),
+					String.valueOf(file.bytesOut), "");
+			for (ReplacementTiming replacement : file.replacements) {
+				appendRow(csv, "replacement", file.inputFile, file.outputFile, String.valueOf(replacement.index),
+						replacement.token, "", millis(replacement.nanos), "", "", "", matches(replacement.matches));
+			}
+		}
+		fileUtils.writeToFile(reportFile, csv.toString(), "UTF-8");
+	}
+
+	/**
+	 * Logs the given number of slowest files, by total time, and slowest replacements, by time
+	 * summed over all files.
+	 */
+	public void logSlowest(Log log, int count) {
+		List<FileReport> slowestFiles = getFiles();
+		if (slowestFiles.isEmpty() || count <= 0) {
+			return;
+		}
+		Collections.sort(slowestFiles, new Comparator<FileReport>() {
+			public int compare(FileReport left, FileReport right) {
+				return compareDescending(left.totalNanos(), right.totalNanos());
+			}
+		});
+		int total = slowestFiles.size();
+		log.info(String.format(SLOWEST_FILES_FORMAT, Math.min(count, total), total, total == 1 ? "" : "s"));
+		for (FileReport file : slowestFiles.subList(0, Math.min(count, total))) {
+			log.info(String.format(SLOWEST_FILE_FORMAT, file.totalNanos() / NANOS_PER_MILLI, file.inputFile,
+					file.readNanos / NANOS_PER_MILLI, file.replaceNanos() / NANOS_PER_MILLI,
+					file.writeNanos / NANOS_PER_MILLI));
+		}
+
+		List<ReplacementTiming> slowestReplacements = new ArrayList<ReplacementTiming>(sumByReplacement(slowestFiles));
+		if (slowestReplacements.isEmpty()) {
+			return;
+		}
+		Collections.sort(slowestReplacements, new Comparator<ReplacementTiming>() {
+			public int compare(ReplacementTiming left, ReplacementTiming right) {
+				return compareDescending(left.nanos, right.nanos);
+			}
+		});
+		total = slowestReplacements.size();
+		log.info(String.format(SLOWEST_REPLACEMENTS_FORMAT, Math.min(count, total), total, total == 1 ? "" : "s"));
+		for (ReplacementTiming replacement : slowestReplacements.subList(0, Math.min(count, total))) {
+			String matches = matches(replacement.matches);
+			log.info(String.format(SLOWEST_REPLACEMENT_FORMAT, replacement.nanos / NANOS_PER_MILLI, replacement.index,
+					replacement.token, matches.isEmpty() ? "uncounted" : matches, "1".equals(matches) ? "" : "es"));
+		}
+	}
+
+	private List<ReplacementTiming> sumByReplacement(List<FileReport> reports) {
+		Map<Integer, ReplacementTiming> sums = new LinkedHashMap<Integer, ReplacementTiming>();
+		for (FileReport file : reports) {
+			for (ReplacementTiming replacement : file.replacements) {
+				ReplacementTiming sum = sums.get(replacement.index);
+				if (sum == null) {
+					sums.put(replacement.index, new ReplacementTiming(replacement.index, replacement.token,
+							replacement.nanos, replacement.matches));
+					continue;
+				}
+				sum.nanos += replacement.nanos;
+				sum.matches = sum.matches == NOT_COUNTED || replacement.matches == NOT_COUNTED ? NOT_COUNTED
+						: sum.matches + replacement.matches;
+			}
+		}
+		return new ArrayList<ReplacementTiming>(sums.values());
+	}
+
+	private static int compareDescending(long left, long right) {
+		return left > right ? -1 : (left == right ? 0 : 1);
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI);
+	}
+
+	private static String matches(long matches) {
+		return matches == NOT_COUNTED ? "" : String.valueOf(matches);
+	}
+
+	private static void appendRow(StringBuilder csv, String... values) {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				csv.append(',');
+			}
+			String value = values[i] == null ? "" : values[i];
+			if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+					|| value.indexOf('\r') >= 0) {
+				csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+			} else {
+				csv.append(value);
+			}
+		}
+		csv.append('\n');
+	}
+
+	/**
+	 * Timings of a single file. Filled in by the thread replacing the file.
+	 */
+	public static class FileReport {
+		private final String inputFile;
+		private final String outputFile;
+		private final List<ReplacementTiming> replacements = new ArrayList<ReplacementTiming>();
+		private long readNanos;
+		private long writeNanos;
+		private long streamedNanos;
+		private long bytesIn;
+		private long bytesOut;
+
+		FileReport(String inputFile, String outputFile) {
+			this.inputFile = inputFile;
+			this.outputFile = outputFile;
+		}
+
+		public void read(long nanos, long bytes) {
+			this.readNanos = nanos;
+			this.bytesIn = bytes;
+		}
+
+		public void replaced(int index, String token, long nanos, long matches) {
+			replacements.add(new ReplacementTiming(index, token, nanos, matches));
+		}
+
+		/**
+		 * Records a file that was read, replaced and written in one go, so the time cannot be split.
+		 */
+		public void streamed(long nanos, long bytes) {
+			this.streamedNanos = nanos;
+			this.bytesIn = bytes;
+		}
+
+		public void written(long nanos, long bytes) {
+			this.writeNanos = nanos;
+			this.bytesOut = bytes;
+		}
+
+		public String getInputFile() {
+			return inputFile;
+		}
+
+		public long getBytesIn() {
+			return bytesIn;
+		}
+
+		public long getBytesOut() {
+			return bytesOut;
+		}
+
+		public long totalNanos() {
+			return readNanos + replaceNanos() + writeNanos;
+		}
+
+		private long replaceNanos() {
+			long nanos = streamedNanos;
+			for (ReplacementTiming replacement : replacements) {
+				nanos += replacement.nanos;
+			}
+			return nanos;
+		}
+	}
+
+	private static class ReplacementTiming {
+		private final int index;
+		private final String token;
+		private long nanos;
+		private long matches;
+
+		ReplacementTiming(int index, String token, long nanos, long matches) {
+			this.index = index;
+			this.token = token;
+			this.nanos = nanos;
+			this.matches = matches;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.defaultString;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Replaces delimited placeholders, such as {@code ${name}} or {@code @name@}, in a single scan of
+ * the content, looking each one up among the tokens of a {@link TokenValueTable} rather than
+ * trying every token in turn, so that the cost is proportional to the size of the content
+ * whatever the number of tokens and delimiters.
+ *
+ * The scan stops at each start delimiter and tries the placeholders it begins, up to each
+ * following end delimiter within the longest token. Where several of them are tokens, the one
+ * listed first wins, as with {@link ReplacementEngine#SEQUENTIAL}. Placeholders that are not
+ * tokens are left as they are. Unlike applying the tokens one after another, replaced text is
+ * never scanned again, so a value containing another placeholder is left as is, and where
+ * placeholders overlap the leftmost one wins.
+ */
+public class PlaceholderReplacer implements Replacer {
+	private final String[] starts;
+	private final String[] ends;
+	private final BitSet startChars = new BitSet();
+	private final TokenValueTable table;
+	private final int maxTokenLength;
+
+	/**
+	 * @param delimiters delimiters of the tokens, each with a start
+	 * @param table the delimited tokens and their values
+	 */
+	public PlaceholderReplacer(List<DelimiterBuilder> delimiters, TokenValueTable table) {
+		starts = new String[delimiters.size()];
+		ends = new String[delimiters.size()];
+		for (int i = 0; i < starts.length; i++) {
+			starts[i] = delimiters.get(i).getStart();
+			ends[i] = delimiters.get(i).getEnd();
+			if (starts[i].length() == 0) {
+				throw new IllegalArgumentException("Placeholder delimiters must have a start");
+			}
+			startChars.set(starts[i].charAt(0));
+		}
+		this.table = table;
+		int longest = 0;
+		for (int i = 0; i < table.size(); i++) {
+			longest = Math.max(longest, table.getToken(i).length());
+		}
+		this.maxTokenLength = longest;
+	}
+
+	/**
+	 * Whether the token is a placeholder within one of the delimiters.
+	 */
+	public static boolean isPlaceholder(String token, List<DelimiterBuilder> delimiters) {
+		for (DelimiterBuilder delimiter : delimiters) {
+			String start = delimiter.getStart();
+			String end = delimiter.getEnd();
+			if (start.length() > 0 && token.length() > start.length() + end.length() && token.startsWith(start)
+					&& token.endsWith(end)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The delimited tokens of the replacements with their values, for replacers of a run of them.
+	 */
+	public static TokenValueTable tableOf(List<Replacement> replacements) {
+		if (replacements instanceof TokenValueTable) {
+			return (TokenValueTable) replacements;
+		}
+		TokenValueTable table = new TokenValueTable(null, null);
+		for (Replacement replacement : replacements) {
+			table.add(replacement.getToken(), defaultString(replacement.getValue()));
+		}
+		return table;
+	}
+
+	public String replace(String content, Replacement replacement, boolean regex, int regexFlags) {
+		if (content == null) {
+			return null;
+		}
+		StringBuilder replaced = null;
+		int copied = 0;
+		int length = content.length();
+		for (int i = 0; i < length; i++) {
+			if (!startChars.get(content.charAt(i))) {
+				continue;
+			}
+			int found = find(content, i);
+			if (found < 0) {
+				continue;
+			}
+			if (replaced == null) {
+				replaced = new StringBuilder(length);
+			}
+			String token = table.getToken(found);
+			replaced.append(content, copied, i).append(table.getValue(found));
+			copied = i + token.length();
+			i = copied - 1;
+		}
+		if (replaced == null) {
+			return content;
+		}
+		return replaced.append(content, copied, length).toString();
+	}
+
+	/**
+	 * The position in the table of the first listed token beginning at the given index of the
+	 * content, or -1 when none does. Placeholders are tried up to each end delimiter within the
+	 * longest token.
+	 */
+	private int find(String content, int index) {
+		int found = -1;
+		int limit = Math.min(content.length(), index + maxTokenLength);
+		for (int d = 0; d < starts.length; d++) {
+			if (!content.startsWith(starts[d], index)) {
+				continue;
+			}
+			int endLength = ends[d].length();
+			int at = indexOf(content, ends[d], index + starts[d].length() + 1, limit);
+			while (at >= 0) {
+				int position = table.indexOfToken(content.substring(index, at + endLength));
+				if (position >= 0 && (found < 0 || position < found)) {
+					found = position;
+				}
+				at = indexOf(content, ends[d], at + 1, limit);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * The index of the end delimiter from the given index, or -1 when it does not end by the limit,
+	 * so that content with start delimiters and no end ones is not searched to its end each time.
+	 */
+	private static int indexOf(String content, String end, int from, int limit) {
+		int last = limit - end.length();
+		for (int at = from; at <= last; at++) {
+			if (content.startsWith(end, at)) {
+				return at;
+			}
+		}
+		return -1;
+	}
+}
@@ -40,6 +40,7 @@ public class Replacement {
 	private String value;
 	private String encoding;
 	private String xpath;
+	private boolean xpathInPlace;
 	private String jsonpath;
 	private String jsontype;
 
@@ -110,8 +111,10 @@ public class Replacement {
 	}
 
 	public static Replacement from(Replacement replacement) {
-		return new Replacement(replacement.fileUtils, replacement.token, replacement.value,
+		Replacement copy = new Replacement(replacement.fileUtils, replacement.token, replacement.value,
 				replacement.unescape, replacement.xpath, replacement.encoding, replacement.jsonpath, replacement.jsontype);
+		copy.setXpathInPlace(replacement.xpathInPlace);
+		return copy;
 	}
 
 	public Replacement withDelimiter(DelimiterBuilder delimiter) {
@@ -127,6 +130,18 @@ public class Replacement {
 		return xpath;
 	}
 
+	/**
+	 * Whether elements selected by the xpath have the token replaced within their text and
+	 * attribute values, instead of within their serialized markup.
+	 */
+	public void setXpathInPlace(boolean xpathInPlace) {
+		this.xpathInPlace = xpathInPlace;
+	}
+
+	public boolean isXpathInPlace() {
+		return xpathInPlace;
+	}
+
 	public void setEncoding(String encoding) {
 		this.encoding = encoding;
 	}
@@ -0,0 +1,337 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+import static org.apache.commons.lang.StringUtils.isNotEmpty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Strategy used to apply the configured replacements to each file.
+ * The list of replacements is prepared once per execution and then applied to every file, or
+ * once for as long as a read only {@link TokenValueTable} is cached.
+ * Whatever the engine, consecutive xpath replacements (and likewise consecutive jsonpath
+ * replacements) are grouped so that each file is parsed and written once for all of them
+ * (see {@link XPathReplacer} and {@link JsonPathReplacer}).
+ */
+public enum ReplacementEngine {
+	/**
+	 * Applies every replacement, one after the other, to the whole content.
+	 */
+	SEQUENTIAL {
+		@Override
+		List<Replacement> combine(List<Replacement> replacements, boolean regex, int regexFlags,
+				List<DelimiterBuilder> delimiters) {
+			return replacements;
+		}
+	},
+
+	/**
+	 * Applies consecutive plain (not xpath or jsonpath) literal replacements in a single scan.
+	 * Only used when regex is disabled. See {@link AhoCorasickReplacer} for the one case where
+	 * results differ from {@link #SEQUENTIAL}.
+	 */
+	LITERAL {
+		@Override
+		List<Replacement> combine(List<Replacement> replacements, boolean regex, int regexFlags,
+				List<DelimiterBuilder> delimiters) {
+			if (regex) {
+				return replacements;
+			}
+
+			List<Replacement> prepared = new ArrayList<Replacement>();
+			List<Replacement> run = new ArrayList<Replacement>();
+			for (Replacement replacement : replacements) {
+				if (isPlain(replacement)) {
+					run.add(replacement);
+					continue;
+				}
+				addLiteralRun(prepared, run);
+				prepared.add(replacement);
+			}
+			addLiteralRun(prepared, run);
+			return prepared;
+		}
+
+		private void addLiteralRun(List<Replacement> prepared, List<Replacement> run) {
+			if (run.size() < 2) {
+				prepared.addAll(run);
+				run.clear();
+				return;
+			}
+
+			List<String> tokens = new ArrayList<String>(run.size());
+			List<String> values = new ArrayList<String>(run.size());
+			for (Replacement replacement : run) {
+				tokens.add(replacement.getToken());
+				values.add(replacement.getValue());
+			}
+			prepared.add(new GroupedReplacement(run, new AhoCorasickReplacer(tokens, values),
+					run.size() + " literal tokens"));
+			run.clear();
+		}
+	},
+
+	/**
+	 * Applies consecutive plain (not xpath or jsonpath) regex replacements in a single scan
+	 * by joining their tokens into one alternation. Only used when regex is enabled.
+	 * A replacement is never fused with an earlier one whose value could match its token, or
+	 * whose value has group references, as the text they copy could match any token, so
+	 * replacements that feed each other keep their sequential order. See
+	 * {@link FusedRegexReplacer} for the cases where results differ from {@link #SEQUENTIAL}.
+	 */
+	FUSED {
+		@Override
+		List<Replacement> combine(List<Replacement> replacements, boolean regex, int regexFlags,
+				List<DelimiterBuilder> delimiters) {
+			if (!regex) {
+				return replacements;
+			}
+
+			List<Replacement> prepared = new ArrayList<Replacement>();
+			List<Replacement> run = new ArrayList<Replacement>();
+			for (Replacement replacement : replacements) {
+				if (!isFusable(replacement, regexFlags)) {
+					addFusedRun(prepared, run, regexFlags);
+					prepared.add(replacement);
+					continue;
+				}
+				if (feedsToken(run, replacement.getToken(), regexFlags)) {
+					addFusedRun(prepared, run, regexFlags);
+				}
+				run.add(replacement);
+			}
+			addFusedRun(prepared, run, regexFlags);
+			return prepared;
+		}
+
+		private boolean isFusable(Replacement replacement, int regexFlags) {
+			if (!isPlain(replacement) || !FusedRegexReplacer.canFuse(replacement.getToken(), regexFlags)) {
+				return false;
+			}
+			int groupCount = PatternCache.SHARED.get(replacement.getToken(), regexFlags).matcher("").groupCount();
+			return FusedRegexReplacer.canExpand(replacement.getValue(), groupCount);
+		}
+
+		private boolean feedsToken(List<Replacement> run, String token, int regexFlags) {
+			Pattern pattern = PatternCache.SHARED.get(token, regexFlags);
+			for (Replacement earlier : run) {
+				if (FusedRegexReplacer.hasGroupReferences(earlier.getValue())
+						|| pattern.matcher(FusedRegexReplacer.literalText(earlier.getValue())).find()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void addFusedRun(List<Replacement> prepared, List<Replacement> run, int regexFlags) {
+			if (run.size() < 2) {
+				prepared.addAll(run);
+				run.clear();
+				return;
+			}
+
+			List<String> tokens = new ArrayList<String>(run.size());
+			List<String> values = new ArrayList<String>(run.size());
+			for (Replacement replacement : run) {
+				tokens.add(replacement.getToken());
+				values.add(replacement.getValue());
+			}
+			prepared.add(new GroupedReplacement(run, new FusedRegexReplacer(tokens, values, regexFlags),
+					run.size() + " fused patterns"));
+			run.clear();
+		}
+	},
+
+	/**
+	 * With regex disabled and delimiters set, applies consecutive token/value replacements
+	 * (without xpath or jsonpath) whose tokens are delimited placeholders in a single scan of
+	 * each file, looking up each placeholder found rather than trying every token and
+	 * delimiter. See {@link PlaceholderReplacer} for where results differ from {@link #SEQUENTIAL}.
+	 */
+	PLACEHOLDER {
+		@Override
+		List<Replacement> combine(List<Replacement> replacements, boolean regex, int regexFlags,
+				List<DelimiterBuilder> delimiters) {
+			if (regex || delimiters.isEmpty() || hasNoStart(delimiters)) {
+				return replacements;
+			}
+			if (replacements instanceof TokenValueTable && isPlaceholderTable((TokenValueTable) replacements, delimiters)) {
+				List<Replacement> prepared = new ArrayList<Replacement>();
+				addPlaceholderRun(prepared, replacements, delimiters);
+				return prepared;
+			}
+
+			List<Replacement> prepared = new ArrayList<Replacement>();
+			List<Replacement> run = new ArrayList<Replacement>();
+			for (Replacement replacement : replacements) {
+				if (isPlain(replacement) && PlaceholderReplacer.isPlaceholder(replacement.getToken(), delimiters)) {
+					run.add(replacement);
+					continue;
+				}
+				addPlaceholderRun(prepared, run, delimiters);
+				run.clear();
+				prepared.add(replacement);
+			}
+			addPlaceholderRun(prepared, run, delimiters);
+			return prepared;
+		}
+
+		private boolean hasNoStart(List<DelimiterBuilder> delimiters) {
+			for (DelimiterBuilder delimiter : delimiters) {
+				if (delimiter.getStart().length() == 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean isPlaceholderTable(TokenValueTable table, List<DelimiterBuilder> delimiters) {
+			for (int i = 0; i < table.size(); i++) {
+				if (!PlaceholderReplacer.isPlaceholder(table.getToken(i), delimiters)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void addPlaceholderRun(List<Replacement> prepared, List<Replacement> run,
+				List<DelimiterBuilder> delimiters) {
+			if (run.size() < 2) {
+				prepared.addAll(run);
+				return;
+			}
+			prepared.add(new GroupedReplacement(run, new PlaceholderReplacer(delimiters, PlaceholderReplacer.tableOf(run)),
+					run.size() + " placeholders"));
+		}
+	};
+
+	public List<Replacement> prepare(List<Replacement> replacements, boolean regex, int regexFlags) {
+		return prepare(replacements, regex, regexFlags, Collections.<DelimiterBuilder>emptyList());
+	}
+
+	/**
+	 * A {@link TokenValueTable} is prepared once and kept with it when it is read only, with the
+	 * pairs left on their own compiled when regex is enabled, so that executions sharing a cached
+	 * map neither build its replacers again nor compile its patterns again for each file.
+	 *
+	 * @param delimiters the delimiters the tokens were built with, used by {@link #PLACEHOLDER}
+	 */
+	public List<Replacement> prepare(final List<Replacement> replacements, final boolean regex, final int regexFlags,
+			final List<DelimiterBuilder> delimiters) {
+		if (!(replacements instanceof TokenValueTable)) {
+			return groupPathRuns(combine(replacements, regex, regexFlags, delimiters));
+		}
+		final TokenValueTable table = (TokenValueTable) replacements;
+		String key = name() + " " + regex + " " + regexFlags + " " + TokenValueTable.keyOf(delimiters);
+		return table.derive(key, new TokenValueTable.Derivation() {
+			public List<Replacement> derive() {
+				List<Replacement> prepared = groupPathRuns(combine(table, regex, regexFlags, delimiters));
+				if (!regex || !table.isReadOnly()) {
+					return prepared;
+				}
+				return CompiledReplacement.compile(new ArrayList<Replacement>(prepared), regex, regexFlags);
+			}
+		});
+	}
+
+	abstract List<Replacement> combine(List<Replacement> replacements, boolean regex, int regexFlags,
+			List<DelimiterBuilder> delimiters);
+
+	private static List<Replacement> groupPathRuns(List<Replacement> replacements) {
+		List<Replacement> prepared = new ArrayList<Replacement>();
+		List<Replacement> run = new ArrayList<Replacement>();
+		PathKind runKind = PathKind.NONE;
+		boolean grouped = false;
+		for (Replacement replacement : replacements) {
+			PathKind kind = PathKind.of(replacement);
+			if (kind != runKind) {
+				grouped |= addPathRun(prepared, run, runKind);
+				runKind = kind;
+			}
+			if (kind == PathKind.NONE) {
+				prepared.add(replacement);
+			} else {
+				run.add(replacement);
+			}
+		}
+		grouped |= addPathRun(prepared, run, runKind);
+		return grouped ? prepared : replacements;
+	}
+
+	private static boolean addPathRun(List<Replacement> prepared, List<Replacement> run, PathKind kind) {
+		boolean grouped = run.size() > 1;
+		if (grouped) {
+			StringBuilder union = new StringBuilder();
+			for (Replacement replacement : run) {
+				union.append(union.length() == 0 ? "" : " | ").append(kind.path(replacement));
+			}
+			GroupedReplacement group = new GroupedReplacement(run, null, run.size() + " " + kind.description);
+			kind.setPath(group, union.toString());
+			prepared.add(group);
+		} else {
+			prepared.addAll(run);
+		}
+		run.clear();
+		return grouped;
+	}
+
+	/**
+	 * Whether a replacement is located by xpath or jsonpath, which the {@link ReplacerFactory}
+	 * checks in that order. Runs of either are grouped so that each file is parsed once for them.
+	 */
+	private enum PathKind {
+		NONE(null), XPATH("xpath replacements"), JSONPATH("jsonpath replacements");
+
+		private final String description;
+
+		PathKind(String description) {
+			this.description = description;
+		}
+
+		static PathKind of(Replacement replacement) {
+			if (replacement instanceof GroupedReplacement || isEmpty(replacement.getToken())) {
+				return NONE;
+			}
+			if (isNotEmpty(replacement.getXpath())) {
+				return XPATH;
+			}
+			return isNotEmpty(replacement.getJsonpath()) ? JSONPATH : NONE;
+		}
+
+		String path(Replacement replacement) {
+			return this == XPATH ? replacement.getXpath() : replacement.getJsonpath();
+		}
+
+		void setPath(Replacement replacement, String path) {
+			if (this == XPATH) {
+				replacement.setXpath(path);
+			} else {
+				replacement.setJsonpath(path);
+			}
+		}
+	}
+
+	/**
+	 * Whether the replacement is a single token and value, neither a group nor replaced by path.
+	 */
+	static boolean isPlain(Replacement replacement) {
+		return !(replacement instanceof GroupedReplacement) && isNotEmpty(replacement.getToken()) && isEmpty(replacement.getXpath())
+				&& isEmpty(replacement.getJsonpath());
+	}
+
+	public static ReplacementEngine fromName(String name) {
+		if (isEmpty(name)) {
+			return SEQUENTIAL;
+		}
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown replacement engine: " + name
+					+ ". Supported values are [sequential|literal|fused|placeholder]");
+		}
+	}
+}
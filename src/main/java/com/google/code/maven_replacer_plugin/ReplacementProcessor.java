@@ -1,29 +1,171 @@
 package com.google.code.maven_replacer_plugin;
 
+import static java.util.Arrays.asList;
 import static org.apache.commons.lang.StringUtils.isEmpty;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
 
+import javax.xml.stream.XMLStreamException;
+
+import com.google.code.maven_replacer_plugin.PerformanceReport.FileReport;
 import com.google.code.maven_replacer_plugin.file.FileUtils;
+import com.google.gson.stream.MalformedJsonException;
 
 public class ReplacementProcessor {
+	public static final long NO_STREAMING = -1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
 	private final FileUtils fileUtils;
 	private final ReplacerFactory replacerFactory;
+	private long streamingThreshold = NO_STREAMING;
+	private PerformanceReport report;
 
 	public ReplacementProcessor(FileUtils fileUtils, ReplacerFactory replacerFactory) {
 		this.fileUtils = fileUtils;
 		this.replacerFactory = replacerFactory;
 	}
 	
-	public void replace(List<Replacement> replacements, boolean regex, String file,
+	/**
+	 * Files larger than this many bytes are not read into memory as a whole: literal replacements
+	 * are streamed from input to output, regex replacements run over the memory-mapped file, and
+	 * xpath and jsonpath replacements within the subsets {@link StreamingXmlReplacer} and
+	 * {@link StreamingJsonReplacer} support are applied while streaming the document, unless the
+	 * replacer factory preserves format, as the streamed document is written back reformatted.
+	 * {@link #NO_STREAMING} turns this off.
+	 */
+	public void setStreamingThreshold(long streamingThreshold) {
+		this.streamingThreshold = streamingThreshold;
+	}
+
+	/**
+	 * Report to add the timings of every replaced file to, or null to not time them.
+	 * Timing also counts the matches of each replacement, which takes an extra scan of the content.
+	 */
+	public void setReport(PerformanceReport report) {
+		this.report = report;
+	}
+
+	/**
+	 * Replaces the contents of the file and writes them to the output file, unless the output file
+	 * already has exactly that content, in which case it is left untouched.
+	 *
+	 * @return whether the output file was written
+	 */
+	public boolean replace(List<Replacement> replacements, boolean regex, String file,
 			String outputFile, int regexFlags, String encoding) throws IOException {
+		FileReport fileReport = report == null ? null : report.startFile(file, outputFile);
+		boolean written = replace(replacements, regex, file, outputFile, regexFlags, encoding, fileReport);
+		if (fileReport != null) {
+			report.add(fileReport);
+		}
+		return written;
+	}
+
+	private boolean replace(List<Replacement> replacements, boolean regex, String file, String outputFile,
+			int regexFlags, String encoding, FileReport fileReport) throws IOException {
+		if (streamingThreshold != NO_STREAMING && fileUtils.fileSize(file) > streamingThreshold) {
+			long start = System.nanoTime();
+			Boolean written = null;
+			List<Replacement> xmlReplacements = streamingXmlReplacements(replacements);
+			List<Replacement> jsonReplacements = streamingJsonReplacements(replacements);
+			if ((xmlReplacements != null || jsonReplacements != null) && replacerFactory.isPreserveFormat()) {
+				xmlReplacements = null;
+				jsonReplacements = null;
+			}
+			if (xmlReplacements != null) {
+				StreamingXmlReplacer replacer = new StreamingXmlReplacer(xmlReplacements, replacerFactory.getTokenReplacer(), regex,
+						regexFlags);
+				written = replaceXmlStreaming(replacer, file, outputFile, encoding);
+			} else if (jsonReplacements != null) {
+				StreamingJsonReplacer replacer = new StreamingJsonReplacer(jsonReplacements, replacerFactory.getTokenReplacer(), regex,
+						regexFlags);
+				written = replaceJsonStreaming(replacer, file, outputFile, encoding);
+			} else if (!regex) {
+				List<AhoCorasickReplacer> streamingReplacers = streamingReplacers(replacements);
+				if (streamingReplacers != null) {
+					written = replaceStreaming(streamingReplacers, file, outputFile, encoding);
+				}
+			} else {
+				List<FusedRegexReplacer> mappedReplacers = fileUtils.isSameFile(file, outputFile) ? null
+						: mappedReplacers(replacements, regexFlags);
+				CharSequence content = mappedReplacers == null ? null : fileUtils.mapFile(file, encoding);
+				if (content != null) {
+					written = replaceMapped(mappedReplacers, content, outputFile, encoding);
+				}
+			}
+			if (written != null) {
+				if (fileReport != null) {
+					fileReport.streamed(System.nanoTime() - start, fileUtils.fileSize(file));
+					fileReport.written(0, fileUtils.fileSize(outputFile));
+				}
+				return written;
+			}
+		}
+
+		long start = System.nanoTime();
 		String content = fileUtils.readFile(file, encoding);
-		for (Replacement replacement : replacements) {
+		if (fileReport != null) {
+			fileReport.read(System.nanoTime() - start, fileUtils.fileSize(file));
+		}
+		for (int i = 0; i < replacements.size(); i++) {
+			Replacement replacement = replacements.get(i);
+			long matches = fileReport == null ? 0 : countMatches(content, replacement, regex, regexFlags);
+			start = System.nanoTime();
 			content = replaceContent(regex, regexFlags, content, replacement);
+			if (fileReport != null) {
+				fileReport.replaced(i, replacement.getToken(), System.nanoTime() - start, matches);
+			}
 		}
 
-		fileUtils.writeToFile(outputFile, content, encoding);
+		start = System.nanoTime();
+		boolean written = !fileUtils.hasContent(outputFile, content, encoding);
+		if (written) {
+			fileUtils.writeToFile(outputFile, content, encoding);
+		}
+		if (fileReport != null) {
+			fileReport.written(System.nanoTime() - start, fileUtils.fileSize(outputFile));
+		}
+		return written;
+	}
+
+	/**
+	 * Counts the matches of a token, for the performance report. Tokens located by xpath or
+	 * jsonpath are not counted, as they only apply to part of the content.
+	 */
+	private long countMatches(String content, Replacement replacement, boolean regex, int regexFlags) {
+		if (replacement instanceof GroupedReplacement) {
+			long matches = 0;
+			for (Replacement grouped : ((GroupedReplacement) replacement).getReplacements()) {
+				long groupedMatches = countMatches(content, grouped, regex, regexFlags);
+				if (groupedMatches == PerformanceReport.NOT_COUNTED) {
+					return PerformanceReport.NOT_COUNTED;
+				}
+				matches += groupedMatches;
+			}
+			return matches;
+		}
+		if (!ReplacementEngine.isPlain(replacement) || isEmpty(content)) {
+			return ReplacementEngine.isPlain(replacement) ? 0 : PerformanceReport.NOT_COUNTED;
+		}
+
+		long matches = 0;
+		if (regex) {
+			Matcher matcher = PatternCache.SHARED.get(replacement.getToken(), regexFlags).matcher(content);
+			while (matcher.find()) {
+				matches++;
+			}
+			return matches;
+		}
+		String token = replacement.getToken();
+		for (int index = content.indexOf(token); index >= 0; index = content.indexOf(token, index + token.length())) {
+			matches++;
+		}
+		return matches;
 	}
 
 	private String replaceContent(boolean regex, int regexFlags, String content, Replacement replacement) {
@@ -34,4 +176,257 @@ public class ReplacementProcessor {
 		Replacer replacer = replacerFactory.create(replacement);
 		return replacer.replace(content, replacement, regex, regexFlags);
 	}
+
+	/**
+	 * The literal replacers that apply the replacements in order, or null when any of them is not a
+	 * plain literal replacement or a group of them, such as a group of placeholders.
+	 */
+	private List<AhoCorasickReplacer> streamingReplacers(List<Replacement> replacements) {
+		List<AhoCorasickReplacer> replacers = new ArrayList<AhoCorasickReplacer>();
+		for (Replacement replacement : replacements) {
+			if (replacement instanceof GroupedReplacement
+					&& ((GroupedReplacement) replacement).getReplacer() instanceof AhoCorasickReplacer) {
+				replacers.add((AhoCorasickReplacer) ((GroupedReplacement) replacement).getReplacer());
+			} else if (ReplacementEngine.isPlain(replacement)) {
+				replacers.add(new AhoCorasickReplacer(asList(replacement.getToken()), asList(replacement.getValue())));
+			} else {
+				return null;
+			}
+		}
+		return replacers;
+	}
+
+	private boolean replaceStreaming(List<AhoCorasickReplacer> replacers, String file, String outputFile,
+			String encoding) throws IOException {
+		String tempFile = fileUtils.createTempFileFor(outputFile);
+		boolean done = false;
+		try {
+			Reader reader = fileUtils.openReader(file, encoding);
+			try {
+				Writer writer = fileUtils.openWriter(tempFile, encoding);
+				for (int i = replacers.size() - 1; i >= 0; i--) {
+					writer = replacers.get(i).newWriter(writer);
+				}
+				try {
+					char[] buffer = new char[BUFFER_SIZE];
+					for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+						writer.write(buffer, 0, read);
+					}
+				} finally {
+					writer.close();
+				}
+			} finally {
+				reader.close();
+			}
+			boolean written = moveIfChanged(tempFile, outputFile);
+			done = true;
+			return written;
+		} finally {
+			if (!done) {
+				fileUtils.deleteFile(tempFile);
+			}
+		}
+	}
+
+	/**
+	 * The xpath replacements, with groups of them expanded, or null when any of them is not an
+	 * xpath within the subset {@link StreamingXmlReplacer} supports.
+	 */
+	private List<Replacement> streamingXmlReplacements(List<Replacement> replacements) {
+		List<Replacement> xmlReplacements = new ArrayList<Replacement>();
+		for (Replacement member : groupMembers(replacements)) {
+			if (!StreamingXmlReplacer.supports(member)) {
+				return null;
+			}
+			xmlReplacements.add(member);
+		}
+		return xmlReplacements;
+	}
+
+	/**
+	 * The jsonpath replacements, with groups of them expanded, or null when any of them is not a
+	 * jsonpath within the subset {@link StreamingJsonReplacer} supports.
+	 */
+	private List<Replacement> streamingJsonReplacements(List<Replacement> replacements) {
+		List<Replacement> jsonReplacements = new ArrayList<Replacement>();
+		for (Replacement member : groupMembers(replacements)) {
+			if (!StreamingJsonReplacer.supports(member)) {
+				return null;
+			}
+			jsonReplacements.add(member);
+		}
+		return jsonReplacements;
+	}
+
+	private List<Replacement> groupMembers(List<Replacement> replacements) {
+		List<Replacement> members = new ArrayList<Replacement>();
+		for (Replacement replacement : replacements) {
+			if (replacement instanceof GroupedReplacement) {
+				members.addAll(((GroupedReplacement) replacement).getReplacements());
+			} else {
+				members.add(replacement);
+			}
+		}
+		return members;
+	}
+
+	private boolean replaceXmlStreaming(StreamingXmlReplacer replacer, String file, String outputFile,
+			String encoding) throws IOException {
+		String tempFile = fileUtils.createTempFileFor(outputFile);
+		boolean done = false;
+		try {
+			Reader reader = fileUtils.openReader(file, encoding);
+			try {
+				Writer writer = fileUtils.openWriter(tempFile, encoding);
+				try {
+					replacer.replace(reader, writer);
+				} catch (XMLStreamException e) {
+					throw new RuntimeException("Error during XML replacement: " + e.getMessage(), e);
+				} finally {
+					writer.close();
+				}
+			} finally {
+				reader.close();
+			}
+			boolean written = moveIfChanged(tempFile, outputFile);
+			done = true;
+			return written;
+		} finally {
+			if (!done) {
+				fileUtils.deleteFile(tempFile);
+			}
+		}
+	}
+
+	/**
+	 * Streams the JSON through the replacer. When no value is selected the content is copied as
+	 * is, as {@link JsonPathReplacer} would leave it.
+	 */
+	private boolean replaceJsonStreaming(StreamingJsonReplacer replacer, String file, String outputFile,
+			String encoding) throws IOException {
+		String tempFile = fileUtils.createTempFileFor(outputFile);
+		boolean done = false;
+		try {
+			boolean replaced;
+			Reader reader = fileUtils.openReader(file, encoding);
+			try {
+				Writer writer = fileUtils.openWriter(tempFile, encoding);
+				try {
+					replaced = replacer.replace(reader, writer);
+				} catch (MalformedJsonException e) {
+					throw new RuntimeException("Error during JSON replacement: " + e.getMessage(), e);
+				} catch (RuntimeException e) {
+					String cause = e.getMessage() != null ? e.getMessage() : String.valueOf(e.getCause());
+					throw new RuntimeException("Error during JSON replacement: " + cause, e);
+				} finally {
+					writer.close();
+				}
+			} finally {
+				reader.close();
+			}
+			if (!replaced) {
+				copy(file, tempFile, encoding);
+			}
+			boolean written = moveIfChanged(tempFile, outputFile);
+			done = true;
+			return written;
+		} finally {
+			if (!done) {
+				fileUtils.deleteFile(tempFile);
+			}
+		}
+	}
+
+	private void copy(String file, String tempFile, String encoding) throws IOException {
+		Reader reader = fileUtils.openReader(file, encoding);
+		try {
+			Writer writer = fileUtils.openWriter(tempFile, encoding);
+			try {
+				char[] buffer = new char[BUFFER_SIZE];
+				for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+					writer.write(buffer, 0, read);
+				}
+			} finally {
+				writer.close();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * The regex replacers that apply the replacements in order, or null when any of them is not a
+	 * plain regex replacement or has a value that cannot be expanded outside of {@link java.util.regex.Matcher}.
+	 */
+	private List<FusedRegexReplacer> mappedReplacers(List<Replacement> replacements, int regexFlags) {
+		List<FusedRegexReplacer> replacers = new ArrayList<FusedRegexReplacer>();
+		for (Replacement replacement : replacements) {
+			if (replacement instanceof GroupedReplacement
+					&& ((GroupedReplacement) replacement).getReplacer() instanceof FusedRegexReplacer) {
+				replacers.add((FusedRegexReplacer) ((GroupedReplacement) replacement).getReplacer());
+				continue;
+			}
+			if (!ReplacementEngine.isPlain(replacement)) {
+				return null;
+			}
+			int groupCount = PatternCache.SHARED.get(replacement.getToken(), regexFlags).matcher("").groupCount();
+			if (!FusedRegexReplacer.canExpand(replacement.getValue(), groupCount)) {
+				return null;
+			}
+			replacers.add(new FusedRegexReplacer(asList(replacement.getToken()), asList(replacement.getValue()), regexFlags));
+		}
+		return replacers;
+	}
+
+	/**
+	 * Applies each replacer to the mapped content in turn. Intermediate results go to temporary
+	 * files in {@value FileUtils#MAPPED_TEMP_ENCODING}, which are read back whole for the next
+	 * replacer rather than mapped, as a mapping cannot be released on demand, and a file still
+	 * mapped can be neither deleted nor replaced on Windows. For the same reason the input is only
+	 * mapped when it is not the output.
+	 */
+	private boolean replaceMapped(List<FusedRegexReplacer> replacers, CharSequence content, String outputFile,
+			String encoding) throws IOException {
+		String previousFile = null;
+		String tempFile = null;
+		boolean done = false;
+		try {
+			for (int i = 0; i < replacers.size(); i++) {
+				boolean last = i == replacers.size() - 1;
+				tempFile = fileUtils.createTempFileFor(outputFile);
+				Writer writer = fileUtils.openWriter(tempFile, last ? encoding : FileUtils.MAPPED_TEMP_ENCODING);
+				try {
+					replacers.get(i).replace(content, writer);
+				} finally {
+					writer.close();
+				}
+				if (previousFile != null) {
+					fileUtils.deleteFile(previousFile);
+				}
+				previousFile = tempFile;
+				if (!last) {
+					content = fileUtils.readFile(tempFile, FileUtils.MAPPED_TEMP_ENCODING);
+				}
+			}
+			boolean written = moveIfChanged(tempFile, outputFile);
+			done = true;
+			return written;
+		} finally {
+			if (!done && tempFile != null) {
+				fileUtils.deleteFile(tempFile);
+				if (previousFile != null && !previousFile.equals(tempFile)) {
+					fileUtils.deleteFile(previousFile);
+				}
+			}
+		}
+	}
+
+	private boolean moveIfChanged(String tempFile, String outputFile) throws IOException {
+		if (fileUtils.haveSameContent(tempFile, outputFile)) {
+			fileUtils.deleteFile(tempFile);
+			return false;
+		}
+		fileUtils.moveFile(tempFile, outputFile);
+		return true;
+	}
 }
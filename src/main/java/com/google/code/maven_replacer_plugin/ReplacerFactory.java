@@ -24,20 +24,55 @@ SOFTWARE.
  */
 package com.google.code.maven_replacer_plugin;
 
-import static org.apache.commons.lang.StringUtils.isNotEmpty;
+/**
+ * Hands out the replacer for each replacement. Replacers keep no state between calls, so the same
+ * instances serve every replacement and file, from any thread: the token replacer shares its
+ * compiled patterns through {@link PatternCache#SHARED}, the xpath replacer keeps its parser,
+ * transformer and compiled xpaths per thread, and the jsonpath replacer's Gson is thread-safe.
+ */
+public class ReplacerFactory {
+	private final TokenReplacer tokenReplacer = new TokenReplacer();
+	private boolean preserveFormat;
+	private XPathReplacer xpathReplacer = new XPathReplacer(tokenReplacer, false);
+	private JsonPathReplacer jsonPathReplacer = new JsonPathReplacer(tokenReplacer, false);
 
+	/**
+	 * Whether xpath and jsonpath replacers splice their changes into the original content rather
+	 * than writing out the whole document reformatted.
+	 */
+	public void setPreserveFormat(boolean preserveFormat) {
+		if (preserveFormat != this.preserveFormat) {
+			this.preserveFormat = preserveFormat;
+			xpathReplacer = new XPathReplacer(tokenReplacer, preserveFormat);
+			jsonPathReplacer = new JsonPathReplacer(tokenReplacer, preserveFormat);
+		}
+	}
+
+	public boolean isPreserveFormat() {
+		return preserveFormat;
+	}
+
+	/**
+	 * The token replacer shared by every replacement, also for replacers built per file.
+	 */
+	public TokenReplacer getTokenReplacer() {
+		return tokenReplacer;
+	}
 
-public class ReplacerFactory {
 	public Replacer create(Replacement replacement) {
-		TokenReplacer tokenReplacer = new TokenReplacer();
-		
-		if (isNotEmpty(replacement.getXpath())) {
-			return new XPathReplacer(tokenReplacer);
+		if (replacement instanceof GroupedReplacement && ((GroupedReplacement) replacement).getReplacer() != null) {
+			return ((GroupedReplacement) replacement).getReplacer();
 		}
-		if (isNotEmpty(replacement.getJsonpath())) {
-			return new JsonPathReplacer(tokenReplacer);
+		CompiledReplacement.Kind kind = replacement instanceof CompiledReplacement
+				? ((CompiledReplacement) replacement).getKind() : CompiledReplacement.Kind.of(replacement);
+		switch (kind) {
+		case XPATH:
+			return xpathReplacer;
+		case JSONPATH:
+			return jsonPathReplacer;
+		default:
+			return tokenReplacer;
 		}
-		return tokenReplacer;
 	}
 
 }
@@ -29,11 +29,20 @@ import static org.apache.commons.lang.StringUtils.isBlank;
 import com.google.code.maven_replacer_plugin.file.FileUtils;
 import com.google.code.maven_replacer_plugin.include.FileSelector;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.PatternSyntaxException;
 
 import org.apache.maven.plugin.AbstractMojo;
@@ -56,6 +65,9 @@ public class ReplacerMojo extends AbstractMojo {
 		"Check that your delimiters do not contain regex characters. (e.g. '$'). " +
 		"Either remove the regex characters from your delimiters or set <regex>false</regex>" +
 		" in your configuration.";
+	private static final String FILE_FAILURE_MESSAGE = "Replacement failed on %s: %s";
+	private static final String INVALID_THREADS_MESSAGE = "Invalid threads: %s. " +
+		"Use a number of threads (e.g. 4) or a multiple of the available cores (e.g. 1C).";
 	
 	private final FileUtils fileUtils;
 	private final ReplacerFactory replacerFactory;
@@ -65,6 +77,8 @@ public class ReplacerMojo extends AbstractMojo {
 	private final OutputFilenameBuilder outputFilenameBuilder;
 	private final SummaryBuilder summaryBuilder;
 	private final ReplacementProcessor processor;
+	private BuildState buildState;
+	private PerformanceReport report;
 
 	/**
 	 * File to check and replace tokens.
@@ -331,6 +345,16 @@ public class ReplacerMojo extends AbstractMojo {
 	 */
 	private String xpath;
 
+	/**
+	 * When an xpath selects elements, replace the token within their text, attribute values and
+	 * comments (and those of their descendants) in place, rather than within the element's
+	 * serialized markup. This avoids writing out and parsing again every matched element, but
+	 * tokens spanning markup (element names, tags) are no longer matched.
+	 *
+	 * @parameter default-value="false"
+	 */
+	private boolean xpathInPlace;
+
 	private String jsonpath;
 
 	private String jsontype;
@@ -368,6 +392,153 @@ public class ReplacerMojo extends AbstractMojo {
      */
     private Integer maxReplacements = Integer.MAX_VALUE;
 
+    /**
+     * Engine used to apply the replacements to each file.
+     * Must be one of:
+     * * sequential - applies each replacement, one after the other, to the whole file.
+     * * literal - with regex disabled, applies consecutive token/value replacements
+     *   (without xpath or jsonpath) in a single scan of each file. Where tokens overlap the
+     *   first one listed wins, as with sequential, but replaced text is never scanned again
+     *   for later tokens.
+     * * fused - with regex enabled, joins consecutive token/value replacements (without xpath
+     *   or jsonpath) into one alternation applied in a single scan of each file. Replacements
+     *   whose value could match a later token keep their sequential order. Where matches of
+     *   different tokens overlap the leftmost one wins, and lookarounds and anchors see the
+     *   original file rather than the result of earlier replacements.
+     * * placeholder - with regex disabled and delimiters set, scans each file once for the
+     *   start delimiters and looks up each placeholder found among the tokens, instead of
+     *   trying every token with every delimiter. Placeholders that are not tokens are left
+     *   as they are. Where placeholders overlap the leftmost one wins, and replaced text is
+     *   never scanned again for later tokens.
+     * Default is sequential.
+     *
+     * @parameter default-value="sequential"
+     */
+    private String engine = "sequential";
+
+    /**
+     * Number of files to replace concurrently, either as a fixed number (e.g. 4) or as a
+     * multiple of the available cores (e.g. 1C or 0.5C).
+     * Files are still reported in order. When a file fails, the files being replaced alongside
+     * it are finished and every failure is logged; the first one fails the build unless ignoreErrors is set.
+     * Default is 1.
+     *
+     * @parameter default-value="1"
+     */
+    private String threads = "1";
+
+    /**
+     * How files matching includes and excludes are found:
+     * * ant: Ant's directory scanner;
+     * * nio: walks the tree with NIO, listing as many directories at once as threads, and never
+     *   enters directories no include can match below or whose contents are all excluded by a
+     *   pattern ending in ** (such as an exclude of every node_modules tree). Selects the same
+     *   files as ant, but does not follow symbolic links back into a directory being walked.
+     *   Files are replaced as they are found while the walk goes on, and are reported, and
+     *   limited by maxReplacements, in the order found rather than sorted.
+     * Default is ant.
+     *
+     * @parameter default-value="ant"
+     */
+    private String scanner = "ant";
+
+    /**
+     * Size in bytes above which a file is not read into memory as a whole. Applies when every
+     * replacement is a plain token/value (without xpath or jsonpath):
+     * * with regex disabled, the file is streamed from input to output in chunks;
+     * * with regex enabled, the first pattern runs over the memory-mapped file, and any later
+     *   ones over the previous result read back whole. This needs an output other than the file
+     *   itself (a mapped file cannot be replaced on every platform), an encoding with one byte
+     *   per character (ISO-8859-1, or US-ASCII/UTF-8 files that are plain ASCII) and values
+     *   using only numbered group references ($1); other files are read whole.
+     * Also applies when every replacement has an xpath made of absolute child steps with
+     * optional positions, such as /export/record[2]/@id or /export/record/value/text(), or
+     * selecting elements with xpathInPlace set: the XML is then streamed, keeping elements,
+     * attribute order and whitespace within the root element instead of reformatting them.
+     * Whitespace outside the root element is dropped, attributes are written in double quotes,
+     * and character references such as &amp;#169; are written as the characters they stand for.
+     * Likewise when every replacement has a jsonpath made of child steps and wildcards, such
+     * as $.items[*].name: the JSON is streamed, with only the selected values held in memory.
+     * Set to -1 to never stream.
+     * Default is 67108864 (64MB).
+     *
+     * @parameter default-value="67108864"
+     */
+    private long streamingThreshold = 67108864L;
+
+    /**
+     * Keep the formatting of XML and JSON files replaced with xpath or jsonpath: only the changed
+     * attribute values, text, comments, elements and JSON values are rewritten, leaving
+     * indentation, attribute order, quoting, number formats and everything else as it was.
+     * Files that cannot be patched this way (JSON with comments or other lenient syntax, XML where
+     * a changed node is not written in the file, like an attribute defaulted by its DTD) are
+     * written out reformatted as usual. With this set, xpath and
+     * jsonpath replacements are not streamed (see streamingThreshold).
+     * Default is false.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean preserveFormat;
+
+    /**
+     * Directory in which token value map files are cached once read, such as
+     * ${project.build.directory}/maven-replacer-plugin/token-value-maps, so that later builds
+     * load them without parsing them again. Pointing executions of several modules at the same
+     * directory lets them share a map. A map is read again once its size or modification time
+     * changes. Within a build, maps are cached in memory whether or not this is set.
+     * Not set by default.
+     *
+     * @parameter
+     */
+    private String tokenValueMapCacheDir;
+
+    /**
+     * Skip files whose input and output have not changed since they were last replaced with the
+     * same replacements. The input files' sizes, modification times and hashes, the output files'
+     * sizes and modification times, and a fingerprint of the replacements (tokens, values, token
+     * and value file contents, delimiters, xpath, jsonpath, regex flags, encoding and engine) are
+     * kept in buildStateFile between builds.
+     * Default is false.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean incremental;
+
+    /**
+     * File holding the state used by incremental.
+     * Default is ${project.build.directory}/maven-replacer-plugin/${mojoExecution.executionId}.properties
+     *
+     * @parameter default-value="${project.build.directory}/maven-replacer-plugin/${mojoExecution.executionId}.properties"
+     */
+    private String buildStateFile = "target/maven-replacer-plugin/default.properties";
+
+    /**
+     * Time every file and every replacement applied to it: read, replace and write times, bytes
+     * read and written, and the number of matches of each replacement (which takes an extra scan
+     * of each file). The results are written as CSV to performanceReportFile, and the slowest
+     * files and replacements are logged.
+     * Default is false.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean performanceReport;
+
+    /**
+     * CSV file written when performanceReport is enabled.
+     * Default is ${project.build.directory}/maven-replacer-plugin/${mojoExecution.executionId}-performance.csv
+     *
+     * @parameter default-value="${project.build.directory}/maven-replacer-plugin/${mojoExecution.executionId}-performance.csv"
+     */
+    private String performanceReportFile = "target/maven-replacer-plugin/default-performance.csv";
+
+    /**
+     * Number of slowest files and slowest replacements logged when performanceReport is enabled.
+     * Default is 10.
+     *
+     * @parameter default-value="10"
+     */
+    private int performanceReportTop = 10;
+
     /**
      * list files
      * 
@@ -421,19 +592,41 @@ public class ReplacerMojo extends AbstractMojo {
 				return;
 			}
 
-			List<Replacement> replacements = getDelimiterReplacements(buildReplacements());
+			int flags = patternFlagsFactory.buildFlags(regexFlags);
+			tokenValueMapFactory.setCacheDirectory(tokenValueMapCacheDir);
+			List<Replacement> replacements = CompiledReplacement.compile(getDelimiterReplacements(buildReplacements()),
+					regex, flags);
+			ReplacementEngine replacementEngine = ReplacementEngine.fromName(engine);
+			processor.setStreamingThreshold(streamingThreshold);
+			replacerFactory.setPreserveFormat(preserveFormat);
+			if (performanceReport) {
+				report = new PerformanceReport();
+				processor.setReport(report);
+			}
 			addIncludesFilesAndExcludedFiles();
 			if (includes.isEmpty()) {
+			    List<Replacement> applied = limit(replacements);
+			    loadBuildState(applied, flags, replacementEngine);
+			    List<Replacement> prepared = replacementEngine.prepare(applied, regex, flags, buildDelimiters());
 			    if (files.isEmpty()) {
-			        replaceContents(processor, limit(replacements), file);
+			        replaceContents(processor, prepared, flags, file);
                 }else {
-                    replaceContents(processor, limit(replacements), files);
+                    replaceContents(processor, prepared, flags, files, true);
                 }
 				return;
 			}
 
-            for (String file : limit(fileSelector.listIncludes(basedir, includes, excludes))) {
-				replaceContents(processor, replacements, file);
+			loadBuildState(replacements, flags, replacementEngine);
+			List<Replacement> prepared = replacementEngine.prepare(replacements, regex, flags, buildDelimiters());
+			fileSelector.setScanner(scanner);
+			fileSelector.setParallelism(resolveThreads());
+			Iterator<String> inputFiles = fileSelector.selectIncludes(basedir, includes, excludes);
+			try {
+				replaceContentsAsFound(processor, prepared, flags, inputFiles);
+			} finally {
+				if (inputFiles instanceof Closeable) {
+					((Closeable) inputFiles).close();
+				}
 			}
 		} catch (Exception e) {
 			getLog().error(e.getMessage());
@@ -442,12 +635,47 @@ public class ReplacerMojo extends AbstractMojo {
 				throw new MojoExecutionException(e.getMessage(), e);
 			}
 		} finally {
+			saveBuildState();
+			writePerformanceReport();
 			if (!skip && !quiet) {
 				summaryBuilder.print(getLog());
 			}
 		}
 	}
 
+    private void loadBuildState(List<Replacement> replacements, int flags, ReplacementEngine replacementEngine)
+            throws IOException {
+        if (incremental) {
+            buildState = new BuildState(buildStateFile,
+                    BuildState.fingerprint(replacements, regex, flags, encoding, replacementEngine.name(),
+                            preserveFormat));
+        }
+    }
+
+    private void writePerformanceReport() {
+        if (report == null) {
+            return;
+        }
+        report.logSlowest(getLog(), performanceReportTop);
+        try {
+            report.writeCsv(fileUtils, performanceReportFile);
+            getLog().info("Performance report written to " + performanceReportFile);
+        } catch (IOException e) {
+            getLog().warn("Unable to write performance report to " + performanceReportFile + ": " + e.getMessage());
+        }
+    }
+
+    private void saveBuildState() {
+        if (buildState == null) {
+            return;
+        }
+        try {
+            buildState.save();
+        } catch (IOException e) {
+            getLog().warn("Unable to save build state to " + buildStateFile + ": " + e.getMessage());
+        }
+    }
+
     private <T> List<T> limit(List<T> all) {
         if (all.size() > maxReplacements) {
             getLog().info("Max replacements has been exceeded. Limiting to the first: " + maxReplacements);
@@ -489,39 +717,220 @@ public class ReplacerMojo extends AbstractMojo {
 		}
 	}
 
-	private void replaceContents(ReplacementProcessor processor, List<Replacement> replacements, String inputFile) throws IOException {
+	private void replaceContents(ReplacementProcessor processor, List<Replacement> replacements, int flags,
+			String inputFile) throws IOException {
 	    String outputFileName = outputFilenameBuilder.buildFrom(inputFile, this);
+		FileOutcome outcome;
 		try {
-			processor.replace(replacements, regex, getBaseDirPrefixedFilename(inputFile),
-					outputFileName, patternFlagsFactory.buildFlags(regexFlags), encoding);
+			outcome = replaceFile(processor, replacements, flags, inputFile, outputFileName);
 		} catch (PatternSyntaxException e) {
-			if (!delimiters.isEmpty()) {
+			getLog().error(String.format(REGEX_PATTERN_WITH_DELIMITERS_MESSAGE, e.getMessage()));
+			throw e;
+		}
+		addToSummary(inputFile, outputFileName, outcome);
+	}
+
+	private void addToSummary(String inputFile, String outputFileName, FileOutcome outcome) {
+		if (outcome == FileOutcome.UP_TO_DATE) {
+			summaryBuilder.addUpToDate(getBaseDirPrefixedFilename(inputFile), getLog());
+			return;
+		}
+		summaryBuilder.add(getBaseDirPrefixedFilename(inputFile), outputFileName, encoding, getLog());
+		if (outcome == FileOutcome.UNCHANGED) {
+			summaryBuilder.addUnchanged(outputFileName, getLog());
+		}
+	}
+
+	private void replaceContents(ReplacementProcessor processor, List<Replacement> replacements, int flags,
+			List<String> inputFiles, boolean indexedOutputs) throws Exception {
+		int workers = Math.min(resolveThreads(), inputFiles.size());
+		if (workers > 1) {
+			replaceContentsInParallel(processor, replacements, flags, inputFiles, indexedOutputs, workers);
+			return;
+		}
+
+		for (int index = 0; index < inputFiles.size(); index++) {
+			String inputFile = inputFiles.get(index);
+			if (!indexedOutputs) {
+				replaceContents(processor, replacements, flags, inputFile);
+				continue;
+			}
+
+			getLog().info(inputFile);
+			String outputFileName = outputFilenameBuilder.buildFrom(inputFile, this, index);
+			getLog().info(outputFileName);
+			FileOutcome outcome;
+			try {
+				outcome = replaceFile(processor, replacements, flags, inputFile, outputFileName);
+			} catch (PatternSyntaxException e) {
 				getLog().error(String.format(REGEX_PATTERN_WITH_DELIMITERS_MESSAGE, e.getMessage()));
 				throw e;
 			}
+			addToSummary(inputFile, outputFileName, outcome);
 		}
-		summaryBuilder.add(getBaseDirPrefixedFilename(inputFile), outputFileName, encoding, getLog());
 	}
-	
-	private void replaceContents(ReplacementProcessor processor, List<Replacement> replacements, List<String> inputFiles) throws IOException {
-        int index = 0;
-	    for (String inputFile : inputFiles) {
-	        getLog().info(inputFile);
-            String outputFileName = outputFilenameBuilder.buildFrom(inputFile, this, index);
-            getLog().info(outputFileName);
-            try {
-                processor.replace(replacements, regex, getBaseDirPrefixedFilename(inputFile),
-                        outputFileName, patternFlagsFactory.buildFlags(regexFlags), encoding);
-            } catch (PatternSyntaxException e) {
-                if (!delimiters.isEmpty()) {
-                    getLog().error(String.format(REGEX_PATTERN_WITH_DELIMITERS_MESSAGE, e.getMessage()));
-                    throw e;
-                }
-            }
-            index ++;
-            summaryBuilder.add(getBaseDirPrefixedFilename(inputFile), outputFileName, encoding, getLog());
-        }
-    }
+
+	private void replaceContentsInParallel(final ReplacementProcessor processor, final List<Replacement> replacements,
+			final int flags, List<String> inputFiles, boolean indexedOutputs, int workers) throws Exception {
+		List<String> outputFileNames = new ArrayList<String>(inputFiles.size());
+		for (int index = 0; index < inputFiles.size(); index++) {
+			String inputFile = inputFiles.get(index);
+			outputFileNames.add(indexedOutputs ? outputFilenameBuilder.buildFrom(inputFile, this, index)
+					: outputFilenameBuilder.buildFrom(inputFile, this));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<FileOutcome>> results = new ArrayList<Future<FileOutcome>>(inputFiles.size());
+			for (int index = 0; index < inputFiles.size(); index++) {
+				final String inputFile = inputFiles.get(index);
+				final String outputFileName = outputFileNames.get(index);
+				results.add(executor.submit(new Callable<FileOutcome>() {
+					public FileOutcome call() throws IOException {
+						return replaceFile(processor, replacements, flags, inputFile, outputFileName);
+					}
+				}));
+			}
+
+			// Results are reported in input order, so the log is the same whatever order files finish in.
+			Exception failure = null;
+			for (int index = 0; index < inputFiles.size(); index++) {
+				String inputFile = inputFiles.get(index);
+				if (indexedOutputs) {
+					getLog().info(inputFile);
+					getLog().info(outputFileNames.get(index));
+				}
+				failure = report(inputFile, outputFileNames.get(index), results.get(index), failure);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Replaces the files as they are found, while the rest are still being looked for, up to
+	 * maxReplacements files. With several threads, files found are queued to be replaced and
+	 * reported in the order found, with no more than a few per thread waiting.
+	 */
+	private void replaceContentsAsFound(final ReplacementProcessor processor, final List<Replacement> replacements,
+			final int flags, Iterator<String> inputFiles) throws Exception {
+		int workers = resolveThreads();
+		if (workers == 1) {
+			for (int count = 0; inputFiles.hasNext(); count++) {
+				String inputFile = inputFiles.next();
+				if (count == maxReplacements) {
+					getLog().info("Max replacements has been exceeded. Limiting to the first: " + maxReplacements);
+					return;
+				}
+				replaceContents(processor, replacements, flags, inputFile);
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			Deque<PendingFile> pending = new ArrayDeque<PendingFile>();
+			Exception failure = null;
+			for (int count = 0; inputFiles.hasNext(); count++) {
+				final String inputFile = inputFiles.next();
+				if (count == maxReplacements) {
+					getLog().info("Max replacements has been exceeded. Limiting to the first: " + maxReplacements);
+					break;
+				}
+				final String outputFileName = outputFilenameBuilder.buildFrom(inputFile, this);
+				pending.add(new PendingFile(inputFile, outputFileName, executor.submit(new Callable<FileOutcome>() {
+					public FileOutcome call() throws IOException {
+						return replaceFile(processor, replacements, flags, inputFile, outputFileName);
+					}
+				})));
+				while (!pending.isEmpty() && (pending.peek().result.isDone() || pending.size() > workers * 2)) {
+					PendingFile done = pending.poll();
+					failure = report(done.inputFile, done.outputFileName, done.result, failure);
+				}
+			}
+			while (!pending.isEmpty()) {
+				PendingFile done = pending.poll();
+				failure = report(done.inputFile, done.outputFileName, done.result, failure);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for a file replaced concurrently and adds it to the summary, returning the first
+	 * failure so far. Failures after the first are logged.
+	 */
+	private Exception report(String inputFile, String outputFileName, Future<FileOutcome> result, Exception failure)
+			throws InterruptedException {
+		try {
+			addToSummary(inputFile, outputFileName, result.get());
+			return failure;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			Exception cause = (Exception) e.getCause();
+			if (failure != null) {
+				getLog().error(String.format(FILE_FAILURE_MESSAGE, inputFile, cause.getMessage()));
+				return failure;
+			}
+			if (cause instanceof PatternSyntaxException) {
+				getLog().error(String.format(REGEX_PATTERN_WITH_DELIMITERS_MESSAGE, cause.getMessage()));
+			}
+			return cause;
+		}
+	}
+
+	/**
+	 * Replaces the contents of a single file, unless the build state shows it is up to date.
+	 * Regex errors are only rethrown when delimiters are used, in which case they are most likely
+	 * caused by regex characters in the delimiters.
+	 */
+	private FileOutcome replaceFile(ReplacementProcessor processor, List<Replacement> replacements, int flags,
+			String inputFile, String outputFileName) throws IOException {
+		String input = getBaseDirPrefixedFilename(inputFile);
+		if (buildState != null && buildState.isUpToDate(input, outputFileName)) {
+			return FileOutcome.UP_TO_DATE;
+		}
+
+		boolean written;
+		try {
+			written = processor.replace(replacements, regex, input, outputFileName, flags, encoding);
+		} catch (PatternSyntaxException e) {
+			if (!delimiters.isEmpty()) {
+				throw e;
+			}
+			return FileOutcome.UNCHANGED;
+		}
+		if (buildState != null) {
+			buildState.record(input, outputFileName);
+		}
+		return written ? FileOutcome.WRITTEN : FileOutcome.UNCHANGED;
+	}
+
+	private int resolveThreads() {
+		String configured = isBlank(threads) ? "1" : threads.trim();
+		try {
+			if (configured.endsWith("C") || configured.endsWith("c")) {
+				float perCore = Float.parseFloat(configured.substring(0, configured.length() - 1));
+				if (perCore > 0) {
+					return Math.max(1, (int) (perCore * Runtime.getRuntime().availableProcessors()));
+				}
+			} else if (Integer.parseInt(configured) > 0) {
+				return Integer.parseInt(configured);
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException(String.format(INVALID_THREADS_MESSAGE, threads));
+	}
 
 	private List<Replacement> buildReplacements() throws IOException {
 		if (replacements != null) {
@@ -535,6 +944,7 @@ public class ReplacerMojo extends AbstractMojo {
 
 		if (tokenValueMap == null) {
 			Replacement replacement = new Replacement(fileUtils, token, value, unescape, xpath, encoding, jsonpath, jsontype);
+			replacement.setXpathInPlace(xpathInPlace);
 			replacement.setEncoding(encoding);
 			replacement.setTokenFile(tokenFile);
 			replacement.setValueFile(valueFile);
@@ -553,6 +963,9 @@ public class ReplacerMojo extends AbstractMojo {
 		if (delimiters.isEmpty()) {
 			return replacements;
 		}
+		if (replacements instanceof TokenValueTable) {
+			return ((TokenValueTable) replacements).withDelimiters(buildDelimiters());
+		}
 
 		List<Replacement> newReplacements = new ArrayList<Replacement>();
 		for (Replacement replacement : replacements) {
@@ -736,6 +1149,10 @@ public class ReplacerMojo extends AbstractMojo {
 		this.xpath = xpath;
 	}
 
+	public void setXpathInPlace(boolean xpathInPlace) {
+		this.xpathInPlace = xpathInPlace;
+	}
+
 	public void setJsonpath(String jsonpath) {
 		this.jsonpath = jsonpath;
 	}
@@ -784,6 +1201,94 @@ public class ReplacerMojo extends AbstractMojo {
         this.maxReplacements = maxReplacements;
     }
 
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setThreads(String threads) {
+        this.threads = threads;
+    }
+
+    public String getThreads() {
+        return threads;
+    }
+
+    public void setStreamingThreshold(long streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    public long getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    public void setPreserveFormat(boolean preserveFormat) {
+        this.preserveFormat = preserveFormat;
+    }
+
+    public boolean isPreserveFormat() {
+        return preserveFormat;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setBuildStateFile(String buildStateFile) {
+        this.buildStateFile = buildStateFile;
+    }
+
+    public void setScanner(String scanner) {
+        this.scanner = scanner;
+    }
+
+    public String getScanner() {
+        return scanner;
+    }
+
+    public void setTokenValueMapCacheDir(String tokenValueMapCacheDir) {
+        this.tokenValueMapCacheDir = tokenValueMapCacheDir;
+    }
+
+    public String getTokenValueMapCacheDir() {
+        return tokenValueMapCacheDir;
+    }
+
+    public String getBuildStateFile() {
+        return buildStateFile;
+    }
+
+    public void setPerformanceReport(boolean performanceReport) {
+        this.performanceReport = performanceReport;
+    }
+
+    public boolean isPerformanceReport() {
+        return performanceReport;
+    }
+
+    public void setPerformanceReportFile(String performanceReportFile) {
+        this.performanceReportFile = performanceReportFile;
+    }
+
+    public String getPerformanceReportFile() {
+        return performanceReportFile;
+    }
+
+    public void setPerformanceReportTop(int performanceReportTop) {
+        this.performanceReportTop = performanceReportTop;
+    }
+
+    public int getPerformanceReportTop() {
+        return performanceReportTop;
+    }
+
     public List<String> getFiles() {
         return files;
     }
@@ -799,4 +1304,20 @@ public class ReplacerMojo extends AbstractMojo {
     public void setOutputFiles(List<String> outputFiles) {
         this.outputFiles = outputFiles;
     }
+
+	private enum FileOutcome {
+		WRITTEN, UNCHANGED, UP_TO_DATE
+	}
+
+	private static final class PendingFile {
+		private final String inputFile;
+		private final String outputFileName;
+		private final Future<FileOutcome> result;
+
+		PendingFile(String inputFile, String outputFileName, Future<FileOutcome> result) {
+			this.inputFile = inputFile;
+			this.outputFileName = outputFileName;
+			this.result = result;
+		}
+	}
 }
@@ -0,0 +1,192 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+import static org.apache.commons.lang.StringUtils.isNotEmpty;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Applies jsonpath replacements while streaming the JSON from a reader to a writer. Only the
+ * selected values are built as trees, the rest of the document passes through token by token.
+ *
+ * The jsonpaths must be within the subset {@link CompiledJsonPath} supports. Values are replaced
+ * as {@link JsonPathReplacer} does, jsontype included, and the output is formatted as it
+ * formats it. Replacements are applied in order, also where one selects values within another's.
+ */
+public class StreamingJsonReplacer {
+	private static final String INDENT = "  ";
+
+	private final List<Replacement> replacements;
+	private final List<CompiledJsonPath> paths = new ArrayList<CompiledJsonPath>();
+	private final TokenReplacer tokenReplacer;
+	private final boolean regex;
+	private final int regexFlags;
+	private final Gson gson = new GsonBuilder().serializeNulls().setPrettyPrinting().create();
+	private final JsonParser parser = new JsonParser();
+
+	public StreamingJsonReplacer(List<Replacement> replacements, TokenReplacer tokenReplacer, boolean regex,
+			int regexFlags) {
+		for (Replacement replacement : replacements) {
+			if (!supports(replacement)) {
+				throw new IllegalArgumentException("JSON path not supported when streaming: " + replacement.getJsonpath());
+			}
+			paths.add(CompiledJsonPath.compile(replacement.getJsonpath()));
+		}
+		this.replacements = replacements;
+		this.tokenReplacer = tokenReplacer;
+		this.regex = regex;
+		this.regexFlags = regexFlags;
+	}
+
+	/**
+	 * Whether the replacement is located by a jsonpath within the supported subset, so that it can be streamed.
+	 */
+	public static boolean supports(Replacement replacement) {
+		if (replacement instanceof GroupedReplacement || isEmpty(replacement.getToken())
+				|| isNotEmpty(replacement.getXpath())) {
+			return false;
+		}
+		CompiledJsonPath path = CompiledJsonPath.compile(replacement.getJsonpath());
+		return path != null && path.size() > 0;
+	}
+
+	/**
+	 * @return whether any value was selected; when none was, the output is to be discarded, as
+	 *         {@link JsonPathReplacer} leaves such content untouched rather than reformatting it
+	 */
+	public boolean replace(Reader input, Writer output) throws IOException {
+		JsonReader reader = new JsonReader(input);
+		reader.setLenient(true);
+		JsonWriter writer = new JsonWriter(output);
+		writer.setIndent(INDENT);
+		writer.setLenient(true);
+		writer.setHtmlSafe(true);
+		writer.setSerializeNulls(true);
+
+		boolean replaced = copyValue(reader, writer, new ArrayList<Object>());
+		if (reader.peek() != JsonToken.END_DOCUMENT) {
+			throw new JsonSyntaxException("Did not consume the entire document.");
+		}
+		writer.flush();
+		return replaced;
+	}
+
+	private boolean copyValue(JsonReader reader, JsonWriter writer, List<Object> location) throws IOException {
+		boolean within = false;
+		for (CompiledJsonPath path : paths) {
+			if (path.selects(location)) {
+				replaceValue(reader, writer, location);
+				return true;
+			}
+			within |= path.selectsWithin(location);
+		}
+
+		boolean replaced = false;
+		switch (reader.peek()) {
+		case BEGIN_OBJECT:
+			reader.beginObject();
+			writer.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				writer.name(name);
+				location.add(name);
+				replaced |= within ? copyValue(reader, writer, location) : copyUnselected(reader, writer);
+				location.remove(location.size() - 1);
+			}
+			reader.endObject();
+			writer.endObject();
+			break;
+		case BEGIN_ARRAY:
+			reader.beginArray();
+			writer.beginArray();
+			for (int index = 0; reader.hasNext(); index++) {
+				location.add(index);
+				replaced |= within ? copyValue(reader, writer, location) : copyUnselected(reader, writer);
+				location.remove(location.size() - 1);
+			}
+			reader.endArray();
+			writer.endArray();
+			break;
+		default:
+			copyUnselected(reader, writer);
+		}
+		return replaced;
+	}
+
+	/**
+	 * Copies a value in which nothing is selected.
+	 */
+	private boolean copyUnselected(JsonReader reader, JsonWriter writer) throws IOException {
+		switch (reader.peek()) {
+		case BEGIN_OBJECT:
+			reader.beginObject();
+			writer.beginObject();
+			while (reader.hasNext()) {
+				writer.name(reader.nextName());
+				copyUnselected(reader, writer);
+			}
+			reader.endObject();
+			writer.endObject();
+			break;
+		case BEGIN_ARRAY:
+			reader.beginArray();
+			writer.beginArray();
+			while (reader.hasNext()) {
+				copyUnselected(reader, writer);
+			}
+			reader.endArray();
+			writer.endArray();
+			break;
+		case STRING:
+			writer.value(reader.nextString());
+			break;
+		case NUMBER:
+			writer.jsonValue(reader.nextString());
+			break;
+		case BOOLEAN:
+			writer.value(reader.nextBoolean());
+			break;
+		case NULL:
+			reader.nextNull();
+			writer.nullValue();
+			break;
+		default:
+			throw new JsonSyntaxException("Unexpected " + reader.peek() + " at " + reader.getPath());
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the selected value as a tree and applies, in order, every replacement that selects it
+	 * or values within it.
+	 */
+	private void replaceValue(JsonReader reader, JsonWriter writer, List<Object> location) {
+		JsonArray holder = new JsonArray();
+		holder.add(parser.parse(reader));
+		for (int i = 0; i < replacements.size(); i++) {
+			if (!paths.get(i).selectsWithin(location)) {
+				continue;
+			}
+			Replacement replacement = replacements.get(i);
+			for (CompiledJsonPath.Target target : paths.get(i).resolveWithin(holder, location.size())) {
+				String replacedValue = tokenReplacer.replace(JsonPathReplacer.source(target.get()), replacement,
+						regex, regexFlags);
+				target.set(JsonPathReplacer.normalizeValue(replacedValue, replacement));
+			}
+		}
+		gson.toJson(holder.get(0), writer);
+	}
+}
@@ -0,0 +1,335 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Applies xpath replacements while streaming the XML from a reader to a writer, holding no more
+ * than the current element path and text node in memory.
+ *
+ * Only a subset of xpath is supported: absolute paths of child steps, each naming an element
+ * (without namespace prefix) or {@code *}, optionally followed by a positional predicate such as
+ * {@code [2]}, and ending in an element, an attribute ({@code @name}) or {@code text()}. For example
+ * {@code /export/record[3]/@id} or {@code /export/record/value/text()}.
+ * Text and attributes are replaced as {@link XPathReplacer} does. Elements are only supported
+ * when replaced {@link Replacement#isXpathInPlace() in place}, as their markup is never built as a
+ * string. Unlike {@link XPathReplacer}, the markup is written back as read rather than normalized
+ * by a serializer, so attributes keep their order, and whitespace within the root element is kept.
+ * Only what the parser reports is written back though: whitespace outside the root element is
+ * dropped, attributes are written in double quotes, and character references are written as the
+ * characters they stand for (escaped only where the markup needs it).
+ *
+ * The replacer keeps track of the position within the document, so each instance replaces one file.
+ */
+public class StreamingXmlReplacer {
+	private static final Pattern ELEMENT_STEP = Pattern.compile("([A-Za-z_][\\w.\\-]*|\\*)(?:\\[\\s*([1-9]\\d*)\\s*\\])?");
+	private static final Pattern ATTRIBUTE_STEP = Pattern.compile("@([A-Za-z_][\\w.\\-]*)");
+	private static final String TEXT_STEP = "text()";
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	private final List<PathReplacement> replacements = new ArrayList<PathReplacement>();
+	private final TokenReplacer tokenReplacer;
+	private final boolean regex;
+	private final int regexFlags;
+	private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+	public StreamingXmlReplacer(List<Replacement> replacements, TokenReplacer tokenReplacer, boolean regex,
+			int regexFlags) {
+		for (Replacement replacement : replacements) {
+			PathReplacement path = PathReplacement.parse(replacement);
+			if (path == null) {
+				throw new IllegalArgumentException("XPath not supported when streaming: " + replacement.getXpath());
+			}
+			this.replacements.add(path);
+		}
+		this.tokenReplacer = tokenReplacer;
+		this.regex = regex;
+		this.regexFlags = regexFlags;
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		if (inputFactory.isPropertySupported(REPORT_CDATA)) {
+			inputFactory.setProperty(REPORT_CDATA, true);
+		}
+	}
+
+	/**
+	 * Whether the replacement's xpath is within the supported subset, so that it can be streamed.
+	 */
+	public static boolean supports(Replacement replacement) {
+		return PathReplacement.parse(replacement) != null;
+	}
+
+	public void replace(Reader input, Writer output) throws XMLStreamException, IOException {
+		XMLStreamReader reader = inputFactory.createXMLStreamReader(input);
+		StringBuilder text = new StringBuilder();
+		boolean startOpen = false;
+		try {
+			while (true) {
+				int event = reader.getEventType();
+				if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+					text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				} else {
+					if (startOpen && (event != XMLStreamConstants.END_ELEMENT || text.length() > 0)) {
+						output.write(">");
+						startOpen = false;
+					}
+					writeText(output, text);
+					startOpen = write(reader, event, output, startOpen);
+				}
+				if (!reader.hasNext()) {
+					break;
+				}
+				reader.next();
+			}
+			output.flush();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Writes the current event, other than character data.
+	 *
+	 * @return whether a start tag was written but not yet closed, so that it can still become an empty element
+	 */
+	private boolean write(XMLStreamReader reader, int event, Writer output, boolean startOpen) throws IOException {
+		switch (event) {
+		case XMLStreamConstants.START_DOCUMENT:
+			if (reader.getVersion() != null) {
+				output.write("<?xml version=\"" + reader.getVersion() + "\"");
+				if (reader.getCharacterEncodingScheme() != null) {
+					output.write(" encoding=\"" + reader.getCharacterEncodingScheme() + "\"");
+				}
+				if (reader.standaloneSet()) {
+					output.write(" standalone=\"" + (reader.isStandalone() ? "yes" : "no") + "\"");
+				}
+				output.write("?>");
+			}
+			return false;
+		case XMLStreamConstants.START_ELEMENT:
+			writeStartElement(reader, output);
+			return true;
+		case XMLStreamConstants.END_ELEMENT:
+			output.write(startOpen ? "/>" : "</" + qualifiedName(reader.getName()) + ">");
+			for (PathReplacement replacement : replacements) {
+				replacement.end();
+			}
+			return false;
+		case XMLStreamConstants.CDATA:
+			String data = replaceText(reader.getText());
+			output.write("<![CDATA[" + data.replace("]]>", "]]]]><![CDATA[>") + "]]>");
+			return false;
+		case XMLStreamConstants.COMMENT:
+			output.write("<!--" + replaceComment(reader.getText()) + "-->");
+			return false;
+		case XMLStreamConstants.PROCESSING_INSTRUCTION:
+			String piData = reader.getPIData();
+			output.write("<?" + reader.getPITarget() + (isEmpty(piData) ? "" : " " + piData) + "?>");
+			return false;
+		case XMLStreamConstants.DTD:
+			output.write(reader.getText());
+			return false;
+		case XMLStreamConstants.ENTITY_REFERENCE:
+			output.write("&" + reader.getLocalName() + ";");
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private void writeStartElement(XMLStreamReader reader, Writer output) throws IOException {
+		for (PathReplacement replacement : replacements) {
+			replacement.start(reader.getName());
+		}
+		output.write("<" + qualifiedName(reader.getName()));
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			String prefix = reader.getNamespacePrefix(i);
+			output.write(" xmlns" + (isEmpty(prefix) ? "" : ":" + prefix) + "=\"");
+			output.write(escape(reader.getNamespaceURI(i), true) + "\"");
+		}
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			QName name = reader.getAttributeName(i);
+			String value = reader.getAttributeValue(i);
+			for (PathReplacement replacement : replacements) {
+				if (replacement.selectsAttribute(name)) {
+					value = tokenReplacer.replace(value, replacement.replacement, regex, regexFlags);
+				}
+			}
+			output.write(" " + qualifiedName(name) + "=\"" + escape(value, true) + "\"");
+		}
+	}
+
+	private void writeText(Writer output, StringBuilder text) throws IOException {
+		if (text.length() > 0) {
+			output.write(escape(replaceText(text.toString()), false));
+			text.setLength(0);
+		}
+	}
+
+	private String replaceText(String text) {
+		for (PathReplacement replacement : replacements) {
+			if (replacement.selectsText()) {
+				text = tokenReplacer.replace(text, replacement.replacement, regex, regexFlags);
+			}
+		}
+		return text;
+	}
+
+	private String replaceComment(String comment) {
+		for (PathReplacement replacement : replacements) {
+			if (replacement.isInSelectedElement()) {
+				comment = tokenReplacer.replace(comment, replacement.replacement, regex, regexFlags);
+			}
+		}
+		return comment;
+	}
+
+	private static String qualifiedName(QName name) {
+		return isEmpty(name.getPrefix()) ? name.getLocalPart() : name.getPrefix() + ":" + name.getLocalPart();
+	}
+
+	private static String escape(String text, boolean attribute) {
+		StringBuilder escaped = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				escaped.append("&amp;");
+				break;
+			case '<':
+				escaped.append("&lt;");
+				break;
+			case '>':
+				escaped.append("&gt;");
+				break;
+			case '"':
+				escaped.append(attribute ? "&quot;" : "\"");
+				break;
+			case '\t': case '\n': case '\r':
+				escaped.append(attribute || c == '\r' ? "&#" + (int) c + ";" : String.valueOf(c));
+				break;
+			default:
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * A replacement with its xpath, tracking how much of the path the currently open elements match.
+	 */
+	private static final class PathReplacement {
+		private final Replacement replacement;
+		private final String[] names;
+		private final int[] positions;
+		private final String attribute;
+		private final boolean text;
+		private final int[] counts;
+		private int depth;
+		private int matched;
+
+		private PathReplacement(Replacement replacement, List<String> names, List<Integer> positions,
+				String attribute, boolean text) {
+			this.replacement = replacement;
+			this.names = names.toArray(new String[names.size()]);
+			this.positions = new int[positions.size()];
+			for (int i = 0; i < this.positions.length; i++) {
+				this.positions[i] = positions.get(i);
+			}
+			this.attribute = attribute;
+			this.text = text;
+			this.counts = new int[this.names.length];
+		}
+
+		/**
+		 * The replacement with its parsed xpath, or null when the xpath is not within the
+		 * supported subset or selects elements without replacing them in place.
+		 */
+		static PathReplacement parse(Replacement replacement) {
+			String xpath = replacement.getXpath() == null ? "" : replacement.getXpath().trim();
+			if (!xpath.startsWith("/") || xpath.startsWith("//") || isEmpty(replacement.getToken())
+					|| replacement instanceof GroupedReplacement) {
+				return null;
+			}
+			String[] steps = xpath.substring(1).split("/", -1);
+			List<String> names = new ArrayList<String>();
+			List<Integer> positions = new ArrayList<Integer>();
+			for (int i = 0; i < steps.length; i++) {
+				String step = steps[i].trim();
+				boolean last = i == steps.length - 1;
+				Matcher element = ELEMENT_STEP.matcher(step);
+				if (element.matches()) {
+					names.add(element.group(1));
+					positions.add(element.group(2) == null ? 0 : Integer.parseInt(element.group(2)));
+					continue;
+				}
+				if (!last || names.isEmpty()) {
+					return null;
+				}
+				Matcher attribute = ATTRIBUTE_STEP.matcher(step);
+				if (attribute.matches()) {
+					return new PathReplacement(replacement, names, positions, attribute.group(1), false);
+				}
+				return TEXT_STEP.equals(step.replace(" ", "")) ? new PathReplacement(replacement, names, positions,
+						null, true) : null;
+			}
+			return replacement.isXpathInPlace() && !names.isEmpty() ? new PathReplacement(replacement, names,
+					positions, null, false) : null;
+		}
+
+		void start(QName name) {
+			if (matched == depth && depth < names.length && matchesName(names[depth], name)) {
+				counts[depth]++;
+				if (positions[depth] == 0 || positions[depth] == counts[depth]) {
+					matched++;
+					if (matched < names.length) {
+						counts[matched] = 0;
+					}
+				}
+			}
+			depth++;
+		}
+
+		void end() {
+			if (matched == depth) {
+				matched--;
+			}
+			depth--;
+		}
+
+		private static boolean matchesName(String step, QName name) {
+			return isEmpty(name.getPrefix()) && ("*".equals(step) || step.equals(name.getLocalPart()));
+		}
+
+		private boolean isSelectedElement() {
+			return matched == names.length && depth == names.length;
+		}
+
+		boolean isInSelectedElement() {
+			return matched == names.length && attribute == null && !text;
+		}
+
+		boolean selectsAttribute(QName name) {
+			if (attribute != null) {
+				return isSelectedElement() && isEmpty(name.getPrefix()) && attribute.equals(name.getLocalPart());
+			}
+			return isInSelectedElement();
+		}
+
+		boolean selectsText() {
+			return text ? isSelectedElement() : isInSelectedElement();
+		}
+	}
+}
@@ -1,22 +1,81 @@
 package com.google.code.maven_replacer_plugin;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.maven.plugin.logging.Log;
 
 public class SummaryBuilder {
 
 	private static final String FILE_DEBUG_FORMAT = "Replacement run on %s and writing to %s with encoding %s";
 	private static final String SUMMARY_FORMAT = "Replacement run on %d file%s.";
-	
-	private int filesReplaced;
+	private static final String UNCHANGED_DEBUG_FORMAT = "Content of %s unchanged, not written";
+	private static final String WRITTEN_FORMAT = "Wrote %d file%s, %d unchanged.";
+	private static final String UP_TO_DATE_DEBUG_FORMAT = "Skipping %s, up to date";
+	private static final String UP_TO_DATE_FORMAT = "Skipped %d up to date file%s.";
+	private static final String PATTERN_CACHE_FORMAT = "Pattern cache, shared across the build: %d hit%s, %d miss%s while this execution ran.";
+
+	private final PatternCache patternCache;
+	private final long initialPatternHits;
+	private final long initialPatternMisses;
+	private final AtomicInteger filesReplaced = new AtomicInteger();
+	private final AtomicInteger filesUnchanged = new AtomicInteger();
+	private final AtomicInteger filesUpToDate = new AtomicInteger();
+
+	public SummaryBuilder() {
+		this(PatternCache.SHARED);
+	}
+
+	/**
+	 * The cache's hits and misses are counted from here on. Counts come from the cache as a whole,
+	 * so they include lookups of any other execution running meanwhile in a parallel build, and
+	 * are reported as such.
+	 */
+	public SummaryBuilder(PatternCache patternCache) {
+		this.patternCache = patternCache;
+		this.initialPatternHits = patternCache.getHits();
+		this.initialPatternMisses = patternCache.getMisses();
+	}
 
 	public void add(String inputFile, String outputFile, String encoding, Log log) {
 		String encodingUsed = encoding == null ? "(default)" : encoding;
 		log.debug(String.format(FILE_DEBUG_FORMAT, inputFile, outputFile, encodingUsed));
-		filesReplaced++;
+		filesReplaced.incrementAndGet();
+	}
+
+	/**
+	 * Records that a file added to the summary was left as is, because replacing did not change its content.
+	 */
+	public void addUnchanged(String outputFile, Log log) {
+		log.debug(String.format(UNCHANGED_DEBUG_FORMAT, outputFile));
+		filesUnchanged.incrementAndGet();
+	}
+
+	/**
+	 * Records that a file was skipped because it is up to date since the previous build.
+	 */
+	public void addUpToDate(String inputFile, Log log) {
+		log.debug(String.format(UP_TO_DATE_DEBUG_FORMAT, inputFile));
+		filesUpToDate.incrementAndGet();
 	}
 
 	public void print(Log log) {
-		log.info(String.format(SUMMARY_FORMAT, filesReplaced, filesReplaced > 1 ? "s" : ""));
+		int files = filesReplaced.get();
+		log.info(String.format(SUMMARY_FORMAT, files, files > 1 ? "s" : ""));
+		if (files > 0) {
+			int unchanged = filesUnchanged.get();
+			int written = files - unchanged;
+			log.info(String.format(WRITTEN_FORMAT, written, written == 1 ? "" : "s", unchanged));
+		}
+		int upToDate = filesUpToDate.get();
+		if (upToDate > 0) {
+			log.info(String.format(UP_TO_DATE_FORMAT, upToDate, upToDate == 1 ? "" : "s"));
+		}
+
+		long hits = patternCache.getHits() - initialPatternHits;
+		long misses = patternCache.getMisses() - initialPatternMisses;
+		if (hits + misses > 0) {
+			log.info(String.format(PATTERN_CACHE_FORMAT, hits, hits == 1 ? "" : "s", misses, misses == 1 ? "" : "es"));
+		}
 	}
 
 }
@@ -6,21 +6,30 @@ import static org.apache.commons.lang.StringUtils.isEmpty;
 import java.util.regex.Pattern;
 
 public class TokenReplacer implements Replacer {
+	private final PatternCache patternCache;
+
+	public TokenReplacer() {
+		this(PatternCache.SHARED);
+	}
+
+	public TokenReplacer(PatternCache patternCache) {
+		this.patternCache = patternCache;
+	}
+
 	public String replace(String content, Replacement replacement, boolean regex, int regexFlags) {
 		if (regex) {
+			Pattern compiled = replacement instanceof CompiledReplacement
+					? ((CompiledReplacement) replacement).getPattern(regexFlags) : null;
+			if (compiled != null) {
+				return compiled.matcher(content).replaceAll(defaultString(replacement.getValue()));
+			}
 			return replaceRegex(content, replacement.getToken(), replacement.getValue(), regexFlags);
 		}
 		return replaceNonRegex(content, replacement.getToken(), replacement.getValue());
 	}
-	
+
 	private String replaceRegex(String content, String token, String value, int flags) {
-		final Pattern compiledPattern;
-		if (flags == PatternFlagsFactory.NO_FLAGS) {
-			compiledPattern = Pattern.compile(token);
-		} else {
-			compiledPattern = Pattern.compile(token, flags);
-		}
-		
+		Pattern compiledPattern = patternCache.get(token, flags);
 		return compiledPattern.matcher(content).replaceAll(defaultString(value));
 	}
 
@@ -0,0 +1,288 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+/**
+ * Thread-safe cache of loaded token value map files, bounded by the number of pairs of the maps it
+ * holds, least recently used first out, and keyed on each file's path, size and
+ * modification time along with how it was read (comments, unescaping and encoding). The shared
+ * instance lives as long as the plugin's classloader, so executions and modules of a build reading
+ * the same map load it once.
+ *
+ * Given a directory, loaded maps are also written there, and read back from there by later builds
+ * instead of being parsed again. Cached files are checked against the map's path, size and
+ * modification time, and are written again when they no longer match. Cached files that cannot be
+ * read or written are ignored, and the map is parsed as usual.
+ *
+ * Cached tables are shared, so they are made read only, and keep what is derived from them (see
+ * {@link TokenValueTable#derive}), such as the replacers prepared from them, for as long as they
+ * are cached. A map with more pairs than the cache holds is loaded every time.
+ */
+public class TokenValueMapCache {
+	public static final int DEFAULT_MAX_PAIRS = 1 << 20;
+	public static final TokenValueMapCache SHARED = new TokenValueMapCache(DEFAULT_MAX_PAIRS);
+
+	private static final int MAGIC = 0x4D524D54;
+	private static final int VERSION = 1;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String SUFFIX = ".tvm";
+	private static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * Parses a map when it is not cached.
+	 */
+	public interface Loader {
+		TokenValueTable load() throws IOException;
+	}
+
+	private final int maxPairs;
+	private final Map<Key, TokenValueTable> tables = new LinkedHashMap<Key, TokenValueTable>(16, 0.75f, true);
+	private int pairs;
+
+	public TokenValueMapCache(int maxPairs) {
+		if (maxPairs < 1) {
+			throw new IllegalArgumentException("Token value map cache size must be positive: " + maxPairs);
+		}
+		this.maxPairs = maxPairs;
+	}
+
+	/**
+	 * The map in the file, from memory, else from the directory when given, else as loaded. Maps
+	 * found in memory are written to the directory when it does not have them yet. Files that do
+	 * not exist are loaded every time.
+	 */
+	public TokenValueTable get(String file, boolean commentsEnabled, boolean unescape, String encoding,
+			String directory, Loader loader) throws IOException {
+		File mapFile = new File(file);
+		if (!mapFile.isFile()) {
+			return loader.load();
+		}
+		Key key = new Key(mapFile.getCanonicalPath(), mapFile.length(), mapFile.lastModified(), commentsEnabled,
+				unescape, encoding);
+		File cached = directory == null ? null : cachedFile(directory, key);
+		TokenValueTable table;
+		synchronized (tables) {
+			table = tables.get(key);
+		}
+		if (table != null) {
+			if (cached != null && !cached.isFile()) {
+				write(cached, key, table);
+			}
+			return table;
+		}
+
+		table = cached == null ? null : read(cached, key);
+		if (table == null) {
+			table = loader.load();
+			if (cached != null) {
+				write(cached, key, table);
+			}
+		}
+		if (table.size() <= maxPairs) {
+			table.setReadOnly();
+			put(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Adds the table, making room for it by removing the least recently used ones. The table
+	 * added is the most recently used, and is never removed, as it fits.
+	 */
+	private void put(Key key, TokenValueTable table) {
+		synchronized (tables) {
+			TokenValueTable replaced = tables.put(key, table);
+			pairs += table.size() - (replaced == null ? 0 : replaced.size());
+			Iterator<TokenValueTable> eldest = tables.values().iterator();
+			while (pairs > maxPairs) {
+				pairs -= eldest.next().size();
+				eldest.remove();
+			}
+		}
+	}
+
+	public int size() {
+		synchronized (tables) {
+			return tables.size();
+		}
+	}
+
+	/**
+	 * The number of pairs of the maps cached.
+	 */
+	public int pairs() {
+		synchronized (tables) {
+			return pairs;
+		}
+	}
+
+	/**
+	 * Named after the map and how it is read but not its size or modification time, so that a
+	 * changed map replaces its cached file.
+	 */
+	private static File cachedFile(String directory, Key key) {
+		String name = new File(key.path).getName().replaceAll("[^A-Za-z0-9._-]", "_");
+		String read = key.path + "|" + key.commentsEnabled + "|" + key.unescape + "|" + key.encoding;
+		return new File(directory, name + "-" + Integer.toHexString(read.hashCode()) + SUFFIX);
+	}
+
+	/**
+	 * The table in the cached file, or null when there is none for this key or it cannot be read.
+	 */
+	private static TokenValueTable read(File cached, Key key) {
+		if (!cached.isFile()) {
+			return null;
+		}
+		try {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cached),
+					BUFFER_SIZE));
+			try {
+				if (input.readInt() != MAGIC || input.readInt() != VERSION || !key.equals(readKey(input))) {
+					return null;
+				}
+				int size = input.readInt();
+				TokenValueTable table = new TokenValueTable(new FileUtils(), key.encoding);
+				for (int i = 0; i < size; i++) {
+					table.add(readString(input), readString(input));
+				}
+				return table;
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the table to a temporary file renamed into place, so that a build reading the cached
+	 * file meanwhile never sees it half written.
+	 */
+	private static void write(File cached, Key key, TokenValueTable table) {
+		File folder = cached.getAbsoluteFile().getParentFile();
+		File temporary = null;
+		try {
+			if (!folder.mkdirs() && !folder.isDirectory()) {
+				return;
+			}
+			temporary = File.createTempFile(cached.getName(), ".tmp", folder);
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary),
+					BUFFER_SIZE));
+			try {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				writeKey(output, key);
+				output.writeInt(table.size());
+				for (int i = 0; i < table.size(); i++) {
+					writeString(output, table.getToken(i));
+					writeString(output, table.getValue(i));
+				}
+			} finally {
+				output.close();
+			}
+			if (cached.exists()) {
+				cached.delete();
+			}
+			if (temporary.renameTo(cached)) {
+				temporary = null;
+			}
+		} catch (IOException e) {
+			// left to be parsed again next time
+		} finally {
+			if (temporary != null) {
+				temporary.delete();
+			}
+		}
+	}
+
+	private static Key readKey(DataInputStream input) throws IOException {
+		String path = readString(input);
+		long length = input.readLong();
+		long lastModified = input.readLong();
+		boolean commentsEnabled = input.readBoolean();
+		boolean unescape = input.readBoolean();
+		String encoding = input.readBoolean() ? readString(input) : null;
+		return new Key(path, length, lastModified, commentsEnabled, unescape, encoding);
+	}
+
+	private static void writeKey(DataOutputStream output, Key key) throws IOException {
+		writeString(output, key.path);
+		output.writeLong(key.length);
+		output.writeLong(key.lastModified);
+		output.writeBoolean(key.commentsEnabled);
+		output.writeBoolean(key.unescape);
+		output.writeBoolean(key.encoding != null);
+		if (key.encoding != null) {
+			writeString(output, key.encoding);
+		}
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid string length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void writeString(DataOutputStream output, String text) throws IOException {
+		byte[] bytes = text.getBytes(UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static final class Key {
+		private final String path;
+		private final long length;
+		private final long lastModified;
+		private final boolean commentsEnabled;
+		private final boolean unescape;
+		private final String encoding;
+
+		Key(String path, long length, long lastModified, boolean commentsEnabled, boolean unescape,
+				String encoding) {
+			this.path = path;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.commentsEnabled = commentsEnabled;
+			this.unescape = unescape;
+			this.encoding = encoding;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return length == key.length && lastModified == key.lastModified
+					&& commentsEnabled == key.commentsEnabled && unescape == key.unescape && path.equals(key.path)
+					&& (encoding == null ? key.encoding == null : encoding.equals(key.encoding));
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = path.hashCode();
+			hash = 31 * hash + (int) (length ^ (length >>> 32));
+			hash = 31 * hash + (int) (lastModified ^ (lastModified >>> 32));
+			hash = 31 * hash + (commentsEnabled ? 1 : 0);
+			hash = 31 * hash + (unescape ? 1 : 0);
+			return 31 * hash + (encoding == null ? 0 : encoding.hashCode());
+		}
+	}
+}
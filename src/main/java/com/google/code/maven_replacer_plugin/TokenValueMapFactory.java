@@ -24,9 +24,10 @@ SOFTWARE.
  */
 package com.google.code.maven_replacer_plugin;
 
+import static org.apache.commons.lang.StringEscapeUtils.unescapeJava;
+
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -41,9 +42,23 @@ public class TokenValueMapFactory {
 	private static final String COMMENT_PREFIX = "#";
 
 	private final FileUtils fileUtils;
+	private final TokenValueMapCache cache;
+	private String cacheDirectory;
 
 	public TokenValueMapFactory(FileUtils fileUtils) {
+		this(fileUtils, TokenValueMapCache.SHARED);
+	}
+
+	public TokenValueMapFactory(FileUtils fileUtils, TokenValueMapCache cache) {
 		this.fileUtils = fileUtils;
+		this.cache = cache;
+	}
+
+	/**
+	 * Directory in which map files are also cached between builds, or null to cache them in memory only.
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
 	}
 	
 	public List<Replacement> replacementsForVariable(String variable, boolean commentsEnabled, boolean unescape, String encoding) {
@@ -61,26 +76,59 @@ public class TokenValueMapFactory {
 		return replacements;
 	}
 
-	public List<Replacement> replacementsForFile(String tokenValueMapFile, boolean commentsEnabled, 
-			boolean unescape, String encoding) 
+	/**
+	 * The map as a {@link TokenValueTable} from the cache, read only when the file is not cached as
+	 * it is now. Cached tables are shared.
+	 */
+	public List<Replacement> replacementsForFile(final String tokenValueMapFile, final boolean commentsEnabled, 
+			final boolean unescape, final String encoding) 
 		throws IOException {
-		String contents = fileUtils.readFile(tokenValueMapFile, encoding);
-		BufferedReader reader = new BufferedReader(new StringReader(contents));
+		return cache.get(tokenValueMapFile, commentsEnabled, unescape, encoding, cacheDirectory,
+				new TokenValueMapCache.Loader() {
+					public TokenValueTable load() throws IOException {
+						return readTable(tokenValueMapFile, commentsEnabled, unescape, encoding);
+					}
+				});
+	}
 
-		String fragment = null;
-		List<Replacement> replacements = new ArrayList<Replacement>();
-		while ((fragment = reader.readLine()) != null) {
-			fragment = fragment.trim();
-			if (ignoreFragment(fragment, commentsEnabled)) {
-				continue;
+	/**
+	 * Reads the map a line at a time into a {@link TokenValueTable}, unescaping tokens and values
+	 * as they are read, so that the file is never held in memory as a whole.
+	 */
+	private TokenValueTable readTable(String tokenValueMapFile, boolean commentsEnabled, boolean unescape,
+			String encoding) throws IOException {
+		BufferedReader reader = new BufferedReader(fileUtils.openReader(tokenValueMapFile, encoding));
+		try {
+			String fragment = null;
+			TokenValueTable table = new TokenValueTable(fileUtils, encoding);
+			while ((fragment = reader.readLine()) != null) {
+				fragment = fragment.trim();
+				if (ignoreFragment(fragment, commentsEnabled)) {
+					continue;
+				}
+
+				String[] pair = parsePair(fragment);
+				if (pair != null) {
+					table.add(unescape ? unescapeJava(pair[0]) : pair[0], unescape ? unescapeJava(pair[1]) : pair[1]);
+				}
 			}
-
-			appendReplacement(replacements, fragment, unescape, encoding);
+			return table;
+		} finally {
+			reader.close();
 		}
-		return replacements;
 	}
 	
 	private void appendReplacement(List<Replacement> replacements, String fragment, boolean unescape, String encoding) {
+		String[] pair = parsePair(fragment);
+		if (pair != null) {
+			replacements.add(new Replacement(fileUtils, pair[0], pair[1], unescape, null, encoding, null, null));
+		}
+	}
+
+	/**
+	 * The trimmed token and value of a token=value fragment, or null when it has no separator.
+	 */
+	private String[] parsePair(String fragment) {
 		StringBuilder token = new StringBuilder();
 		String value = "";
 		boolean settingToken = true;
@@ -101,11 +149,10 @@ public class TokenValueMapFactory {
 		}
 
 		if (settingToken) {
-			return;
+			return null;
 		}
 		
-		String tokenVal = token.toString().trim();
-		replacements.add(new Replacement(fileUtils, tokenVal, value.trim(), unescape, null, encoding, null, null));
+		return new String[] { token.toString().trim(), value.trim() };
 	}
 
 	private boolean isSeparatorAt(int i, String line) {
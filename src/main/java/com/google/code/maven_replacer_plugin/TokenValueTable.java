@@ -0,0 +1,202 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+/**
+ * Token and value pairs of a token value map, held as two arrays of strings with a hash index on
+ * the tokens rather than as one {@link Replacement} per pair, so that maps of hundreds of
+ * thousands of entries load and look up in linear time and space.
+ *
+ * As a list it reads as the plain replacements of its pairs, in order, each created when asked
+ * for. Tokens and values are stored resolved, already unescaped and delimited, so the
+ * replacements need no compiling (see {@link CompiledReplacement#compile}).
+ *
+ * Once made read only, as cached tables are (see {@link TokenValueMapCache}), a table can be
+ * shared: pairs can no longer be added, and what is derived from it, its delimited tables and
+ * the replacements prepared from it, is derived once and kept with it.
+ */
+public class TokenValueTable extends AbstractList<Replacement> implements RandomAccess {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final FileUtils fileUtils;
+	private final String encoding;
+	private String[] tokens = new String[INITIAL_CAPACITY];
+	private String[] values = new String[INITIAL_CAPACITY];
+	private int size;
+	/** Open addressed on the token's hash: the position of the first pair with a token, plus one. */
+	private int[] index = new int[INITIAL_CAPACITY * 2];
+	private volatile boolean readOnly;
+	/** What was derived from the table once read only, by how it was derived. */
+	private final Map<String, List<Replacement>> derived = new HashMap<String, List<Replacement>>();
+
+	/**
+	 * Derives a list from the table.
+	 */
+	public interface Derivation {
+		List<Replacement> derive();
+	}
+
+	public TokenValueTable(FileUtils fileUtils, String encoding) {
+		this.fileUtils = fileUtils;
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Appends a pair. A repeated token keeps its place in the list, but is looked up as its first pair,
+	 * the only one that finds anything left to replace.
+	 */
+	public void add(String token, String value) {
+		if (readOnly) {
+			throw new UnsupportedOperationException("Token value table is read only");
+		}
+		if (size == tokens.length) {
+			tokens = Arrays.copyOf(tokens, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		tokens[size] = token;
+		values[size] = value;
+		size++;
+		if (size * 2 > index.length) {
+			rehash(index.length * 2);
+		} else {
+			insert(size - 1);
+		}
+		modCount++;
+	}
+
+	public void setReadOnly() {
+		readOnly = true;
+	}
+
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * The list derived under the key, derived once and kept when the table is read only, and
+	 * derived every time otherwise. The key must tell apart everything the derivation depends on.
+	 */
+	public List<Replacement> derive(String key, Derivation derivation) {
+		if (!readOnly) {
+			return derivation.derive();
+		}
+		synchronized (derived) {
+			List<Replacement> list = derived.get(key);
+			if (list == null) {
+				list = derivation.derive();
+				derived.put(key, list);
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * The position of the first pair with the token, or -1 when there is none.
+	 */
+	public int indexOfToken(String token) {
+		int mask = index.length - 1;
+		for (int slot = spread(token.hashCode()) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+			if (tokens[index[slot] - 1].equals(token)) {
+				return index[slot] - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The value of the first pair with the token, or null when there is none.
+	 */
+	public String valueOf(String token) {
+		int position = indexOfToken(token);
+		return position < 0 ? null : values[position];
+	}
+
+	public String getToken(int position) {
+		checkPosition(position);
+		return tokens[position];
+	}
+
+	public String getValue(int position) {
+		checkPosition(position);
+		return values[position];
+	}
+
+	/**
+	 * A table of every pair with each of the delimiters applied to its token in turn, in the order
+	 * in which delimited replacements are otherwise expanded. The table of a read only table is
+	 * read only too.
+	 */
+	public TokenValueTable withDelimiters(final List<DelimiterBuilder> delimiters) {
+		return (TokenValueTable) derive("delimiters " + keyOf(delimiters), new Derivation() {
+			public List<Replacement> derive() {
+				TokenValueTable delimited = new TokenValueTable(fileUtils, encoding);
+				for (int i = 0; i < size; i++) {
+					for (DelimiterBuilder delimiter : delimiters) {
+						delimited.add(delimiter.apply(tokens[i]), values[i]);
+					}
+				}
+				delimited.readOnly = readOnly;
+				return delimited;
+			}
+		});
+	}
+
+	/**
+	 * Tells the delimiters apart, for keys of what is derived with them.
+	 */
+	static String keyOf(List<DelimiterBuilder> delimiters) {
+		StringBuilder key = new StringBuilder();
+		for (DelimiterBuilder delimiter : delimiters) {
+			key.append(delimiter.getStart().length()).append(':').append(delimiter.getStart())
+					.append(delimiter.getEnd().length()).append(':').append(delimiter.getEnd());
+		}
+		return key.toString();
+	}
+
+	@Override
+	public Replacement get(int position) {
+		checkPosition(position);
+		return new Replacement(fileUtils, tokens[position], values[position], false, null, encoding, null, null);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private void checkPosition(int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size);
+		}
+	}
+
+	private void rehash(int capacity) {
+		index = new int[capacity];
+		for (int i = 0; i < size; i++) {
+			insert(i);
+		}
+	}
+
+	private void insert(int position) {
+		String token = tokens[position];
+		int mask = index.length - 1;
+		int slot = spread(token.hashCode()) & mask;
+		for (; index[slot] != 0; slot = (slot + 1) & mask) {
+			if (tokens[index[slot] - 1].equals(token)) {
+				return;
+			}
+		}
+		index[slot] = position + 1;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -2,9 +2,15 @@ package com.google.code.maven_replacer_plugin;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -14,50 +20,92 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
 import org.apache.xml.serialize.OutputFormat;
 import org.apache.xml.serialize.XMLSerializer;
 import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
+/**
+ * Replaces tokens within the nodes selected by an xpath.
+ *
+ * A {@link GroupedReplacement} of xpath replacements is applied to a single parse of the content,
+ * one replacement after another, and written once. The document is normalized after each of them,
+ * merging the adjacent text nodes that writing and parsing it again in between would have merged,
+ * so that later xpaths select the same nodes as when the replacements are applied one by one.
+ *
+ * Elements are replaced within their serialized markup, which is then parsed back in, unless the
+ * replacement is {@link Replacement#isXpathInPlace() in place}, in which case the text, attribute
+ * values and comments of the element and its descendants are edited directly.
+ *
+ * When preserving format, the edited nodes are spliced into the original content, using the
+ * {@link XmlSourceSpans} they were parsed from, rather than serializing the whole document, and the
+ * document is not normalized in between grouped replacements. Content whose nodes cannot be mapped
+ * back to it is serialized as usual.
+ *
+ * Replacers are cheap to create: the parser, transformer and compiled xpaths are kept per thread
+ * and reused for every file replaced on that thread.
+ */
 public class XPathReplacer implements Replacer {
 
+	private static final int MAX_CACHED_EXPRESSIONS = 256;
+	private static final ThreadLocal<XmlTools> XML_TOOLS = new ThreadLocal<XmlTools>() {
+		@Override
+		protected XmlTools initialValue() {
+			return new XmlTools();
+		}
+	};
+
 	private final TokenReplacer tokenReplacer;
-	private final DocumentBuilder docBuilder;
-	private final XPath xpath;
-	private final Transformer transformer;
+	private final boolean preserveFormat;
 
 	public XPathReplacer(TokenReplacer tokenReplacer) {
-		try {
-			if (tokenReplacer == null) {
-				throw new IllegalArgumentException("Must supply a tokenReplacer to change the node's content.");
-			}
-			
-			this.tokenReplacer = tokenReplacer;
-			this.xpath = XPathFactory.newInstance().newXPath();
-			this.docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-			this.transformer = TransformerFactory.newInstance().newTransformer();
-		} catch (Exception e) {
-			throw new IllegalStateException("Unable to initialise XML processing: " + e.getMessage(), e);
+		this(tokenReplacer, false);
+	}
+
+	public XPathReplacer(TokenReplacer tokenReplacer, boolean preserveFormat) {
+		if (tokenReplacer == null) {
+			throw new IllegalStateException("Unable to initialise XML processing: "
+					+ "Must supply a tokenReplacer to change the node's content.");
 		}
+		this.tokenReplacer = tokenReplacer;
+		this.preserveFormat = preserveFormat;
+		XML_TOOLS.get();
 	}
 
 	public String replace(String content, Replacement replacement, boolean regex, int regexFlags) {
 		try {
-			Document doc = parseXml(content);
-			NodeList replacementTargets = findReplacementNodes(doc, replacement.getXpath());
-			replaceContent(replacementTargets, replacement, regex, regexFlags);
-			return writeXml(doc);
+			XmlTools tools = XML_TOOLS.get();
+			Document doc = tools.parse(content);
+			XmlSourceSpans spans = preserveFormat ? XmlSourceSpans.map(content, doc) : null;
+			Set<Node> changed = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+			if (replacement instanceof GroupedReplacement) {
+				for (Replacement grouped : ((GroupedReplacement) replacement).getReplacements()) {
+					replaceContent(tools, findReplacementNodes(tools, doc, grouped.getXpath()), grouped, regex, regexFlags,
+							spans, changed);
+					if (spans == null) {
+						doc.normalize();
+					}
+				}
+			} else {
+				NodeList replacementTargets = findReplacementNodes(tools, doc, replacement.getXpath());
+				replaceContent(tools, replacementTargets, replacement, regex, regexFlags, spans, changed);
+			}
+			String patched = spans != null ? patchXml(tools, content, spans, changed) : null;
+			return patched != null ? patched : writeXml(doc);
 		} catch (Exception e) {
 			String cause = e.getMessage() != null ? e.getMessage() : e.getCause().getMessage();
 			throw new RuntimeException("Error during XML replacement: " + cause, e);
 		}
 	}
 
-	private void replaceContent(NodeList replacementNodes, Replacement replacement, boolean regex, int regexFlags) throws Exception {
+	private void replaceContent(XmlTools tools, NodeList replacementNodes, Replacement replacement, boolean regex, int regexFlags,
+			XmlSourceSpans spans, Set<Node> changed) throws Exception {
 		for (int i=0; i < replacementNodes.getLength(); i++) {
 			Node replacementNode = replacementNodes.item(i);
 
@@ -65,43 +113,91 @@ public class XPathReplacer implements Replacer {
 			case Node.ATTRIBUTE_NODE: case Node.TEXT_NODE:
 				String replacedValue = tokenReplacer.replace(replacementNode.getTextContent(), replacement, regex, regexFlags);
 				replacementNode.setNodeValue(replacedValue);
+				changed.add(replacementNode);
 				break;
 			default:
-				String replacementNodeStr = convertNodeToString(replacementNode);
+				if (replacement.isXpathInPlace()) {
+					replaceInPlace(replacementNode, replacement, regex, regexFlags, changed);
+					break;
+				}
+				String replacementNodeStr = convertNodeToString(tools, replacementNode);
 				String replacedNodeStr = tokenReplacer.replace(replacementNodeStr, replacement, regex, regexFlags);
 
 				Node parent = replacementNode.getParentNode();
 				if (parent.getOwnerDocument() == null) {
 					throw new UnsupportedOperationException("Cannot replace a node's content not part of a parent node.");
 				}
-				Node replacedNode = convertXmlToNode(replacedNodeStr);
+				Node replacedNode = convertXmlToNode(tools, replacedNodeStr);
 				Node newNode = parent.getOwnerDocument().importNode(replacedNode, true);
 				parent.replaceChild(newNode, replacementNode);
+				if (spans != null) {
+					spans.replaced(replacementNode, newNode);
+				}
+				changed.add(newNode);
 			}
 		}
 	}
 
-	private Document parseXml(String content) throws Exception {
-		return docBuilder.parse(new InputSource(new StringReader(content)));
+	/**
+	 * Replaces the token within the character data and attribute values of the node and all of
+	 * its descendants, leaving the markup itself untouched.
+	 */
+	private void replaceInPlace(Node node, Replacement replacement, boolean regex, int regexFlags, Set<Node> changed) {
+		switch (node.getNodeType()) {
+		case Node.ATTRIBUTE_NODE: case Node.TEXT_NODE: case Node.CDATA_SECTION_NODE: case Node.COMMENT_NODE:
+			String value = node.getNodeValue();
+			String replacedValue = tokenReplacer.replace(value, replacement, regex, regexFlags);
+			if (!value.equals(replacedValue)) {
+				node.setNodeValue(replacedValue);
+				changed.add(node);
+			}
+			break;
+		case Node.ELEMENT_NODE: case Node.DOCUMENT_NODE:
+			NamedNodeMap attributes = node.getAttributes();
+			for (int i = 0; attributes != null && i < attributes.getLength(); i++) {
+				replaceInPlace(attributes.item(i), replacement, regex, regexFlags, changed);
+			}
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				replaceInPlace(child, replacement, regex, regexFlags, changed);
+			}
+			break;
+		default:
+			break;
+		}
 	}
 
-	private NodeList findReplacementNodes(Document doc, String xpathString) throws Exception {
-		XPathExpression xpathExpr = xpath.compile(xpathString);
-		return (NodeList) xpathExpr.evaluate(doc, XPathConstants.NODESET);
+	private NodeList findReplacementNodes(XmlTools tools, Document doc, String xpathString) throws Exception {
+		return (NodeList) tools.compile(xpathString).evaluate(doc, XPathConstants.NODESET);
 	}
 
-	private String convertNodeToString(Node replacementTarget) throws TransformerException {
+	private String convertNodeToString(XmlTools tools, Node replacementTarget) throws TransformerException {
 		DOMSource targetSource = new DOMSource(replacementTarget);
 		StringWriter stringWriter = new StringWriter();
 		Result stringResult = new StreamResult(stringWriter);
-		transformer.transform(targetSource, stringResult);
+		tools.transformer().transform(targetSource, stringResult);
 		return stringWriter.toString();
 	}
 
-	private Node convertXmlToNode(String xml) throws Exception {
-		InputSource docSource = new InputSource(new StringReader(xml));
-		Document doc = docBuilder.parse(docSource);
-		return doc.getFirstChild();
+	private Node convertXmlToNode(XmlTools tools, String xml) throws Exception {
+		return tools.parse(xml).getFirstChild();
+	}
+
+	/**
+	 * The content with the changed nodes spliced in, or null when they cannot be.
+	 */
+	private String patchXml(final XmlTools tools, String content, XmlSourceSpans spans, Set<Node> changed) throws Exception {
+		if (changed.isEmpty()) {
+			return content;
+		}
+		return spans.patch(changed, new XmlSourceSpans.NodeSerializer() {
+			public String serialize(Node node) throws Exception {
+				Transformer transformer = tools.transformer();
+				transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+				StringWriter stringWriter = new StringWriter();
+				transformer.transform(new DOMSource(node), new StreamResult(stringWriter));
+				return stringWriter.toString();
+			}
+		});
 	}
 
 	private String writeXml(Document doc) throws Exception {
@@ -114,4 +210,53 @@ public class XPathReplacer implements Replacer {
 		serializer.serialize(doc);
 		return sw.toString();
 	}
+
+	/**
+	 * The XML infrastructure of one thread: creating the factories is a slow service lookup, and
+	 * neither the builder, the transformer nor compiled expressions may be shared between threads.
+	 * Compiled expressions are kept for the most recently used xpaths.
+	 */
+	private static final class XmlTools {
+		private final DocumentBuilder docBuilder;
+		private final Transformer transformer;
+		private final XPath xpath;
+		private final Map<String, XPathExpression> expressions = new LinkedHashMap<String, XPathExpression>(16,
+				0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+				return size() > MAX_CACHED_EXPRESSIONS;
+			}
+		};
+
+		XmlTools() {
+			try {
+				this.xpath = XPathFactory.newInstance().newXPath();
+				this.docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+				this.transformer = TransformerFactory.newInstance().newTransformer();
+			} catch (Exception e) {
+				throw new IllegalStateException("Unable to initialise XML processing: " + e.getMessage(), e);
+			}
+		}
+
+		Document parse(String content) throws Exception {
+			docBuilder.reset();
+			return docBuilder.parse(new InputSource(new StringReader(content)));
+		}
+
+		Transformer transformer() {
+			transformer.reset();
+			return transformer;
+		}
+
+		XPathExpression compile(String xpathString) throws XPathExpressionException {
+			XPathExpression expression = expressions.get(xpathString);
+			if (expression == null) {
+				expression = xpath.compile(xpathString);
+				expressions.put(xpathString, expression);
+			}
+			return expression;
+		}
+	}
 }
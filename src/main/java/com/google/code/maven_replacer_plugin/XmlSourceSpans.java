@@ -0,0 +1,454 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Where the nodes of a parsed document came from in its source text, so that edited nodes can be
+ * spliced back into the source, leaving every other byte as it was.
+ *
+ * The source is scanned alongside the document: elements map to their whole markup, attributes
+ * to their value within the quotes, and text, CDATA sections and comments to their content.
+ * Documents whose nodes do not line up with the source, for instance entity references kept
+ * unexpanded, cannot be mapped, and nodes not written in the source, such as attributes
+ * defaulted by a DTD, have no span.
+ *
+ * Changed text, attributes, CDATA sections and comments are spliced in by the part of their value
+ * that changed only, so that the source they were parsed from is kept around the change, line
+ * breaks, tabs and character references included. Nodes whose source does not read back as the
+ * value they were parsed with, such as attributes normalized by their DTD type, are written out
+ * as a whole instead.
+ */
+public class XmlSourceSpans {
+	private static final int START = 0;
+	private static final int END = 1;
+	private static final int QUOTE = 2;
+
+	private final String source;
+	private final Map<Node, int[]> spans = new IdentityHashMap<Node, int[]>();
+	/** The values of the nodes with spans other than elements, as parsed. */
+	private final Map<Node, String> values = new IdentityHashMap<Node, String>();
+	private int position;
+
+	private XmlSourceSpans(String source) {
+		this.source = source;
+	}
+
+	/**
+	 * The spans of the document's nodes within the source it was parsed from, or null when
+	 * they cannot be mapped.
+	 */
+	public static XmlSourceSpans map(String source, Document document) {
+		XmlSourceSpans spans = new XmlSourceSpans(source);
+		try {
+			return spans.document(document) ? spans : null;
+		} catch (IndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Lets a node that replaced another take over its span.
+	 */
+	public void replaced(Node oldNode, Node newNode) {
+		int[] span = spans.remove(oldNode);
+		if (span != null) {
+			spans.put(newNode, span);
+		}
+	}
+
+	/**
+	 * The source with the changed nodes spliced in, or null when a changed node has no span.
+	 * Changed elements are written out as a whole by the given serializer, so changes within
+	 * them need no span of their own. Changed nodes no longer in the document are ignored.
+	 */
+	public String patch(Set<Node> changed, NodeSerializer serializer) throws Exception {
+		List<int[]> splices = new ArrayList<int[]>();
+		List<String> texts = new ArrayList<String>();
+		for (Node node : changed) {
+			if (!isAttached(node) || hasChangedAncestor(node, changed)) {
+				continue;
+			}
+			int[] span = spans.get(node);
+			if (span == null) {
+				return null;
+			}
+			int[] offsets = offsets(node, span);
+			if (offsets == null) {
+				splices.add(new int[] { span[START], span[END], texts.size() });
+				texts.add(text(node, node.getNodeValue(), span, serializer));
+				continue;
+			}
+
+			String parsed = values.get(node);
+			String value = node.getNodeValue();
+			int prefix = 0;
+			while (prefix < parsed.length() && prefix < value.length() && parsed.charAt(prefix) == value.charAt(prefix)) {
+				prefix++;
+			}
+			int suffix = 0;
+			while (suffix < parsed.length() - prefix && suffix < value.length() - prefix
+					&& parsed.charAt(parsed.length() - 1 - suffix) == value.charAt(value.length() - 1 - suffix)) {
+				suffix++;
+			}
+			while (offsets[prefix] < 0) {
+				prefix--;
+			}
+			while (offsets[parsed.length() - suffix] < 0) {
+				suffix--;
+			}
+			splices.add(new int[] { offsets[prefix], offsets[parsed.length() - suffix], texts.size() });
+			texts.add(text(node, value.substring(prefix, value.length() - suffix), span, serializer));
+		}
+
+		Collections.sort(splices, new Comparator<int[]>() {
+			public int compare(int[] left, int[] right) {
+				return left[START] < right[START] ? -1 : (left[START] == right[START] ? 0 : 1);
+			}
+		});
+		StringBuilder patched = new StringBuilder(source.length());
+		int copied = 0;
+		for (int[] splice : splices) {
+			patched.append(source, copied, splice[START]).append(texts.get(splice[2]));
+			copied = splice[END];
+		}
+		return patched.append(source, copied, source.length()).toString();
+	}
+
+	/**
+	 * The value, or part of it, as written within the node's span.
+	 */
+	private String text(Node node, String value, int[] span, NodeSerializer serializer) throws Exception {
+		switch (node.getNodeType()) {
+		case Node.ATTRIBUTE_NODE:
+			return escape(value, (char) span[QUOTE]);
+		case Node.TEXT_NODE:
+			return escape(value, '\0');
+		case Node.CDATA_SECTION_NODE:
+			return value.replace("]]>", "]]]]><![CDATA[>");
+		case Node.COMMENT_NODE:
+			return value;
+		default:
+			return serializer.serialize(node);
+		}
+	}
+
+	/**
+	 * Where each character of the value the node was parsed with starts in the source, followed
+	 * by the end of its span, or null when the node is an element, or when its span does not read
+	 * back as that value (because of an entity other than the predefined ones, say) or cannot be
+	 * patched by part. Characters following the first of those a reference stands for have no
+	 * start of their own, and are marked -1.
+	 */
+	private int[] offsets(Node node, int[] span) {
+		String parsed = values.get(node);
+		if (parsed == null || node.getNodeType() == Node.CDATA_SECTION_NODE && node.getNodeValue().contains("]]>")) {
+			return null;
+		}
+		boolean attribute = node.getNodeType() == Node.ATTRIBUTE_NODE;
+		boolean references = attribute || node.getNodeType() == Node.TEXT_NODE;
+		int[] offsets = new int[parsed.length() + 1];
+		int length = 0;
+		int index = span[START];
+		while (index < span[END]) {
+			char c = source.charAt(index);
+			int next = index + 1;
+			String read;
+			if (c == '\r') {
+				next = next < span[END] && source.charAt(next) == '\n' ? next + 1 : next;
+				read = attribute ? " " : "\n";
+			} else if (attribute && (c == '\n' || c == '\t')) {
+				read = " ";
+			} else if (c == '&' && references) {
+				int semicolon = source.indexOf(';', index);
+				read = semicolon < 0 || semicolon >= span[END] ? null : reference(source.substring(index + 1, semicolon));
+				next = semicolon + 1;
+			} else {
+				read = String.valueOf(c);
+			}
+			if (read == null || !parsed.startsWith(read, length)) {
+				return null;
+			}
+			offsets[length] = index;
+			for (int i = 1; i < read.length(); i++) {
+				offsets[length + i] = -1;
+			}
+			length += read.length();
+			index = next;
+		}
+		if (length != parsed.length()) {
+			return null;
+		}
+		offsets[length] = span[END];
+		return offsets;
+	}
+
+	/**
+	 * The text a predefined entity or character reference stands for, or null for any other.
+	 */
+	private static String reference(String name) {
+		if ("amp".equals(name)) {
+			return "&";
+		} else if ("lt".equals(name)) {
+			return "<";
+		} else if ("gt".equals(name)) {
+			return ">";
+		} else if ("quot".equals(name)) {
+			return "\"";
+		} else if ("apos".equals(name)) {
+			return "'";
+		}
+		try {
+			if (name.startsWith("#x")) {
+				return new String(Character.toChars(Integer.parseInt(name.substring(2), 16)));
+			} else if (name.startsWith("#")) {
+				return new String(Character.toChars(Integer.parseInt(name.substring(1))));
+			}
+		} catch (IllegalArgumentException e) {
+			// not a character
+		}
+		return null;
+	}
+
+	private static boolean isAttached(Node node) {
+		Node current = node.getNodeType() == Node.ATTRIBUTE_NODE ? ((Attr) node).getOwnerElement() : node;
+		while (current != null && current.getNodeType() != Node.DOCUMENT_NODE) {
+			current = current.getParentNode();
+		}
+		return current != null;
+	}
+
+	private static boolean hasChangedAncestor(Node node, Set<Node> changed) {
+		Node ancestor = node.getNodeType() == Node.ATTRIBUTE_NODE ? ((Attr) node).getOwnerElement() : node.getParentNode();
+		for (; ancestor != null; ancestor = ancestor.getParentNode()) {
+			if (ancestor.getNodeType() == Node.ELEMENT_NODE && changed.contains(ancestor)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String escape(String value, char quote) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '&') {
+				escaped.append("&amp;");
+			} else if (c == '<') {
+				escaped.append("&lt;");
+			} else if (c == '>' && quote == '\0') {
+				escaped.append("&gt;");
+			} else if (c == quote) {
+				escaped.append(c == '"' ? "&quot;" : "&apos;");
+			} else if (c == '\r' || quote != '\0' && (c == '\n' || c == '\t')) {
+				escaped.append("&#").append((int) c).append(';');
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private boolean document(Document document) {
+		Node child = document.getFirstChild();
+		while (true) {
+			skipWhitespace();
+			if (position == source.length()) {
+				return child == null;
+			}
+			if (source.startsWith("<?xml", position) && isWhitespace(position + 5)) {
+				position = indexAfter("?>");
+			} else if (source.startsWith("<!DOCTYPE", position)) {
+				if (child == null || child.getNodeType() != Node.DOCUMENT_TYPE_NODE) {
+					return false;
+				}
+				skipDoctype();
+				child = child.getNextSibling();
+			} else if (source.startsWith("<", position) && !source.startsWith("</", position)
+					&& !source.startsWith("<!", position) && !source.startsWith("<?", position)) {
+				if (child == null || child.getNodeType() != Node.ELEMENT_NODE || !element((Element) child)) {
+					return false;
+				}
+				child = child.getNextSibling();
+			} else {
+				if (child == null || !markup(child)) {
+					return false;
+				}
+				child = child.getNextSibling();
+			}
+		}
+	}
+
+	/**
+	 * Maps a comment, processing instruction or CDATA section at the current position.
+	 */
+	private boolean markup(Node node) {
+		if (source.startsWith("<!--", position)) {
+			if (node.getNodeType() != Node.COMMENT_NODE) {
+				return false;
+			}
+			int end = source.indexOf("-->", position);
+			spans.put(node, new int[] { position + 4, end });
+			values.put(node, node.getNodeValue());
+			position = end + 3;
+		} else if (source.startsWith("<![CDATA[", position)) {
+			if (node.getNodeType() != Node.CDATA_SECTION_NODE) {
+				return false;
+			}
+			int end = source.indexOf("]]>", position);
+			spans.put(node, new int[] { position + 9, end });
+			values.put(node, node.getNodeValue());
+			position = end + 3;
+		} else if (source.startsWith("<?", position)) {
+			if (node.getNodeType() != Node.PROCESSING_INSTRUCTION_NODE) {
+				return false;
+			}
+			position = indexAfter("?>");
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	private boolean element(Element element) {
+		int start = position;
+		position++;
+		String name = name();
+		if (!name.equals(element.getTagName())) {
+			return false;
+		}
+		while (true) {
+			skipWhitespace();
+			if (source.startsWith("/>", position)) {
+				position += 2;
+				spans.put(element, new int[] { start, position });
+				return true;
+			}
+			if (source.charAt(position) == '>') {
+				position++;
+				break;
+			}
+			if (!attribute(element)) {
+				return false;
+			}
+		}
+
+		Node child = element.getFirstChild();
+		while (true) {
+			if (source.startsWith("</", position)) {
+				position += 2;
+				if (child != null || !name().equals(name)) {
+					return false;
+				}
+				position = indexAfter(">");
+				spans.put(element, new int[] { start, position });
+				return true;
+			}
+			if (child == null) {
+				return false;
+			}
+			if (source.charAt(position) != '<') {
+				if (child.getNodeType() != Node.TEXT_NODE) {
+					return false;
+				}
+				int end = source.indexOf('<', position);
+				spans.put(child, new int[] { position, end });
+				values.put(child, child.getNodeValue());
+				position = end;
+			} else if (source.startsWith("<!", position) || source.startsWith("<?", position)) {
+				if (!markup(child)) {
+					return false;
+				}
+			} else if (child.getNodeType() != Node.ELEMENT_NODE || !element((Element) child)) {
+				return false;
+			}
+			child = child.getNextSibling();
+		}
+	}
+
+	private boolean attribute(Element element) {
+		String name = name();
+		skipWhitespace();
+		if (name.isEmpty() || source.charAt(position) != '=') {
+			return false;
+		}
+		position++;
+		skipWhitespace();
+		char quote = source.charAt(position);
+		if (quote != '"' && quote != '\'') {
+			return false;
+		}
+		int end = source.indexOf(quote, position + 1);
+		Attr attribute = element.getAttributeNode(name);
+		if (attribute == null || end < 0) {
+			return false;
+		}
+		spans.put(attribute, new int[] { position + 1, end, quote });
+		values.put(attribute, attribute.getValue());
+		position = end + 1;
+		return true;
+	}
+
+	private void skipDoctype() {
+		char quote = 0;
+		int depth = 0;
+		for (position += 9; position < source.length(); position++) {
+			char c = source.charAt(position);
+			if (quote != 0) {
+				quote = c == quote ? 0 : quote;
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']') {
+				depth--;
+			} else if (c == '>' && depth == 0) {
+				position++;
+				return;
+			}
+		}
+	}
+
+	private String name() {
+		int start = position;
+		while (position < source.length() && !isWhitespace(position) && "/>=".indexOf(source.charAt(position)) < 0) {
+			position++;
+		}
+		return source.substring(start, position);
+	}
+
+	private int indexAfter(String text) {
+		int index = source.indexOf(text, position);
+		if (index < 0) {
+			throw new IndexOutOfBoundsException("Missing " + text);
+		}
+		return index + text.length();
+	}
+
+	private void skipWhitespace() {
+		while (position < source.length() && isWhitespace(position)) {
+			position++;
+		}
+	}
+
+	private boolean isWhitespace(int index) {
+		return index < source.length() && Character.isWhitespace(source.charAt(index));
+	}
+
+	/**
+	 * Writes out a node that replaced one from the source.
+	 */
+	public interface NodeSerializer {
+		String serialize(Node node) throws Exception;
+	}
+}
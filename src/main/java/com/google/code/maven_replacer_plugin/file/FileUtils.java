@@ -3,14 +3,42 @@ package com.google.code.maven_replacer_plugin.file;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 public class FileUtils {
+	public static final String MAPPED_TEMP_ENCODING = "UTF-16BE";
+	private static final String ISO_8859_1 = "ISO-8859-1";
+	private static final String US_ASCII = "US-ASCII";
+	private static final String UTF_8 = "UTF-8";
+
 	public boolean fileNotExists(String filename) {
 		return isBlank(filename) || !new File(filename).exists();
 	}
 
+	/**
+	 * Whether both names stand for the same file, however they are written.
+	 */
+	public boolean isSameFile(String file, String other) throws IOException {
+		return new File(file).getCanonicalFile().equals(new File(other).getCanonicalFile());
+	}
+
 	public void ensureFolderStructureExists(String file) {
 		File outputFile = new File(file);
 		if (outputFile.getParent() == null) {
@@ -19,7 +47,7 @@ public class FileUtils {
 
 		if (!outputFile.isDirectory()) {
 			File parentPath = new File(outputFile.getParent());
-			if (!parentPath.exists() && !parentPath.mkdirs()) {
+			if (!parentPath.mkdirs() && !parentPath.isDirectory()) {
 				throw new IllegalStateException("Error creating directory: " + parentPath);
 			}
 		} else {
@@ -43,6 +71,121 @@ public class FileUtils {
 		}
 	}
 	
+	/**
+	 * Whether the file exists and its bytes are exactly the given content in the given encoding.
+	 */
+	public boolean hasContent(String file, String content, String encoding) throws IOException {
+		File existing = new File(file);
+		if (!existing.isFile()) {
+			return false;
+		}
+		byte[] bytes = content.getBytes(charsetName(encoding));
+		return existing.length() == bytes.length
+				&& Arrays.equals(org.apache.commons.io.FileUtils.readFileToByteArray(existing), bytes);
+	}
+
+	public boolean haveSameContent(String file, String otherFile) throws IOException {
+		File other = new File(otherFile);
+		return other.isFile() && org.apache.commons.io.FileUtils.contentEquals(new File(file), other);
+	}
+
+	public long fileSize(String file) {
+		return new File(file).length();
+	}
+
+	public Reader openReader(String file, String encoding) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			return new BufferedReader(new InputStreamReader(input, charsetName(encoding)));
+		} catch (IOException e) {
+			input.close();
+			throw e;
+		}
+	}
+
+	public Writer openWriter(String file, String encoding) throws IOException {
+		FileOutputStream output = new FileOutputStream(file);
+		try {
+			return new BufferedWriter(new OutputStreamWriter(output, charsetName(encoding)));
+		} catch (IOException e) {
+			output.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps the file into memory and returns its characters, decoded as they are read, or null
+	 * when the encoding does not have a fixed number of bytes per character: ISO-8859-1 and
+	 * {@value #MAPPED_TEMP_ENCODING} are always mapped, US-ASCII and UTF-8 only when the file is plain ASCII.
+	 */
+	public CharSequence mapFile(String file, String encoding) throws IOException {
+		String charset = charsetName(encoding);
+		if (!Charset.isSupported(charset)) {
+			return null;
+		}
+		charset = Charset.forName(charset).name();
+		int bytesPerChar = MAPPED_TEMP_ENCODING.equals(charset) ? 2 : 1;
+		boolean asciiOnly = US_ASCII.equals(charset) || UTF_8.equals(charset);
+		if (bytesPerChar == 1 && !asciiOnly && !ISO_8859_1.equals(charset)) {
+			return null;
+		}
+
+		FileChannel channel = FileChannel.open(new File(file).toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size % bytesPerChar != 0) {
+				return null;
+			}
+			if (size / bytesPerChar > Integer.MAX_VALUE) {
+				throw new IOException("File too large to map: " + file);
+			}
+
+			ByteBuffer[] segments = new ByteBuffer[(int) ((size + MappedCharSequence.SEGMENT_SIZE - 1) / MappedCharSequence.SEGMENT_SIZE)];
+			for (int i = 0; i < segments.length; i++) {
+				long position = i * MappedCharSequence.SEGMENT_SIZE;
+				segments[i] = channel.map(MapMode.READ_ONLY, position, Math.min(MappedCharSequence.SEGMENT_SIZE, size - position));
+				if (asciiOnly && !isAscii(segments[i])) {
+					return null;
+				}
+			}
+			return new MappedCharSequence(segments, bytesPerChar, (int) (size / bytesPerChar));
+		} finally {
+			channel.close();
+		}
+	}
+
+	private boolean isAscii(ByteBuffer segment) {
+		for (int i = 0; i < segment.limit(); i++) {
+			if (segment.get(i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates an empty file in the folder of the given output file, to be written first and moved
+	 * over the output file once complete. This keeps the input intact while it is still being read
+	 * when both are the same file.
+	 */
+	public String createTempFileFor(String outputFile) throws IOException {
+		ensureFolderStructureExists(outputFile);
+		File output = new File(outputFile).getAbsoluteFile();
+		return File.createTempFile(output.getName(), ".tmp", output.getParentFile()).getPath();
+	}
+
+	public void moveFile(String file, String target) throws IOException {
+		Files.move(new File(file).toPath(), new File(target).toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public void deleteFile(String file) {
+		new File(file).delete();
+	}
+
+	private String charsetName(String encoding) {
+		return encoding != null ? encoding : Charset.defaultCharset().name();
+	}
+
 	public String createFullPath(String... dirsAndFilename) {
 		StringBuilder fullPath = new StringBuilder();
 		for (int i=0; i < dirsAndFilename.length - 1; i++) {
@@ -0,0 +1,60 @@
+package com.google.code.maven_replacer_plugin.file;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Characters of a memory-mapped file, decoded on demand as they are read. Supports encodings
+ * with a fixed number of bytes per character: one byte (ISO-8859-1, or ASCII content) or two
+ * (UTF-16BE). The file is split in segments because a single mapping cannot exceed 2GB.
+ */
+public class MappedCharSequence implements CharSequence {
+	static final int SEGMENT_SHIFT = 30;
+	static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private final ByteBuffer[] segments;
+	private final int bytesPerChar;
+	private final int start;
+	private final int length;
+
+	public MappedCharSequence(ByteBuffer[] segments, int bytesPerChar, int length) {
+		this(segments, bytesPerChar, 0, length);
+	}
+
+	private MappedCharSequence(ByteBuffer[] segments, int bytesPerChar, int start, int length) {
+		this.segments = segments;
+		this.bytesPerChar = bytesPerChar;
+		this.start = start;
+		this.length = length;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+		}
+		long position = (long) (start + index) * bytesPerChar;
+		ByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+		int offset = (int) (position & SEGMENT_MASK);
+		return bytesPerChar == 1 ? (char) (segment.get(offset) & 0xff) : segment.getChar(offset);
+	}
+
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("Range: " + from + "-" + to + ", length: " + length);
+		}
+		return new MappedCharSequence(segments, bytesPerChar, start + from, to - from);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append(charAt(i));
+		}
+		return text.toString();
+	}
+}
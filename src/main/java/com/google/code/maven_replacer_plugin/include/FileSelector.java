@@ -3,16 +3,44 @@ package com.google.code.maven_replacer_plugin.include;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 
 import org.apache.tools.ant.DirectoryScanner;
 
 public class FileSelector {
+	public static final String ANT = "ant";
+	public static final String NIO = "nio";
+
+	private boolean nio;
+	private int parallelism = 1;
+
+	/**
+	 * Selects files with Ant's directory scanner ("ant", the default) or with {@link PathWalker} ("nio").
+	 */
+	public void setScanner(String scanner) {
+		String name = scanner == null ? ANT : scanner.trim().toLowerCase(Locale.ENGLISH);
+		if (!name.equals(ANT) && !name.equals(NIO) && name.length() > 0) {
+			throw new IllegalArgumentException("Unknown scanner: " + scanner + ". Supported values are [ant|nio]");
+		}
+		this.nio = name.equals(NIO);
+	}
+
+	/**
+	 * Number of directories listed concurrently by the nio scanner.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
 
 	public List<String> listIncludes(String basedir, List<String> includes, List<String> excludes) {
 		if (includes == null || includes.isEmpty()) {
 			return Collections.emptyList();
 		}
+		if (nio) {
+			return new PathWalker(basedir, includes, excludes).walk(parallelism);
+		}
 
 		DirectoryScanner directoryScanner = new DirectoryScanner();
 		directoryScanner.addDefaultExcludes();
@@ -24,6 +52,18 @@ public class FileSelector {
 		return Arrays.asList(directoryScanner.getIncludedFiles());
 	}
 
+	/**
+	 * The included files, as they are found with the nio scanner, so that they can be replaced
+	 * while the walk goes on, or once all are found with Ant's scanner. Iterators that are
+	 * {@link java.io.Closeable} should be closed once done with, to stop a walk not fully taken.
+	 */
+	public Iterator<String> selectIncludes(String basedir, List<String> includes, List<String> excludes) {
+		if (nio && includes != null && !includes.isEmpty()) {
+			return new PathWalker(basedir, includes, excludes).stream(parallelism);
+		}
+		return listIncludes(basedir, includes, excludes).iterator();
+	}
+
 	private String[] stringListToArray(List<String> stringList) {
 		if (stringList == null) {
 			return null;
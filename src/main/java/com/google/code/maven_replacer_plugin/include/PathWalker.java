@@ -0,0 +1,356 @@
+package com.google.code.maven_replacer_plugin.include;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+
+/**
+ * Selects the same files as Ant's {@link DirectoryScanner} does for {@link FileSelector} (where
+ * the excludes given replace Ant's default excludes), walking the directory tree with NIO, a
+ * directory per task on a fork/join pool.
+ *
+ * Directories are only entered when some include could match below them and no exclude ending
+ * in ** covers all of their contents, so excluded trees like node_modules/** are never listed.
+ * Each entry is told apart as a file or directory from the attributes read while listing its
+ * directory. Symbolic links are followed, except to a directory being walked already.
+ *
+ * Files are either listed once the walk is over, sorted, or streamed as they are found.
+ */
+public class PathWalker {
+	private static final String DEEP_TREE_MATCH = "**";
+	private static final EnumSet<FileVisitOption> FOLLOW_LINKS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+	/** Files found but not yet taken from a stream, beyond which the walk waits. */
+	private static final int STREAM_CAPACITY = 1024;
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+	/** Marks the end of a stream, told apart from any file name by identity. */
+	private static final String END = new String("end of files");
+
+	private final File basedir;
+	private final List<TokenizedPattern> includes;
+	private final List<TokenizedPattern> excludes;
+	private final List<TokenizedPattern> contentExcludes = new ArrayList<TokenizedPattern>();
+
+	public PathWalker(String basedir, List<String> includes, List<String> excludes) {
+		this.basedir = new File(basedir);
+		this.includes = patterns(includes);
+		this.excludes = patterns(excludes == null ? Collections.<String>emptyList() : excludes);
+		for (TokenizedPattern exclude : this.excludes) {
+			if (exclude.endsWith(DEEP_TREE_MATCH)) {
+				contentExcludes.add(exclude.withoutLastToken());
+			}
+		}
+	}
+
+	/**
+	 * The selected files relative to the base directory, sorted as Ant sorts them.
+	 */
+	public List<String> walk(int parallelism) {
+		checkBasedir();
+		final Queue<String> selected = new ConcurrentLinkedQueue<String>();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(rootTask(new Found() {
+				public void add(String file) {
+					selected.add(file);
+				}
+
+				public boolean isClosed() {
+					return false;
+				}
+			}));
+		} finally {
+			pool.shutdown();
+		}
+		List<String> files = new ArrayList<String>(selected);
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * The selected files relative to the base directory, in the order they are found while the
+	 * walk goes on in the background. At most a fixed number of files found are held waiting to
+	 * be taken. The iterator is also {@link Closeable}, to stop the walk when not every file is
+	 * taken, and throws from {@link Iterator#hasNext()} when the walk fails.
+	 */
+	public Iterator<String> stream(int parallelism) {
+		checkBasedir();
+		return new Stream(parallelism);
+	}
+
+	private void checkBasedir() {
+		if (!basedir.exists()) {
+			throw new IllegalStateException("basedir " + basedir + " does not exist.");
+		}
+		if (!basedir.isDirectory()) {
+			throw new IllegalStateException("basedir " + basedir + " is not a directory.");
+		}
+	}
+
+	private DirectoryTask rootTask(Found found) {
+		return new DirectoryTask(basedir.toPath(), TokenizedPath.EMPTY_PATH, "", null, found);
+	}
+
+	private boolean isSelected(TokenizedPath file) {
+		return matchesAny(includes, file) && !matchesAny(excludes, file);
+	}
+
+	private boolean shouldEnter(TokenizedPath directory) {
+		if (matchesAny(contentExcludes, directory)) {
+			return false;
+		}
+		for (TokenizedPattern include : includes) {
+			if (include.matchStartOf(directory, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matchesAny(List<TokenizedPattern> patterns, TokenizedPath path) {
+		for (TokenizedPattern pattern : patterns) {
+			if (pattern.matchPath(path, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Patterns with either separator, and a trailing one standing for everything below, as Ant reads them.
+	 */
+	private static List<TokenizedPattern> patterns(List<String> patterns) {
+		List<TokenizedPattern> tokenized = new ArrayList<TokenizedPattern>();
+		for (String pattern : patterns) {
+			String normalized = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+			if (normalized.endsWith(File.separator)) {
+				normalized += DEEP_TREE_MATCH;
+			}
+			tokenized.add(new TokenizedPattern(normalized));
+		}
+		return tokenized;
+	}
+
+	/**
+	 * Where the files selected are put.
+	 */
+	private interface Found {
+		void add(String file);
+
+		/** Whether no more files are wanted. */
+		boolean isClosed();
+	}
+
+	private final class Stream implements Iterator<String>, Closeable, Found {
+		private final BlockingQueue<String> found = new LinkedBlockingQueue<String>(STREAM_CAPACITY);
+		private final ForkJoinPool pool;
+		private volatile boolean closed;
+		private volatile RuntimeException failure;
+		private String next;
+		private boolean ended;
+
+		Stream(int parallelism) {
+			pool = new ForkJoinPool(parallelism);
+			pool.execute(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					try {
+						rootTask(Stream.this).invoke();
+					} catch (CancellationException e) {
+						// closed
+					} catch (RuntimeException e) {
+						failure = e;
+					}
+					try {
+						offer(END);
+					} catch (CancellationException e) {
+						// closed
+					}
+				}
+			});
+		}
+
+		public boolean hasNext() {
+			if (next == null && !ended) {
+				String taken;
+				try {
+					taken = found.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while scanning " + basedir, e);
+				}
+				if (taken == END) {
+					ended = true;
+					pool.shutdown();
+					if (failure != null) {
+						throw failure;
+					}
+				} else {
+					next = taken;
+				}
+			}
+			return next != null;
+		}
+
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String file = next;
+			next = null;
+			return file;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			closed = true;
+			pool.shutdownNow();
+			found.clear();
+		}
+
+		public void add(String file) {
+			offer(file);
+		}
+
+		public boolean isClosed() {
+			return closed;
+		}
+
+		/**
+		 * Waits for room for the file, giving up once the stream is closed.
+		 */
+		private void offer(String file) {
+			try {
+				while (!found.offer(file, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+					if (closed) {
+						throw new CancellationException();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException();
+			}
+		}
+	}
+
+	/**
+	 * A directory being walked, and those it was reached through.
+	 */
+	private static final class Ancestor {
+		private final Object key;
+		private final Ancestor parent;
+
+		Ancestor(Object key, Ancestor parent) {
+			this.key = key;
+			this.parent = parent;
+		}
+
+		boolean contains(Object other) {
+			for (Ancestor ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+				if (ancestor.key.equals(other)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private final class DirectoryTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Path directory;
+		private final TokenizedPath path;
+		private final String name;
+		private final Ancestor ancestors;
+		private final Found selected;
+
+		DirectoryTask(Path directory, TokenizedPath path, String name, Ancestor ancestors, Found selected) {
+			this.directory = directory;
+			this.path = path;
+			this.name = name;
+			this.ancestors = ancestors;
+			this.selected = selected;
+		}
+
+		@Override
+		protected void compute() {
+			if (selected.isClosed()) {
+				return;
+			}
+			final Ancestor walked;
+			final List<DirectoryTask> subdirectories = new ArrayList<DirectoryTask>();
+			try {
+				walked = new Ancestor(key(directory, Files.readAttributes(directory, BasicFileAttributes.class)),
+						ancestors);
+				Files.walkFileTree(directory, FOLLOW_LINKS, 1, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(Path entry, BasicFileAttributes attributes) throws IOException {
+						String entryName = entry.getFileName().toString();
+						TokenizedPath entryPath = new TokenizedPath(path, entryName);
+						String relative = name.length() == 0 ? entryName : name + File.separator + entryName;
+						if (attributes.isRegularFile()) {
+							if (isSelected(entryPath)) {
+								selected.add(relative);
+							}
+							if (selected.isClosed()) {
+								return FileVisitResult.TERMINATE;
+							}
+						} else if (attributes.isDirectory() && shouldEnter(entryPath)
+								&& !walked.contains(key(entry, attributes))) {
+							subdirectories.add(new DirectoryTask(entry, entryPath, relative, walked, selected));
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path entry, IOException e) throws IOException {
+						if (entry.equals(directory)) {
+							throw e;
+						}
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} catch (IOException e) {
+				throw new IllegalStateException("IO error scanning directory " + directory.toAbsolutePath(), e);
+			}
+			invokeAll(subdirectories);
+		}
+	}
+
+	/**
+	 * What identifies the directory however it is reached: its file key where the file system
+	 * has them, otherwise its real path.
+	 */
+	private static Object key(Path directory, BasicFileAttributes attributes) throws IOException {
+		Object key = attributes.fileKey();
+		return key != null ? key : directory.toRealPath();
+	}
+}
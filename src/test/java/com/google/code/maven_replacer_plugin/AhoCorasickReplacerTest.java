@@ -0,0 +1,162 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AhoCorasickReplacerTest {
+
+	@Test
+	public void shouldReplaceAllTokensInOneScan() {
+		AhoCorasickReplacer replacer = new AhoCorasickReplacer(asList("@name@", "@version@"), asList("app", "1.0"));
+		assertThat(replacer.replace("@name@-@version@ (@name@)"), equalTo("app-1.0 (app)"));
+	}
+
+	@Test
+	public void shouldReturnSameContentWhenNothingMatches() {
+		AhoCorasickReplacer replacer = new AhoCorasickReplacer(asList("token"), asList("value"));
+		String content = "nothing to see";
+		assertThat(replacer.replace(content), sameInstance(content));
+	}
+
+	@Test
+	public void shouldLetFirstListedTokenWinWhereMatchesOverlap() {
+		AhoCorasickReplacer replacer = new AhoCorasickReplacer(asList("bc", "ab"), asList("X", "Y"));
+		assertThat(replacer.replace("abc"), equalTo("aX"));
+
+		replacer = new AhoCorasickReplacer(asList("ab", "bc"), asList("X", "Y"));
+		assertThat(replacer.replace("abc"), equalTo("Xc"));
+	}
+
+	@Test
+	public void shouldMatchTokensContainedInOtherTokens() {
+		AhoCorasickReplacer replacer = new AhoCorasickReplacer(asList("b", "abc"), asList("1", "2"));
+		assertThat(replacer.replace("abc b"), equalTo("a1c 1"));
+
+		replacer = new AhoCorasickReplacer(asList("abc", "b"), asList("1", "2"));
+		assertThat(replacer.replace("abc b"), equalTo("1 2"));
+	}
+
+	@Test
+	public void shouldNotOverlapMatchesOfTheSameToken() {
+		AhoCorasickReplacer replacer = new AhoCorasickReplacer(asList("aa"), asList("b"));
+		assertThat(replacer.replace("aaaaa"), equalTo("bba"));
+	}
+
+	@Test
+	public void shouldReplaceWithEmptyValueWhenNull() {
+		AhoCorasickReplacer replacer = new AhoCorasickReplacer(asList("token"), asList((String) null));
+		assertThat(replacer.replace("some token"), equalTo("some "));
+	}
+
+	@Test
+	public void shouldHandleEmptyContentsGracefully() {
+		AhoCorasickReplacer replacer = new AhoCorasickReplacer(asList("token"), asList("value"));
+		assertThat(replacer.replace(""), equalTo(""));
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void shouldThrowExceptionForEmptyToken() {
+		new AhoCorasickReplacer(asList(""), asList("value"));
+	}
+
+	@Test
+	public void shouldGiveSameResultsAsSequentialReplacement() {
+		Random random = new Random(42);
+		for (int run = 0; run < 500; run++) {
+			List<String> tokens = new ArrayList<String>();
+			List<String> values = new ArrayList<String>();
+			for (int i = 0; i < 1 + random.nextInt(8); i++) {
+				tokens.add(randomText(random, "abc", 1 + random.nextInt(4)));
+				values.add(randomText(random, "0123456789", 1 + random.nextInt(3)));
+			}
+			String content = randomText(random, "abcd", random.nextInt(60));
+
+			String expected = content;
+			for (int i = 0; i < tokens.size(); i++) {
+				expected = expected.replace(tokens.get(i), values.get(i));
+			}
+			assertThat(tokens + " in " + content, new AhoCorasickReplacer(tokens, values).replace(content),
+					equalTo(expected));
+		}
+	}
+
+	@Test
+	public void shouldGiveSameResultsWhenWritingInChunks() throws Exception {
+		Random random = new Random(7);
+		for (int run = 0; run < 500; run++) {
+			List<String> tokens = new ArrayList<String>();
+			List<String> values = new ArrayList<String>();
+			for (int i = 0; i < 1 + random.nextInt(8); i++) {
+				tokens.add(randomText(random, "abc", 1 + random.nextInt(4)));
+				values.add(randomText(random, "0123456789", random.nextInt(3)));
+			}
+			AhoCorasickReplacer replacer = new AhoCorasickReplacer(tokens, values);
+			String content = randomText(random, "abcd", random.nextInt(60));
+
+			StringWriter output = new StringWriter();
+			Writer writer = replacer.newWriter(output);
+			int position = 0;
+			while (position < content.length()) {
+				int length = Math.min(content.length() - position, 1 + random.nextInt(5));
+				writer.write(content, position, length);
+				position += length;
+			}
+			writer.close();
+			assertThat(tokens + " in " + content, output.toString(), equalTo(replacer.replace(content)));
+		}
+	}
+
+	@Test
+	public void shouldOnlyHoldBackPossibleMatchWhenWriting() throws Exception {
+		StringWriter output = new StringWriter();
+		Writer writer = new AhoCorasickReplacer(asList("@token@"), asList("value")).newWriter(output);
+
+		writer.write("some @token@ and @tok");
+		assertThat(output.toString(), equalTo("some value and "));
+		writer.write("en@!");
+		assertThat(output.toString(), equalTo("some value and value!"));
+		writer.close();
+		assertThat(output.toString(), equalTo("some value and value!"));
+	}
+
+	@Test(timeout = 10000)
+	public void shouldWriteLongRunsOfOverlappingMatchesAsTheyAreDecided() throws Exception {
+		AhoCorasickReplacer replacer = new AhoCorasickReplacer(asList("=="), asList("-"));
+		StringWriter output = new StringWriter();
+		Writer writer = replacer.newWriter(output);
+		char[] run = new char[8192];
+		Arrays.fill(run, '=');
+		for (int i = 0; i < 64; i++) {
+			writer.write(run);
+			assertThat(output.getBuffer().length(), greaterThanOrEqualTo((i + 1) * 4096 - 2));
+		}
+		writer.write("=");
+		writer.close();
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 64 * 4096; i++) {
+			expected.append('-');
+		}
+		assertThat(output.toString(), equalTo(expected.append('=').toString()));
+	}
+
+	private String randomText(Random random, String alphabet, int length) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return text.toString();
+	}
+}
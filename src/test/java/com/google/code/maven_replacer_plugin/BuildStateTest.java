@@ -0,0 +1,128 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BuildStateTest {
+	private static final String FINGERPRINT = "fingerprint";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String stateFile;
+	private File input;
+	private File output;
+
+	@Before
+	public void setUp() throws Exception {
+		stateFile = new File(folder.getRoot(), "state/build.properties").getPath();
+		input = folder.newFile("input");
+		output = folder.newFile("output");
+		FileUtils.writeStringToFile(input, "input");
+		FileUtils.writeStringToFile(output, "output");
+	}
+
+	@Test
+	public void shouldChangeFingerprintWithAnyPartOfReplacements() {
+		String fingerprint = BuildState.fingerprint(replacements("token", "value", null), true, 0, "UTF-8", "SEQUENTIAL", false);
+		assertThat(BuildState.fingerprint(replacements("token", "value", null), true, 0, "UTF-8", "SEQUENTIAL", false),
+				equalTo(fingerprint));
+
+		assertThat(BuildState.fingerprint(replacements("token", "other", null), true, 0, "UTF-8", "SEQUENTIAL", false),
+				not(equalTo(fingerprint)));
+		assertThat(BuildState.fingerprint(replacements("token", "value", "/a"), true, 0, "UTF-8", "SEQUENTIAL", false),
+				not(equalTo(fingerprint)));
+		assertThat(BuildState.fingerprint(replacements("tokenv", "alue", null), true, 0, "UTF-8", "SEQUENTIAL", false),
+				not(equalTo(fingerprint)));
+		List<Replacement> inPlace = replacements("token", "value", "/a");
+		inPlace.get(0).setXpathInPlace(true);
+		assertThat(BuildState.fingerprint(inPlace, true, 0, "UTF-8", "SEQUENTIAL", false),
+				not(equalTo(BuildState.fingerprint(replacements("token", "value", "/a"), true, 0, "UTF-8", "SEQUENTIAL", false))));
+		assertThat(BuildState.fingerprint(replacements("token", "value", null), false, 0, "UTF-8", "SEQUENTIAL", false),
+				not(equalTo(fingerprint)));
+		assertThat(BuildState.fingerprint(replacements("token", "value", null), true, 2, "UTF-8", "SEQUENTIAL", false),
+				not(equalTo(fingerprint)));
+		assertThat(BuildState.fingerprint(replacements("token", "value", null), true, 0, null, "SEQUENTIAL", false),
+				not(equalTo(fingerprint)));
+		assertThat(BuildState.fingerprint(replacements("token", "value", null), true, 0, "UTF-8", "LITERAL", false),
+				not(equalTo(fingerprint)));
+		assertThat(BuildState.fingerprint(replacements("token", "value", null), true, 0, "UTF-8", "SEQUENTIAL", true),
+				not(equalTo(fingerprint)));
+	}
+
+	@Test
+	public void shouldBeUpToDateOnceRecordedAndSaved() throws Exception {
+		BuildState state = new BuildState(stateFile, FINGERPRINT);
+		assertFalse(state.isUpToDate(input.getPath(), output.getPath()));
+		state.record(input.getPath(), output.getPath());
+		state.save();
+
+		assertTrue(new BuildState(stateFile, FINGERPRINT).isUpToDate(input.getPath(), output.getPath()));
+		assertFalse(new BuildState(stateFile, "other").isUpToDate(input.getPath(), output.getPath()));
+		assertFalse(new BuildState(stateFile, FINGERPRINT).isUpToDate(input.getPath(), input.getPath()));
+	}
+
+	@Test
+	public void shouldStayUpToDateWhenOnlyModificationTimeOfInputChanges() throws Exception {
+		record();
+		assertTrue(input.setLastModified(input.lastModified() - 60000));
+
+		assertTrue(new BuildState(stateFile, FINGERPRINT).isUpToDate(input.getPath(), output.getPath()));
+	}
+
+	@Test
+	public void shouldNotBeUpToDateWhenInputContentChanges() throws Exception {
+		record();
+		long lastModified = input.lastModified();
+		FileUtils.writeStringToFile(input, "INPUT");
+		assertTrue(input.setLastModified(lastModified - 60000));
+
+		assertFalse(new BuildState(stateFile, FINGERPRINT).isUpToDate(input.getPath(), output.getPath()));
+	}
+
+	@Test
+	public void shouldNotBeUpToDateWhenOutputIsTouchedOrRemoved() throws Exception {
+		record();
+		assertTrue(output.setLastModified(output.lastModified() - 60000));
+		assertFalse(new BuildState(stateFile, FINGERPRINT).isUpToDate(input.getPath(), output.getPath()));
+
+		record();
+		assertTrue(output.delete());
+		assertFalse(new BuildState(stateFile, FINGERPRINT).isUpToDate(input.getPath(), output.getPath()));
+	}
+
+	@Test
+	public void shouldOnlyKeepFilesSeenInLastRun() throws Exception {
+		record();
+		new BuildState(stateFile, FINGERPRINT).save();
+
+		assertFalse(new BuildState(stateFile, FINGERPRINT).isUpToDate(input.getPath(), output.getPath()));
+	}
+
+	private void record() throws Exception {
+		BuildState state = new BuildState(stateFile, FINGERPRINT);
+		state.record(input.getPath(), output.getPath());
+		state.save();
+	}
+
+	private List<Replacement> replacements(String token, String value, String xpath) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		replacement.setXpath(xpath);
+		return asList(replacement);
+	}
+}
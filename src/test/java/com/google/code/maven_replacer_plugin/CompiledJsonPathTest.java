@@ -0,0 +1,97 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+public class CompiledJsonPathTest {
+	private static final String JSON = "{\"paths\":{\"/pets\":{\"get\":{\"parameters\":[{\"name\":\"limit\"},"
+			+ "{\"name\":\"offset\"},{\"in\":\"query\"}]}}},\"tags\":[\"a\",\"b\"],\"info\":{\"title\":\"t\",\"version\":\"1\"},"
+			+ "\"it's\":null}";
+
+	@Test
+	public void shouldCompileChildStepsAndWildcards() {
+		assertThat(CompiledJsonPath.compile("$.info.title"), notNullValue());
+		assertThat(CompiledJsonPath.compile(" $['paths'][\"/pets\"].get.parameters[*].name "), notNullValue());
+		assertThat(CompiledJsonPath.compile("$.tags[1]"), notNullValue());
+		assertThat(CompiledJsonPath.compile("$.info.*"), notNullValue());
+	}
+
+	@Test
+	public void shouldNotCompileOtherPaths() {
+		assertThat(CompiledJsonPath.compile("$..name"), nullValue());
+		assertThat(CompiledJsonPath.compile("$.tags[0,1]"), nullValue());
+		assertThat(CompiledJsonPath.compile("$.tags[-1]"), nullValue());
+		assertThat(CompiledJsonPath.compile("$.tags[0:1]"), nullValue());
+		assertThat(CompiledJsonPath.compile("$.paths[?(@.get)]"), nullValue());
+		assertThat(CompiledJsonPath.compile("info.title"), nullValue());
+		assertThat(CompiledJsonPath.compile(null), nullValue());
+	}
+
+	@Test
+	public void shouldResolveValuesInDocumentOrder() {
+		assertThat(values("$.paths['/pets'].get.parameters[*].name"), equalTo(asList("limit", "offset")));
+		assertThat(values("$.info.*"), equalTo(asList("t", "1")));
+		assertThat(values("$.tags[*]"), equalTo(asList("a", "b")));
+		assertThat(values("$.tags[1]"), equalTo(asList("b")));
+		assertThat(values("$['it\\'s']"), equalTo(asList("null")));
+	}
+
+	@Test
+	public void shouldResolveNothingWhereStepsFindNothing() {
+		assertThat(values("$.missing.title"), equalTo(Collections.<String> emptyList()));
+		assertThat(values("$.tags[2]"), equalTo(Collections.<String> emptyList()));
+		assertThat(values("$.tags.name"), equalTo(Collections.<String> emptyList()));
+		assertThat(values("$.info.title.name"), equalTo(Collections.<String> emptyList()));
+	}
+
+	@Test
+	public void shouldReplaceResolvedValuesInPlace() {
+		JsonElement root = new JsonParser().parse(JSON);
+		for (CompiledJsonPath.Target target : CompiledJsonPath.compile("$.tags[*]").resolve(root)) {
+			target.set(new JsonPrimitive(target.get().getAsString().toUpperCase()));
+		}
+		CompiledJsonPath.compile("$.info.title").resolve(root).get(0).set(new JsonPrimitive("title"));
+
+		assertThat(root.getAsJsonObject().get("tags").toString(), equalTo("[\"A\",\"B\"]"));
+		assertThat(root.getAsJsonObject().get("info").toString(), equalTo("{\"title\":\"title\",\"version\":\"1\"}"));
+	}
+
+	@Test
+	public void shouldReadDefinitePathsAsJsonPathListsThem() {
+		JsonElement root = new JsonParser().parse(JSON);
+
+		assertThat(CompiledJsonPath.definite("$['it's']").resolve(root).get(0).location(),
+				equalTo(Collections.<Object> singletonList("it's")));
+		assertThat(CompiledJsonPath.definite("$['paths']['/pets']['get']['parameters'][1]['name']").resolve(root)
+				.get(0).get().getAsString(), equalTo("offset"));
+		assertThat(CompiledJsonPath.definite("$.info"), nullValue());
+		assertThat(CompiledJsonPath.definite("$['info'"), nullValue());
+		assertThat(CompiledJsonPath.definite("$[x]"), nullValue());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotResolveRoot() {
+		CompiledJsonPath.compile("$").resolve(new JsonParser().parse(JSON));
+	}
+
+	private List<String> values(String path) {
+		List<String> values = new ArrayList<String>();
+		for (CompiledJsonPath.Target target : CompiledJsonPath.compile(path).resolve(new JsonParser().parse(JSON))) {
+			values.add(target.get().toString().replace("\"", ""));
+		}
+		return values;
+	}
+}
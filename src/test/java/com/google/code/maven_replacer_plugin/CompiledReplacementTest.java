@@ -0,0 +1,97 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class CompiledReplacementTest {
+	private static final boolean REGEX = true;
+	private static final boolean NO_REGEX = false;
+	private static final int FLAGS = Pattern.CASE_INSENSITIVE;
+
+	@Test
+	public void shouldResolveTokenAndValueOnce() {
+		Replacement source = mock(Replacement.class);
+		when(source.getToken()).thenReturn("@token@");
+		when(source.getValue()).thenReturn("value");
+
+		CompiledReplacement compiled = new CompiledReplacement(source, NO_REGEX, FLAGS);
+		compiled.getToken();
+		compiled.getToken();
+		assertThat(compiled.getToken(), equalTo("@token@"));
+		assertThat(compiled.getValue(), equalTo("value"));
+		verify(source, times(1)).getToken();
+		verify(source, times(1)).getValue();
+	}
+
+	@Test
+	public void shouldUnescapeAndDelimitToken() {
+		Replacement source = new Replacement(new FileUtils(), "a\\tb", "c\\nd", true, null, null)
+				.withDelimiter(new DelimiterBuilder("${*}"));
+
+		CompiledReplacement compiled = new CompiledReplacement(source, NO_REGEX, FLAGS);
+		assertThat(compiled.getToken(), equalTo("${a\tb}"));
+		assertThat(compiled.getValue(), equalTo("c\nd"));
+		assertThat(compiled.isUnescape(), equalTo(true));
+	}
+
+	@Test
+	public void shouldCompilePatternForRegexFlags() {
+		Replacement source = new Replacement(new FileUtils(), "t.ken", "value", false, null, null);
+
+		CompiledReplacement compiled = new CompiledReplacement(source, REGEX, FLAGS);
+		assertThat(compiled.getPattern(FLAGS).pattern(), equalTo("t.ken"));
+		assertThat(compiled.getPattern(FLAGS).flags(), equalTo(FLAGS));
+		assertThat(compiled.getPattern(0), nullValue());
+		assertThat(new CompiledReplacement(source, NO_REGEX, FLAGS).getPattern(FLAGS), nullValue());
+	}
+
+	@Test
+	public void shouldLeaveInvalidPatternsToFailWhenUsed() {
+		Replacement source = new Replacement(new FileUtils(), "(", "value", false, null, null);
+
+		assertThat(new CompiledReplacement(source, REGEX, FLAGS).getPattern(FLAGS), nullValue());
+	}
+
+	@Test
+	public void shouldDecideKindOfReplacer() {
+		Replacement xpath = new Replacement(new FileUtils(), "token", "value", false, "/a", null);
+		Replacement jsonpath = new Replacement(new FileUtils(), "token", "value", false, null, null, "$.a", null);
+		Replacement token = new Replacement(new FileUtils(), "token", "value", false, null, null);
+
+		assertThat(new CompiledReplacement(xpath, NO_REGEX, FLAGS).getKind(), equalTo(CompiledReplacement.Kind.XPATH));
+		assertThat(new CompiledReplacement(jsonpath, NO_REGEX, FLAGS).getKind(), equalTo(CompiledReplacement.Kind.JSONPATH));
+		assertThat(new CompiledReplacement(token, NO_REGEX, FLAGS).getKind(), equalTo(CompiledReplacement.Kind.TOKEN));
+	}
+
+	@Test
+	public void shouldCompileEachReplacementButGroups() {
+		Replacement token = new Replacement(new FileUtils(), "token", "value", false, null, null);
+		GroupedReplacement group = new GroupedReplacement(asList(token), null, "group");
+
+		List<Replacement> compiled = CompiledReplacement.compile(asList(token, group), NO_REGEX, FLAGS);
+		assertThat(((CompiledReplacement) compiled.get(0)).getSource(), sameInstance(token));
+		assertThat(compiled.get(1), sameInstance((Replacement) group));
+		assertThat(CompiledReplacement.compile(compiled, NO_REGEX, FLAGS).get(0), sameInstance(compiled.get(0)));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void shouldNotBeChanged() {
+		Replacement token = new Replacement(new FileUtils(), "token", "value", false, null, null);
+
+		new CompiledReplacement(token, NO_REGEX, FLAGS).setValue("other");
+	}
+}
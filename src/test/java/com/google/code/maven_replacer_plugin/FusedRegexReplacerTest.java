@@ -0,0 +1,98 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class FusedRegexReplacerTest {
+	private static final int NO_FLAGS = -1;
+
+	@Test
+	public void shouldReplaceAllPatternsInOneScan() {
+		FusedRegexReplacer replacer = new FusedRegexReplacer(asList("v\\d+", "n[a-z]+"), asList("V", "N"), NO_FLAGS);
+		assertThat(replacer.replace("v12 name v3"), equalTo("V N V"));
+	}
+
+	@Test
+	public void shouldKeepGroupReferencesRelativeToEachToken() {
+		FusedRegexReplacer replacer = new FusedRegexReplacer(asList("(a)(b)", "(c)(d)"),
+				asList("$2$1", "[$2\\$$1]"), NO_FLAGS);
+		assertThat(replacer.replace("ab cd"), equalTo("ba [d$c]"));
+	}
+
+	@Test
+	public void shouldReadMultiDigitGroupReferencesLikeMatcher() {
+		FusedRegexReplacer replacer = new FusedRegexReplacer(asList("x", "(y)"), asList("-", "$10"), NO_FLAGS);
+		assertThat(replacer.replace("xy"), equalTo("-y0"));
+	}
+
+	@Test
+	public void shouldApplyFlagsToAllPatterns() {
+		FusedRegexReplacer replacer = new FusedRegexReplacer(asList("abc", "def"), asList("1", "2"),
+				Pattern.CASE_INSENSITIVE);
+		assertThat(replacer.replace("ABC Def"), equalTo("1 2"));
+	}
+
+	@Test
+	public void shouldReturnSameContentWhenNothingMatches() {
+		FusedRegexReplacer replacer = new FusedRegexReplacer(asList("a", "b"), asList("1", "2"), NO_FLAGS);
+		String content = "xyz";
+		assertThat(replacer.replace(content), sameInstance(content));
+	}
+
+	@Test
+	public void shouldOnlyFuseTokensThatKeepTheirMeaningInAnAlternation() {
+		assertTrue(FusedRegexReplacer.canFuse("(?<=@)token(?=@)", NO_FLAGS));
+		assertFalse(FusedRegexReplacer.canFuse("(a)\\1", NO_FLAGS));
+		assertFalse(FusedRegexReplacer.canFuse("(?<name>a)", NO_FLAGS));
+		assertFalse(FusedRegexReplacer.canFuse("\\Qa|b", NO_FLAGS));
+		assertFalse(FusedRegexReplacer.canFuse("a*", NO_FLAGS));
+		assertFalse(FusedRegexReplacer.canFuse("${token}", NO_FLAGS));
+		assertFalse(FusedRegexReplacer.canFuse("token", Pattern.LITERAL));
+		assertFalse(FusedRegexReplacer.canFuse("a # comment", Pattern.COMMENTS));
+	}
+
+	@Test
+	public void shouldOnlyExpandValidValues() {
+		assertTrue(FusedRegexReplacer.canExpand("$1 \\$", 1));
+		assertFalse(FusedRegexReplacer.canExpand("$2", 1));
+		assertFalse(FusedRegexReplacer.canExpand("${name}", 1));
+		assertFalse(FusedRegexReplacer.canExpand("\\", 0));
+	}
+
+	@Test
+	public void shouldStripGroupReferencesFromLiteralText() {
+		assertThat(FusedRegexReplacer.literalText("a$1b\\$c"), equalTo("ab$c"));
+	}
+
+	@Test
+	public void shouldApplySingleTokenLikeMatcherReplaceAll() {
+		String[][] cases = {
+				{ "(a)\\1", "[$1]", "aa ab aa" },
+				{ "(?<x>b)", "<$1>", "abc" },
+				{ "x*", "-", "axxb" },
+				{ "^a", "A", "aa" } };
+		for (String[] tokenValueContent : cases) {
+			FusedRegexReplacer replacer = new FusedRegexReplacer(asList(tokenValueContent[0]),
+					asList(tokenValueContent[1]), NO_FLAGS);
+			assertThat(replacer.replace(tokenValueContent[2]),
+					equalTo(tokenValueContent[2].replaceAll(tokenValueContent[0], tokenValueContent[1])));
+		}
+	}
+
+	@Test
+	public void shouldWriteReplacedContent() throws Exception {
+		FusedRegexReplacer replacer = new FusedRegexReplacer(asList("v(\\d+)", "n[a-z]+"), asList("V$1", "N"), NO_FLAGS);
+		StringWriter output = new StringWriter();
+		replacer.replace(new StringBuilder("v12 name v3 ."), output);
+		assertThat(output.toString(), equalTo("V12 N V3 ."));
+	}
+}
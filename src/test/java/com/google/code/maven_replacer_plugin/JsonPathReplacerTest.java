@@ -23,11 +23,16 @@ SOFTWARE.
  */
 package com.google.code.maven_replacer_plugin;
 
+import com.google.code.maven_replacer_plugin.file.FileUtils;
 import com.jayway.jsonpath.JsonPath;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.List;
+
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -74,4 +79,72 @@ public class JsonPathReplacerTest {
 		String value = JsonPath.read(result, jsonPath + ".child");
 		assertEquals(value, "I am a grand child");
 	}
+
+	@Test
+	public void applyGroupedReplacementsToOneParseAsIfAppliedOneAfterAnother() {
+		List<Replacement> replacements = asList(
+				new Replacement(new FileUtils(), "old", "new", false, null, null, "$.root.name", null),
+				new Replacement(new FileUtils(), "1", "2", false, null, null, "$.root.items[*]", "number"),
+				new Replacement(new FileUtils(), "new", "newer", false, null, null, "$.root.name", "string"));
+		String json = "{\"root\":{\"name\":\"old value\",\"items\":[1,11,3]}}";
+
+		String sequential = json;
+		for (Replacement each : replacements) {
+			sequential = new JsonPathReplacer(new TokenReplacer()).replace(sequential, each, false, NO_FLAGS);
+		}
+		String grouped = new JsonPathReplacer(new TokenReplacer()).replace(json,
+				new GroupedReplacement(replacements, null, "3 jsonpath replacements"), false, NO_FLAGS);
+
+		assertEquals(sequential, grouped);
+		assertEquals("newer value", JsonPath.read(grouped, "$.root.name"));
+		assertEquals(asList(2, 22, 3), JsonPath.read(grouped, "$.root.items"));
+	}
+
+	@Test
+	public void leaveContentUntouchedWhenNoPathMatches() {
+		Replacement missing = new Replacement(new FileUtils(), "old", "new", false, null, null, "$.missing", null);
+		String json = "{\"root\":  {\"name\":\"old\"}}";
+
+		assertSame(json, replacer.replace(json, missing, false, NO_FLAGS));
+	}
+
+	@Test
+	public void replaceValuesFoundByJsonPathOutsideCompiledSubset() {
+		Replacement filtered = new Replacement(new FileUtils(), "1", "9", false, null, null,
+				"$.items[?(@.name == 'b')].id", "number");
+		String json = "{\"items\":[{\"name\":\"a\",\"id\":1},{\"name\":\"b\",\"id\":1}]}";
+
+		String result = new JsonPathReplacer(new TokenReplacer()).replace(json, filtered, false, NO_FLAGS);
+		assertEquals(asList(1, 9), JsonPath.read(result, "$.items[*].id"));
+	}
+
+	@Test
+	public void replaceValuesUnderNamesWithQuotesFoundByJsonPath() {
+		Replacement deep = new Replacement(new FileUtils(), "x", "Y", false, null, null, "$..name", null);
+		String json = "{\"it's\":{\"name\":\"x\"}}";
+
+		String result = new JsonPathReplacer(new TokenReplacer()).replace(json, deep, false, NO_FLAGS);
+		assertEquals("Y", JsonPath.read(result, "$['it\\'s'].name"));
+	}
+
+	@Test
+	public void keepFormattingOfUnchangedValuesWhenPreservingFormat() {
+		List<Replacement> replacements = asList(
+				new Replacement(new FileUtils(), "old", "new \"one\"", false, null, null, "$.root.name", null),
+				new Replacement(new FileUtils(), "1", "{\"id\": 2}", false, null, null, "$.root.items[0]", "object"));
+		String json = "{\n    \"root\" : {\"name\":\"old\",  \"items\": [ 1, 1.50 ],\n\t\"url\": \"<a>\"}\n}\n";
+
+		String result = new JsonPathReplacer(new TokenReplacer(), true).replace(json,
+				new GroupedReplacement(replacements, null, "2 jsonpath replacements"), false, NO_FLAGS);
+		assertEquals("{\n    \"root\" : {\"name\":\"new \\\"one\\\"\",  \"items\": [ {\"id\":2}, 1.50 ],\n"
+				+ "\t\"url\": \"<a>\"}\n}\n", result);
+	}
+
+	@Test
+	public void reformatContentThatCannotBePatchedWhenPreservingFormat() {
+		Replacement lenient = new Replacement(new FileUtils(), "old", "new", false, null, null, "$.name", null);
+
+		String result = new JsonPathReplacer(new TokenReplacer(), true).replace("{name: 'old'}", lenient, false, NO_FLAGS);
+		assertEquals("{\n  \"name\": \"new\"\n}", result);
+	}
 }
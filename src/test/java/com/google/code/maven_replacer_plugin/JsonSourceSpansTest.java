@@ -0,0 +1,59 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+public class JsonSourceSpansTest {
+
+	@Test
+	public void shouldSpliceChangedValuesIntoSource() {
+		String source = "{ \"a\" : [ 1 , \"x\\u0041\" ],\n\t\"b\": {\"c\": null} }";
+		JsonElement root = new JsonParser().parse(source);
+		root.getAsJsonObject().getAsJsonArray("a").set(1, new JsonPrimitive("<y>"));
+		root.getAsJsonObject().getAsJsonObject("b").addProperty("c", 2);
+
+		String patched = JsonSourceSpans.patch(source, root, asList(location("a", 1), location("b", "c")));
+		assertThat(patched, equalTo("{ \"a\" : [ 1 , \"<y>\" ],\n\t\"b\": {\"c\": 2} }"));
+	}
+
+	@Test
+	public void shouldWriteOutermostChangedValueOnly() {
+		String source = "{\"a\": {\"b\":  1}}";
+		JsonElement root = new JsonParser().parse("{\"a\": {\"b\": 2, \"c\": 3}}");
+
+		String patched = JsonSourceSpans.patch(source, root, asList(location("a", "b"), location("a")));
+		assertThat(patched, equalTo("{\"a\": {\"b\":2,\"c\":3}}"));
+	}
+
+	@Test
+	public void shouldPatchLastOfRepeatedNames() {
+		String source = "{\"a\": 1, \"a\": 1}";
+		JsonElement root = new JsonParser().parse("{\"a\": 2}");
+
+		String patched = JsonSourceSpans.patch(source, root, Collections.singletonList(location("a")));
+		assertThat(patched, equalTo("{\"a\": 1, \"a\": 2}"));
+	}
+
+	@Test
+	public void shouldNotPatchLenientSource() {
+		String source = "{a: 1}";
+		JsonElement root = new JsonParser().parse("{\"a\": 2}");
+
+		assertThat(JsonSourceSpans.patch(source, root, Collections.singletonList(location("a"))), nullValue());
+	}
+
+	private static List<Object> location(Object... steps) {
+		return asList(steps);
+	}
+}
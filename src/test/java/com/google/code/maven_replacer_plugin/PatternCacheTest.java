@@ -0,0 +1,60 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PatternCacheTest {
+	private static final int NO_FLAGS = -1;
+
+	private PatternCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new PatternCache(2);
+	}
+
+	@Test
+	public void shouldReturnSamePatternForSameTokenAndFlags() {
+		Pattern first = cache.get("t.k.n", NO_FLAGS);
+		Pattern second = cache.get("t.k.n", NO_FLAGS);
+
+		assertThat(second, sameInstance(first));
+		assertThat(cache.getHits(), equalTo(1L));
+		assertThat(cache.getMisses(), equalTo(1L));
+	}
+
+	@Test
+	public void shouldKeySeparatelyOnFlags() {
+		Pattern plain = cache.get("token", NO_FLAGS);
+		Pattern insensitive = cache.get("token", Pattern.CASE_INSENSITIVE);
+
+		assertThat(insensitive, not(sameInstance(plain)));
+		assertThat(insensitive.flags(), equalTo(Pattern.CASE_INSENSITIVE));
+		assertThat(cache.getMisses(), equalTo(2L));
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedWhenFull() {
+		Pattern first = cache.get("first", NO_FLAGS);
+		cache.get("second", NO_FLAGS);
+		cache.get("first", NO_FLAGS);
+		cache.get("third", NO_FLAGS);
+
+		assertThat(cache.size(), equalTo(2));
+		assertThat(cache.get("first", NO_FLAGS), sameInstance(first));
+		cache.get("second", NO_FLAGS);
+		assertThat(cache.getMisses(), equalTo(4L));
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void shouldNotAllowEmptyCache() {
+		new PatternCache(0);
+	}
+}
@@ -0,0 +1,80 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+
+import com.google.code.maven_replacer_plugin.PerformanceReport.FileReport;
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class PerformanceReportTest {
+	private static final long MILLI = 1000000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldWriteFileAndReplacementRowsAsCsv() throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		FileReport file = report.startFile("in,put", "output");
+		file.read(2 * MILLI, 100);
+		file.replaced(0, "to\"ken", 3 * MILLI, 4);
+		file.replaced(1, "other", MILLI / 2, PerformanceReport.NOT_COUNTED);
+		file.written(MILLI, 120);
+		report.add(file);
+
+		File csv = new File(folder.getRoot(), "report/performance.csv");
+		report.writeCsv(new FileUtils(), csv.getPath());
+		assertThat(org.apache.commons.io.FileUtils.readFileToString(csv, "UTF-8"), equalTo(
+				"type,inputFile,outputFile,replacement,token,readMillis,replaceMillis,writeMillis,bytesIn,bytesOut,matches\n"
+				+ "file,\"in,put\",output,,,2.000,3.500,1.000,100,120,\n"
+				+ "replacement,\"in,put\",output,0,\"to\"\"ken\",,3.000,,,,4\n"
+				+ "replacement,\"in,put\",output,1,other,,0.500,,,,\n"));
+	}
+
+	@Test
+	public void shouldLogSlowestFilesAndReplacementsSummedOverFiles() {
+		PerformanceReport report = new PerformanceReport();
+		report.add(file(report, "fast", 1, 1));
+		report.add(file(report, "slow", 1, 8));
+		report.add(file(report, "medium", 4, 1));
+
+		Log log = mock(Log.class);
+		report.logSlowest(log, 2);
+		InOrder inOrder = inOrder(log);
+		inOrder.verify(log).info("Slowest 2 of 3 files:");
+		inOrder.verify(log).info(startsWith("  9.0 ms slow "));
+		inOrder.verify(log).info(startsWith("  5.0 ms medium "));
+		inOrder.verify(log).info("Slowest 2 of 2 replacements:");
+		inOrder.verify(log).info("  10.0 ms #1 second (3 matches)");
+		inOrder.verify(log).info("  6.0 ms #0 first (3 matches)");
+		verify(log, never()).info(startsWith("  2.0 ms fast"));
+	}
+
+	@Test
+	public void shouldNotLogAnythingWithoutFiles() {
+		Log log = mock(Log.class);
+		new PerformanceReport().logSlowest(log, 10);
+		verify(log, never()).info(anyString());
+	}
+
+	private FileReport file(PerformanceReport report, String name, long firstMillis, long secondMillis) {
+		FileReport file = report.startFile(name, name);
+		file.replaced(0, "first", firstMillis * MILLI, 1);
+		file.replaced(1, "second", secondMillis * MILLI, 1);
+		return file;
+	}
+}
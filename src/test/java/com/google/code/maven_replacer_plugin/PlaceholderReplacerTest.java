@@ -0,0 +1,86 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class PlaceholderReplacerTest {
+	private static final int NO_FLAGS = -1;
+	private static final List<DelimiterBuilder> DELIMITERS = asList(new DelimiterBuilder("@"),
+			new DelimiterBuilder("${*}"));
+
+	@Test
+	public void shouldReplaceKnownPlaceholdersOfEachDelimiter() {
+		PlaceholderReplacer replacer = replacer("@name@", "app", "${version}", "1.0");
+
+		assertThat(replacer.replace("@name@-${version} @other@ ${name} $", null, false, NO_FLAGS),
+				equalTo("app-1.0 @other@ ${name} $"));
+	}
+
+	@Test
+	public void shouldReturnContentAsIsWhenNothingIsReplaced() {
+		String content = "@other@ and ${other}";
+
+		assertThat(replacer("@name@", "app").replace(content, null, false, NO_FLAGS), sameInstance(content));
+	}
+
+	@Test
+	public void shouldFindPlaceholderAfterUnknownOneSharingItsDelimiter() {
+		PlaceholderReplacer replacer = replacer("@b@", "B");
+
+		assertThat(replacer.replace("@a@b@", null, false, NO_FLAGS), equalTo("@aB"));
+	}
+
+	@Test
+	public void shouldFindTokensContainingTheEndDelimiter() {
+		PlaceholderReplacer replacer = replacer("${a}b}", "X");
+
+		assertThat(replacer.replace("${a}b} ${a}", null, false, NO_FLAGS), equalTo("X ${a}"));
+	}
+
+	@Test
+	public void shouldPreferFirstListedTokenAtTheSamePosition() {
+		PlaceholderReplacer replacer = replacer("${a}b}", "long", "${a}", "short");
+
+		assertThat(replacer.replace("${a}b}", null, false, NO_FLAGS), equalTo("long"));
+	}
+
+	@Test
+	public void shouldNotScanReplacedValuesAgain() {
+		PlaceholderReplacer replacer = replacer("@a@", "@b@", "@b@", "B");
+
+		assertThat(replacer.replace("@a@", null, false, NO_FLAGS), equalTo("@b@"));
+	}
+
+	@Test(timeout = 10000)
+	public void shouldNotSearchPastLongestTokenForEndDelimiter() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 200000; i++) {
+			content.append("${");
+		}
+		PlaceholderReplacer replacer = replacer("${a}", "1");
+
+		assertThat(replacer.replace(content + "${a}", null, false, NO_FLAGS), equalTo(content + "1"));
+	}
+
+	@Test
+	public void shouldIdentifyPlaceholders() {
+		assertThat(PlaceholderReplacer.isPlaceholder("${a}", DELIMITERS), equalTo(true));
+		assertThat(PlaceholderReplacer.isPlaceholder("@a@", DELIMITERS), equalTo(true));
+		assertThat(PlaceholderReplacer.isPlaceholder("@@", DELIMITERS), equalTo(false));
+		assertThat(PlaceholderReplacer.isPlaceholder("a", DELIMITERS), equalTo(false));
+	}
+
+	private static PlaceholderReplacer replacer(String... tokensAndValues) {
+		TokenValueTable table = new TokenValueTable(null, null);
+		for (int i = 0; i < tokensAndValues.length; i += 2) {
+			table.add(tokensAndValues[i], tokensAndValues[i + 1]);
+		}
+		return new PlaceholderReplacer(DELIMITERS, table);
+	}
+}
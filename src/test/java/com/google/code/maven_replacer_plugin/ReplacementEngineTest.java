@@ -0,0 +1,212 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class ReplacementEngineTest {
+	private static final int NO_FLAGS = -1;
+
+	@Test
+	public void shouldDefaultToSequential() {
+		assertThat(ReplacementEngine.fromName(null), equalTo(ReplacementEngine.SEQUENTIAL));
+		assertThat(ReplacementEngine.fromName(" Literal "), equalTo(ReplacementEngine.LITERAL));
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void shouldThrowExceptionForUnknownEngine() {
+		ReplacementEngine.fromName("unknown");
+	}
+
+	@Test
+	public void shouldLeaveReplacementsUntouchedWhenSequential() {
+		List<Replacement> replacements = asList(replacement("a", null), replacement("b", null));
+		assertThat(ReplacementEngine.SEQUENTIAL.prepare(replacements, false, NO_FLAGS), sameInstance(replacements));
+	}
+
+	@Test
+	public void shouldLeaveReplacementsUntouchedWhenLiteralWithRegex() {
+		List<Replacement> replacements = asList(replacement("a", null), replacement("b", null));
+		assertThat(ReplacementEngine.LITERAL.prepare(replacements, true, NO_FLAGS), sameInstance(replacements));
+	}
+
+	@Test
+	public void shouldGroupConsecutiveLiteralReplacementsAroundXPath() {
+		Replacement xpath = replacement("c", "//node");
+		List<Replacement> prepared = ReplacementEngine.LITERAL.prepare(asList(replacement("a", null),
+				replacement("b", null), xpath, replacement("d", null)), false, NO_FLAGS);
+
+		assertThat(prepared.size(), equalTo(3));
+		assertThat(prepared.get(0), instanceOf(GroupedReplacement.class));
+		assertThat(((GroupedReplacement) prepared.get(0)).getReplacements().size(), equalTo(2));
+		assertThat(prepared.get(0).getToken(), equalTo("2 literal tokens"));
+		assertThat(prepared.get(1), sameInstance(xpath));
+		assertThat(prepared.get(2).getToken(), equalTo("d"));
+	}
+
+	@Test
+	public void shouldReplaceAsSequentialWithGroupedReplacements() throws Exception {
+		List<Replacement> prepared = ReplacementEngine.LITERAL.prepare(asList(replacement("a", null),
+				replacement("b", null)), false, NO_FLAGS);
+		Replacer replacer = new ReplacerFactory().create(prepared.get(0));
+
+		assertThat(replacer.replace("a-b-c", prepared.get(0), false, NO_FLAGS), equalTo("a value-b value-c"));
+	}
+
+	@Test
+	public void shouldFuseIndependentRegexReplacements() {
+		List<Replacement> prepared = ReplacementEngine.FUSED.prepare(asList(replacement("a+", null),
+				replacement("b+", null), replacement("(c)\\1", null), replacement("d", null)), true, NO_FLAGS);
+
+		assertThat(prepared.size(), equalTo(3));
+		assertThat(prepared.get(0).getToken(), equalTo("2 fused patterns"));
+		assertThat(prepared.get(1).getToken(), equalTo("(c)\\1"));
+		assertThat(prepared.get(2).getToken(), equalTo("d"));
+	}
+
+	@Test
+	public void shouldNotFuseReplacementWhoseTokenMatchesAnEarlierValue() {
+		List<Replacement> prepared = ReplacementEngine.FUSED.prepare(asList(replacement("a", null),
+				replacement("value", null), replacement("x", null)), true, NO_FLAGS);
+
+		assertThat(prepared.size(), equalTo(2));
+		assertThat(prepared.get(0).getToken(), equalTo("a"));
+		assertThat(prepared.get(1).getToken(), equalTo("2 fused patterns"));
+	}
+
+	@Test
+	public void shouldNotFuseReplacementAfterAnEarlierValueWithGroupReferences() {
+		List<Replacement> replacements = asList(new Replacement(new FileUtils(), "(\\w+)@", "$1", false, null, null),
+				new Replacement(new FileUtils(), "foo", "BAR", false, null, null));
+		List<Replacement> prepared = ReplacementEngine.FUSED.prepare(replacements, true, NO_FLAGS);
+
+		assertThat(prepared.size(), equalTo(2));
+		String content = "foo@";
+		for (Replacement replacement : prepared) {
+			content = new ReplacerFactory().create(replacement).replace(content, replacement, true, NO_FLAGS);
+		}
+		assertThat(content, equalTo("BAR"));
+	}
+
+	@Test
+	public void shouldLeaveReplacementsUntouchedWhenFusedWithoutRegex() {
+		List<Replacement> replacements = asList(replacement("a", null), replacement("b", null));
+		assertThat(ReplacementEngine.FUSED.prepare(replacements, false, NO_FLAGS), sameInstance(replacements));
+	}
+
+	@Test
+	public void shouldGroupConsecutiveXPathReplacements() {
+		Replacement last = replacement("d", "//d");
+		List<Replacement> prepared = ReplacementEngine.SEQUENTIAL.prepare(asList(replacement("a", "//a"),
+				replacement("b", "//b/@id"), replacement("c", null), last), false, NO_FLAGS);
+
+		assertThat(prepared.size(), equalTo(3));
+		assertThat(prepared.get(0), instanceOf(GroupedReplacement.class));
+		assertThat(((GroupedReplacement) prepared.get(0)).getReplacements().size(), equalTo(2));
+		assertThat(((GroupedReplacement) prepared.get(0)).getReplacer(), nullValue());
+		assertThat(prepared.get(0).getToken(), equalTo("2 xpath replacements"));
+		assertThat(prepared.get(0).getXpath(), equalTo("//a | //b/@id"));
+		assertThat(prepared.get(1).getToken(), equalTo("c"));
+		assertThat(prepared.get(2), sameInstance(last));
+	}
+
+	@Test
+	public void shouldGroupConsecutiveJsonPathReplacementsSeparatelyFromXPath() {
+		Replacement xpath = replacement("a", "//a");
+		List<Replacement> prepared = ReplacementEngine.SEQUENTIAL.prepare(asList(xpath,
+				jsonReplacement("b", "$.b"), jsonReplacement("c", "$.c")), false, NO_FLAGS);
+
+		assertThat(prepared.size(), equalTo(2));
+		assertThat(prepared.get(0), sameInstance(xpath));
+		assertThat(prepared.get(1).getToken(), equalTo("2 jsonpath replacements"));
+		assertThat(prepared.get(1).getJsonpath(), equalTo("$.b | $.c"));
+		assertThat(prepared.get(1).getXpath(), nullValue());
+	}
+
+	private Replacement jsonReplacement(String token, String jsonpath) {
+		return new Replacement(new FileUtils(), token, token + " value", false, null, null, jsonpath, null);
+	}
+
+	@Test
+	public void shouldGroupConsecutivePlaceholderReplacements() {
+		List<DelimiterBuilder> delimiters = asList(new DelimiterBuilder("@"));
+		Replacement undelimited = replacement("c", null);
+		List<Replacement> prepared = ReplacementEngine.PLACEHOLDER.prepare(asList(replacement("@a@", null),
+				replacement("@b@", null), undelimited), false, NO_FLAGS, delimiters);
+
+		assertThat(prepared.size(), equalTo(2));
+		assertThat(prepared.get(0).getToken(), equalTo("2 placeholders"));
+		assertThat(((GroupedReplacement) prepared.get(0)).getReplacer(), instanceOf(PlaceholderReplacer.class));
+		assertThat(prepared.get(1), sameInstance(undelimited));
+	}
+
+	@Test
+	public void shouldGroupWholeTokenValueTableWithoutCopyingIt() {
+		TokenValueTable table = new TokenValueTable(new FileUtils(), null);
+		table.add("${a}", "1");
+		table.add("${b}", "2");
+		List<Replacement> prepared = ReplacementEngine.PLACEHOLDER.prepare(table, false, NO_FLAGS,
+				asList(new DelimiterBuilder("${*}")));
+
+		assertThat(prepared.size(), equalTo(1));
+		assertThat(((GroupedReplacement) prepared.get(0)).getReplacements().get(1).getToken(), equalTo("${b}"));
+		assertThat(new ReplacerFactory().create(prepared.get(0)).replace("${b}${a}${c}", prepared.get(0), false,
+				NO_FLAGS), equalTo("21${c}"));
+	}
+
+	@Test
+	public void shouldPrepareReadOnlyTableOnceForEachWayOfPreparingIt() {
+		TokenValueTable table = new TokenValueTable(new FileUtils(), null);
+		table.add("${a}", "1");
+		table.add("${b}", "2");
+		table.setReadOnly();
+		List<DelimiterBuilder> delimiters = asList(new DelimiterBuilder("${*}"));
+
+		List<Replacement> prepared = ReplacementEngine.PLACEHOLDER.prepare(table, false, NO_FLAGS, delimiters);
+
+		assertThat(ReplacementEngine.PLACEHOLDER.prepare(table, false, NO_FLAGS, asList(new DelimiterBuilder("${*}"))),
+				sameInstance(prepared));
+		assertThat(ReplacementEngine.LITERAL.prepare(table, false, NO_FLAGS, delimiters), not(sameInstance(prepared)));
+		assertThat(ReplacementEngine.PLACEHOLDER.prepare(table, false, NO_FLAGS, asList(new DelimiterBuilder("@"))),
+				not(sameInstance(prepared)));
+	}
+
+	@Test
+	public void shouldCompileReadOnlyTableOnceWithRegex() {
+		TokenValueTable table = new TokenValueTable(new FileUtils(), null);
+		table.add("a+", "1");
+		table.add("b+", "2");
+		table.setReadOnly();
+
+		List<Replacement> prepared = ReplacementEngine.SEQUENTIAL.prepare(table, true, NO_FLAGS);
+
+		assertThat(prepared.size(), equalTo(2));
+		assertThat(prepared.get(1), instanceOf(CompiledReplacement.class));
+		assertThat(prepared.get(1).getToken(), equalTo("b+"));
+		assertThat(ReplacementEngine.SEQUENTIAL.prepare(table, true, NO_FLAGS), sameInstance(prepared));
+	}
+
+	@Test
+	public void shouldLeaveReplacementsUntouchedWhenPlaceholderWithoutDelimitersOrWithRegex() {
+		List<Replacement> replacements = asList(replacement("@a@", null), replacement("@b@", null));
+		List<DelimiterBuilder> delimiters = asList(new DelimiterBuilder("@"));
+
+		assertThat(ReplacementEngine.PLACEHOLDER.prepare(replacements, false, NO_FLAGS), sameInstance(replacements));
+		assertThat(ReplacementEngine.PLACEHOLDER.prepare(replacements, true, NO_FLAGS, delimiters),
+				sameInstance(replacements));
+	}
+
+	private Replacement replacement(String token, String xpath) {
+		return new Replacement(new FileUtils(), token, token + " value", false, xpath, null);
+	}
+}
@@ -2,15 +2,32 @@ package com.google.code.maven_replacer_plugin;
 
 
 import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import com.google.code.maven_replacer_plugin.file.FileUtils;
 
@@ -45,6 +62,7 @@ public class ReplacementProcessorTest {
 		when(replacement.getToken()).thenReturn(TOKEN);
 		when(replacement.getValue()).thenReturn(VALUE);
 		when(replacerFactory.create(replacement)).thenReturn(replacer);
+		when(replacerFactory.getTokenReplacer()).thenReturn(new TokenReplacer());
 		
 		processor = new ReplacementProcessor(fileUtils, replacerFactory);
 	}
@@ -80,4 +98,254 @@ public class ReplacementProcessorTest {
 		processor.replace(asList(replacement), USE_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
 		verifyZeroInteractions(fileUtils);
 	}
+
+	@Test
+	public void shouldStreamLiteralReplacementsOfFilesAboveThreshold() throws Exception {
+		StringWriter output = new StringWriter();
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(fileUtils.openReader(FILE, ENCODING)).thenReturn(new StringReader("a token and a token"));
+		when(fileUtils.createTempFileFor(OUTPUT_FILE)).thenReturn("temp");
+		when(fileUtils.openWriter("temp", ENCODING)).thenReturn(output);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		assertThat(output.toString(), equalTo("a value and a value"));
+		verify(fileUtils).moveFile("temp", OUTPUT_FILE);
+		verify(fileUtils, never()).readFile(FILE, ENCODING);
+		verifyZeroInteractions(replacerFactory);
+	}
+
+	@Test
+	public void shouldNotStreamPlaceholderGroupsAboveThreshold() throws Exception {
+		List<Replacement> prepared = ReplacementEngine.PLACEHOLDER.prepare(
+				asList(new Replacement(fileUtils, "${a}", "AAA", false, null, ENCODING),
+						new Replacement(fileUtils, "${b}", "BBB", false, null, ENCODING)),
+				NO_REGEX, REGEX_FLAGS, asList(new DelimiterBuilder("${*}")));
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(fileUtils.readFile(FILE, ENCODING)).thenReturn("hello ${a} and ${b} end, 2 placeholders");
+		processor = new ReplacementProcessor(fileUtils, new ReplacerFactory());
+		processor.setStreamingThreshold(1);
+
+		processor.replace(prepared, NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		verify(fileUtils).writeToFile(OUTPUT_FILE, "hello AAA and BBB end, 2 placeholders", ENCODING);
+		verify(fileUtils, never()).openReader(FILE, ENCODING);
+	}
+
+	@Test
+	public void shouldNotStreamFilesUpToThreshold() throws Exception {
+		when(fileUtils.fileSize(FILE)).thenReturn(10L);
+		when(replacer.replace(CONTENT, replacement, false, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		verify(fileUtils).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
+	}
+
+	@Test
+	public void shouldReadRegexReplacementsWholeWhenFileCannotBeMapped() throws Exception {
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(replacer.replace(CONTENT, replacement, true, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), USE_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		verify(fileUtils).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
+	}
+
+	@Test
+	public void shouldNotStreamXPathReplacements() throws Exception {
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(replacement.getXpath()).thenReturn("/a");
+		when(replacer.replace(CONTENT, replacement, false, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		verify(fileUtils).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
+	}
+
+	@Test
+	public void shouldStreamXPathReplacementsWithinStreamingSubset() throws Exception {
+		StringWriter output = new StringWriter();
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(replacement.getXpath()).thenReturn("/a/@id");
+		when(fileUtils.openReader(FILE, ENCODING)).thenReturn(new StringReader("<a id=\"token\">token</a>"));
+		when(fileUtils.createTempFileFor(OUTPUT_FILE)).thenReturn("temp");
+		when(fileUtils.openWriter("temp", ENCODING)).thenReturn(output);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), USE_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		assertThat(output.toString(), equalTo("<a id=\"value\">token</a>"));
+		verify(fileUtils).moveFile("temp", OUTPUT_FILE);
+		verify(fileUtils, never()).readFile(FILE, ENCODING);
+		verify(replacerFactory, never()).create(replacement);
+	}
+
+	@Test
+	public void shouldNotStreamXPathReplacementsWhenPreservingFormat() throws Exception {
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(replacement.getXpath()).thenReturn("/a/@id");
+		when(replacerFactory.isPreserveFormat()).thenReturn(true);
+		when(replacerFactory.create(replacement)).thenReturn(replacer);
+		when(replacer.replace(CONTENT, replacement, true, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), USE_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		verify(fileUtils).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
+		verify(fileUtils, never()).openReader(FILE, ENCODING);
+	}
+
+	@Test
+	public void shouldStreamJsonPathReplacementsWithinStreamingSubset() throws Exception {
+		StringWriter output = new StringWriter();
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(replacement.getJsonpath()).thenReturn("$.a");
+		when(fileUtils.openReader(FILE, ENCODING)).thenReturn(new StringReader("{\"a\":\"token\",\"b\":1}"));
+		when(fileUtils.createTempFileFor(OUTPUT_FILE)).thenReturn("temp");
+		when(fileUtils.openWriter("temp", ENCODING)).thenReturn(output);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		assertThat(output.toString(), equalTo("{\n  \"a\": \"value\",\n  \"b\": 1\n}"));
+		verify(fileUtils).moveFile("temp", OUTPUT_FILE);
+		verify(fileUtils, never()).readFile(FILE, ENCODING);
+		verify(replacerFactory, never()).create(replacement);
+	}
+
+	@Test
+	public void shouldCopyStreamedJsonAsIsWhenNoPathMatches() throws Exception {
+		StringWriter discarded = new StringWriter();
+		StringWriter copied = new StringWriter();
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(replacement.getJsonpath()).thenReturn("$.missing");
+		when(fileUtils.openReader(FILE, ENCODING)).thenReturn(new StringReader("{\"a\":\"token\"}"),
+				new StringReader("{\"a\":\"token\"}"));
+		when(fileUtils.createTempFileFor(OUTPUT_FILE)).thenReturn("temp");
+		when(fileUtils.openWriter("temp", ENCODING)).thenReturn(discarded, copied);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		assertThat(copied.toString(), equalTo("{\"a\":\"token\"}"));
+		verify(fileUtils).moveFile("temp", OUTPUT_FILE);
+	}
+
+	@Test
+	public void shouldDeleteTempFileWhenStreamingFails() throws Exception {
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(fileUtils.createTempFileFor(OUTPUT_FILE)).thenReturn("temp");
+		when(fileUtils.openReader(FILE, ENCODING)).thenThrow(new IOException("unreadable"));
+		processor.setStreamingThreshold(10);
+
+		try {
+			processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			verify(fileUtils).deleteFile("temp");
+			verify(fileUtils, never()).moveFile("temp", OUTPUT_FILE);
+		}
+	}
+
+	@Test
+	public void shouldReplaceRegexOverMappedFilesAboveThreshold() throws Exception {
+		final StringWriter intermediate = new StringWriter();
+		StringWriter output = new StringWriter();
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(fileUtils.mapFile(FILE, ENCODING)).thenReturn(new StringBuilder("a token and a token"));
+		when(fileUtils.createTempFileFor(OUTPUT_FILE)).thenReturn("temp1", "temp2");
+		when(fileUtils.openWriter("temp1", FileUtils.MAPPED_TEMP_ENCODING)).thenReturn(intermediate);
+		when(fileUtils.readFile("temp1", FileUtils.MAPPED_TEMP_ENCODING)).thenAnswer(new Answer<String>() {
+			public String answer(InvocationOnMock invocation) {
+				return intermediate.toString();
+			}
+		});
+		when(fileUtils.openWriter("temp2", ENCODING)).thenReturn(output);
+		when(replacement.getToken()).thenReturn("t(o)ken");
+		when(replacement.getValue()).thenReturn("$1");
+		Replacement second = new Replacement();
+		second.setToken("o\\b");
+		second.setValue("value");
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement, second), USE_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		assertThat(intermediate.toString(), equalTo("a o and a o"));
+		assertThat(output.toString(), equalTo("a value and a value"));
+		verify(fileUtils).deleteFile("temp1");
+		verify(fileUtils).moveFile("temp2", OUTPUT_FILE);
+		verify(fileUtils, never()).readFile(FILE, ENCODING);
+		verify(fileUtils, never()).mapFile("temp1", FileUtils.MAPPED_TEMP_ENCODING);
+		verifyZeroInteractions(replacerFactory);
+	}
+
+	@Test
+	public void shouldNotMapFilesReplacedInPlace() throws Exception {
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(fileUtils.isSameFile(FILE, FILE)).thenReturn(true);
+		when(replacer.replace(CONTENT, replacement, true, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), USE_REGEX, FILE, FILE, REGEX_FLAGS, ENCODING);
+		verify(fileUtils).writeToFile(FILE, NEW_CONTENT, ENCODING);
+		verify(fileUtils, never()).mapFile(FILE, ENCODING);
+	}
+
+	@Test
+	public void shouldReadRegexReplacementsWholeWhenValueUsesNamedGroups() throws Exception {
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(replacement.getValue()).thenReturn("${name}");
+		when(replacer.replace(CONTENT, replacement, true, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		processor.setStreamingThreshold(10);
+
+		processor.replace(asList(replacement), USE_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		verify(fileUtils).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
+		verify(fileUtils, never()).mapFile(FILE, ENCODING);
+	}
+
+	@Test
+	public void shouldNotWriteOutputThatAlreadyHasReplacedContent() throws Exception {
+		when(replacer.replace(CONTENT, replacement, false, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		when(fileUtils.hasContent(OUTPUT_FILE, NEW_CONTENT, ENCODING)).thenReturn(true);
+
+		assertFalse(processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING));
+		verify(fileUtils, never()).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
+	}
+
+	@Test
+	public void shouldReportWrittenOutput() throws Exception {
+		when(replacer.replace(CONTENT, replacement, false, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+
+		assertTrue(processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING));
+		verify(fileUtils).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
+	}
+
+	@Test
+	public void shouldDiscardStreamedOutputThatIsUnchanged() throws Exception {
+		when(fileUtils.fileSize(FILE)).thenReturn(100L);
+		when(fileUtils.openReader(FILE, ENCODING)).thenReturn(new StringReader("no match"));
+		when(fileUtils.createTempFileFor(OUTPUT_FILE)).thenReturn("temp");
+		when(fileUtils.openWriter("temp", ENCODING)).thenReturn(new StringWriter());
+		when(fileUtils.haveSameContent("temp", OUTPUT_FILE)).thenReturn(true);
+		processor.setStreamingThreshold(10);
+
+		assertFalse(processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING));
+		verify(fileUtils).deleteFile("temp");
+		verify(fileUtils, never()).moveFile("temp", OUTPUT_FILE);
+	}
+
+	@Test
+	public void shouldAddTimingsAndMatchesToReport() throws Exception {
+		when(fileUtils.readFile(FILE, ENCODING)).thenReturn("token and token");
+		when(fileUtils.fileSize(FILE)).thenReturn(15L);
+		when(fileUtils.fileSize(OUTPUT_FILE)).thenReturn(15L);
+		when(replacer.replace("token and token", replacement, false, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		PerformanceReport report = new PerformanceReport();
+		processor.setReport(report);
+
+		processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
+		assertThat(report.getFiles().size(), equalTo(1));
+		assertThat(report.getFiles().get(0).getInputFile(), equalTo(FILE));
+		assertThat(report.getFiles().get(0).getBytesIn(), equalTo(15L));
+		assertThat(report.getFiles().get(0).getBytesOut(), equalTo(15L));
+
+		Log log = mock(Log.class);
+		report.logSlowest(log, 1);
+		verify(log).info(argThat(endsWith("token (2 matches)")));
+	}
 }
@@ -128,11 +128,13 @@ public class ReplacementTest {
 	@Test
 	public void shouldReturnCopyOfReplacementInFrom() {
 		Replacement replacement = new Replacement(fileUtils, TOKEN, VALUE, true, XPATH, ENCODING);
+		replacement.setXpathInPlace(true);
 		Replacement copy = Replacement.from(replacement);
 		
 		assertThat(copy.getToken(), equalTo(TOKEN));
 		assertThat(copy.getValue(), equalTo(VALUE));
 		assertThat(copy.isUnescape(), equalTo(true));
 		assertThat(copy.getXpath(), equalTo(XPATH));
+		assertThat(copy.isXpathInPlace(), equalTo(true));
 	}
 }
@@ -1,6 +1,10 @@
 package com.google.code.maven_replacer_plugin;
 
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import org.junit.Test;
@@ -30,4 +34,62 @@ public class ReplacerFactoryTest {
 		Replacer replacer = factory.create(replacement);
 		assertTrue(replacer instanceof XPathReplacer);
 	}
+
+	@Test
+	public void shouldReturnGroupReplacerForGroupedReplacements() {
+		ReplacerFactory factory = new ReplacerFactory();
+		Replacer groupReplacer = mock(Replacer.class);
+
+		Replacer replacer = factory.create(new GroupedReplacement(asList(replacement), groupReplacer, "group"));
+		assertSame(groupReplacer, replacer);
+	}
+
+	@Test
+	public void shouldReturnXPathReplacerForGroupedXPathReplacements() {
+		ReplacerFactory factory = new ReplacerFactory();
+		GroupedReplacement group = new GroupedReplacement(asList(replacement), null, "group");
+		group.setXpath("//a | //b");
+
+		Replacer replacer = factory.create(group);
+		assertTrue(replacer instanceof XPathReplacer);
+	}
+
+	@Test
+	public void shouldReturnJsonPathReplacerForGroupedJsonPathReplacements() {
+		ReplacerFactory factory = new ReplacerFactory();
+		GroupedReplacement group = new GroupedReplacement(asList(replacement), null, "group");
+		group.setJsonpath("$.a | $.b");
+
+		Replacer replacer = factory.create(group);
+		assertTrue(replacer instanceof JsonPathReplacer);
+	}
+
+	@Test
+	public void shouldReuseReplacersAcrossReplacements() {
+		ReplacerFactory factory = new ReplacerFactory();
+		Replacement other = mock(Replacement.class);
+		when(replacement.getXpath()).thenReturn("//a");
+		when(other.getXpath()).thenReturn("//b");
+
+		assertSame(factory.create(replacement), factory.create(other));
+		assertSame(factory.create(mock(Replacement.class)), factory.create(mock(Replacement.class)));
+	}
+
+	@Test
+	public void shouldShareTokenReplacer() {
+		ReplacerFactory factory = new ReplacerFactory();
+
+		assertSame(factory.create(replacement), factory.getTokenReplacer());
+	}
+
+	@Test
+	public void shouldCreateNewPathReplacersWhenPreserveFormatChanges() {
+		ReplacerFactory factory = new ReplacerFactory();
+		when(replacement.getJsonpath()).thenReturn("$.a");
+		Replacer reformatting = factory.create(replacement);
+
+		factory.setPreserveFormat(true);
+		assertNotSame(reformatting, factory.create(replacement));
+		assertTrue(factory.create(replacement) instanceof JsonPathReplacer);
+	}
 }
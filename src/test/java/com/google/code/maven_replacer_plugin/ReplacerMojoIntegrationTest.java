@@ -15,18 +15,24 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
+import java.util.UUID;
 import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.math.RandomUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
+@RunWith(Parameterized.class)
 public class ReplacerMojoIntegrationTest {
 	private static final String ENCODING = "UTF-8";
 	
@@ -49,11 +55,22 @@ public class ReplacerMojoIntegrationTest {
 	private static final String OUTPUT_DIR = "target/outputdir/";
 	private static final String XPATH_TEST_FILE = "xpath.xml";
 	
+	private final String engine;
+
 	private ReplacerMojo mojo;
 	private String filenameAndPath;
 	private Log log;
 	private String xml;
 
+	public ReplacerMojoIntegrationTest(String engine) {
+		this.engine = engine;
+	}
+
+	@Parameters
+	public static Collection<Object[]> engines() {
+		return asList(new Object[][] { { "sequential" }, { "literal" }, { "fused" }, { "placeholder" } });
+	}
+
 	@Before
 	public void setUp() throws Exception {
 		filenameAndPath = createTempFile(TOKEN);
@@ -66,6 +83,7 @@ public class ReplacerMojoIntegrationTest {
 				return log;
 			}
 		};
+		mojo.setEngine(engine);
 	}
 	
 	@Test
@@ -80,6 +98,175 @@ public class ReplacerMojoIntegrationTest {
 		verify(log).info("Replacement run on 1 file.");
 	}
 	
+	@Test
+	public void shouldStreamLiteralReplacementsOfFilesAboveThreshold() throws Exception {
+		StringBuilder content = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			content.append("line ").append(TOKEN).append(" @name@\n");
+			expected.append("line ").append(VALUE).append(" app\n");
+		}
+		filenameAndPath = createTempFile(content.toString());
+		Replacement token = new Replacement();
+		token.setToken(TOKEN);
+		token.setValue(VALUE);
+		Replacement name = new Replacement();
+		name.setToken("@name@");
+		name.setValue("app");
+
+		mojo.setFile(filenameAndPath);
+		mojo.setReplacements(asList(token, name));
+		mojo.setStreamingThreshold(1024);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo(expected.toString()));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldReplaceRegexOverMappedFilesAboveThreshold() throws Exception {
+		StringBuilder content = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			content.append("line ").append(i).append(" ").append(TOKEN).append("\n");
+			expected.append("line #").append(i).append(" ").append(VALUE).append("\n");
+		}
+		filenameAndPath = createTempFile(content.toString());
+		Replacement token = new Replacement();
+		token.setToken(TOKEN);
+		token.setValue(VALUE);
+		Replacement number = new Replacement();
+		number.setToken("line (\\d+)");
+		number.setValue("line #$1");
+		String outputFile = filenameAndPath + ".out";
+
+		mojo.setFile(filenameAndPath);
+		mojo.setOutputFile(outputFile);
+		mojo.setRegex(true);
+		mojo.setEncoding(ENCODING);
+		mojo.setReplacements(asList(token, number));
+		mojo.setStreamingThreshold(1024);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(outputFile));
+		assertThat(results, equalTo(expected.toString()));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldStreamXPathReplacementsOfFilesAboveThreshold() throws Exception {
+		filenameAndPath = createTempFile(xml);
+
+		mojo.setFile(filenameAndPath);
+		mojo.setXpath("/people/person[1]/firstname/text()");
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setEncoding(ENCODING);
+		mojo.setStreamingThreshold(1);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo(EXPECTED_XPATH));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldStreamJsonPathReplacementsOfFilesAboveThreshold() throws Exception {
+		filenameAndPath = createTempFile("{\"people\":[{\"name\":\"" + TOKEN + "\"},{\"name\":\"" + TOKEN + "\"}]}");
+
+		mojo.setFile(filenameAndPath);
+		mojo.setJsonpath("$.people[*].name");
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setEncoding(ENCODING);
+		mojo.setStreamingThreshold(1);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo("{\n  \"people\": [\n    {\n      \"name\": \"value\"\n    },\n"
+				+ "    {\n      \"name\": \"value\"\n    }\n  ]\n}"));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldPreserveFormatOfJsonAndXmlReplacedByPath() throws Exception {
+		String json = "{ \"people\": [ {\"name\": \"" + TOKEN + "\"},\n\t{\"name\" : \"" + TOKEN + "\"} ] }";
+		filenameAndPath = createTempFile(json);
+
+		mojo.setFile(filenameAndPath);
+		mojo.setJsonpath("$.people[*].name");
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setEncoding(ENCODING);
+		mojo.setStreamingThreshold(1);
+		mojo.setPreserveFormat(true);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo(json.replace(TOKEN, VALUE)));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldNotRewriteFilesWhoseContentIsUnchanged() throws Exception {
+		File file = new File(filenameAndPath);
+		long lastModified = file.lastModified() - 60000;
+		assertTrue(file.setLastModified(lastModified));
+
+		mojo.setFile(filenameAndPath);
+		mojo.setToken("not in file");
+		mojo.setValue(VALUE);
+		mojo.execute();
+
+		assertThat(file.lastModified(), equalTo(lastModified));
+		assertThat(FileUtils.readFileToString(file), equalTo(TOKEN));
+		verify(log).info("Replacement run on 1 file.");
+		verify(log).info("Wrote 0 files, 1 unchanged.");
+	}
+
+	@Test
+	public void shouldSkipUpToDateFilesWhenIncremental() throws Exception {
+		String outputFile = new File(filenameAndPath).getParent() + File.separator + UUID.randomUUID() + ".out";
+		String stateFile = new File(filenameAndPath).getParent() + File.separator + UUID.randomUUID() + ".properties";
+		mojo.setFile(filenameAndPath);
+		mojo.setOutputFile(outputFile);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setIncremental(true);
+		mojo.setBuildStateFile(stateFile);
+		mojo.execute();
+		assertThat(FileUtils.readFileToString(new File(outputFile)), equalTo(VALUE));
+
+		mojo.execute();
+		verify(log).info("Skipped 1 up to date file.");
+
+		FileUtils.writeStringToFile(new File(filenameAndPath), TOKEN + TOKEN);
+		mojo.execute();
+		assertThat(FileUtils.readFileToString(new File(outputFile)), equalTo(VALUE + VALUE));
+	}
+
+	@Test
+	public void shouldWritePerformanceReport() throws Exception {
+		File reportFile = new File(new File(filenameAndPath).getParent(), UUID.randomUUID() + ".csv");
+		mojo.setFile(filenameAndPath);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setRegex(false);
+		mojo.setPerformanceReport(true);
+		mojo.setPerformanceReportFile(reportFile.getPath());
+		mojo.execute();
+
+		List<String> rows = FileUtils.readLines(reportFile, "UTF-8");
+		assertThat(rows.size(), equalTo(3));
+		assertThat(rows.get(1), containsString(filenameAndPath + ","));
+		assertTrue(rows.get(1).startsWith("file,"));
+		assertThat(rows.get(2), containsString(",0," + TOKEN + ","));
+		assertTrue(rows.get(2).endsWith(",1"));
+		verify(log).info("Slowest 1 of 1 file:");
+		verify(log).info("Performance report written to " + reportFile.getPath());
+	}
+
 	@Test
 	public void shouldReplaceContentsInAbsolutePathedFile() throws Exception {
 		mojo.setFile(new File(filenameAndPath).getAbsolutePath());
@@ -158,6 +345,46 @@ public class ReplacerMojoIntegrationTest {
 		verify(log).info("Replacement run on 1 file.");
 	}
 	
+	@Test
+	public void shouldReplaceTokenWithinElementLocatedByXPathInPlace() throws Exception {
+		filenameAndPath = createTempFile(xml);
+
+		mojo.setFile(filenameAndPath);
+		mojo.setXpath("//person[firstname='" + TOKEN + "' and lastname='change me']");
+		mojo.setXpathInPlace(true);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setRegex(false);
+		mojo.execute();
+
+		String results = scrub(FileUtils.readFileToString(new File(filenameAndPath)));
+		assertThat(results, equalTo(EXPECTED_XPATH));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldApplyConsecutiveXPathReplacementsInOrder() throws Exception {
+		filenameAndPath = createTempFile(xml);
+
+		Replacement first = new Replacement();
+		first.setToken(TOKEN);
+		first.setValue(VALUE);
+		first.setXpath("//person[firstname='" + TOKEN + "' and lastname='change me']");
+		Replacement second = new Replacement();
+		second.setToken("please");
+		second.setValue("done");
+		second.setXpath("//person[firstname='" + VALUE + "']/occupation/text()");
+
+		mojo.setFile(filenameAndPath);
+		mojo.setRegex(false);
+		mojo.setReplacements(asList(first, second));
+		mojo.execute();
+
+		String results = scrub(FileUtils.readFileToString(new File(filenameAndPath)));
+		assertThat(results, equalTo(EXPECTED_XPATH.replaceFirst("please", "done")));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
 	@Test
 	public void shouldIgnoreErrorsInXPath() throws Exception {
 		filenameAndPath = createTempFile(xml);
@@ -379,6 +606,92 @@ public class ReplacerMojoIntegrationTest {
 		assertThat(results, equalTo(VALUE));
 	}
 	
+	@Test
+	public void shouldReplaceContentsWithTokenValuesInMapUsingLiteralEngine() throws Exception {
+		filenameAndPath = createTempFile("@name@ ${version} @name@ (${version})");
+		String tokenValueMapFilename = createTempFile(asList("name=app", "version=1.0"));
+
+		mojo.setTokenValueMap(tokenValueMapFilename);
+		mojo.setDelimiters(asList("@", "${*}"));
+		mojo.setRegex(false);
+		mojo.setEngine("literal");
+		mojo.setFile(filenameAndPath);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo("app 1.0 app (1.0)"));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldReplaceContentsWithTokenValuesInMapUsingPlaceholderEngine() throws Exception {
+		filenameAndPath = createTempFile("@name@ ${version} @unknown@ ${name (${version})");
+		String tokenValueMapFilename = createTempFile(asList("name=app", "version=1.0"));
+
+		mojo.setTokenValueMap(tokenValueMapFilename);
+		mojo.setDelimiters(asList("@", "${*}"));
+		mojo.setRegex(false);
+		mojo.setEngine("placeholder");
+		mojo.setFile(filenameAndPath);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo("app 1.0 @unknown@ ${name (1.0)"));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldCacheTokenValueMapInCacheDir() throws Exception {
+		filenameAndPath = createTempFile("name version");
+		String tokenValueMapFilename = createTempFile(asList("name=app", "version=1.0"));
+		File cacheDir = new File("target/token-value-map-cache" + new Random().nextInt());
+
+		mojo.setTokenValueMap(tokenValueMapFilename);
+		mojo.setTokenValueMapCacheDir(cacheDir.getPath());
+		mojo.setFile(filenameAndPath);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo("app 1.0"));
+		assertThat(cacheDir.list().length, equalTo(1));
+		FileUtils.deleteDirectory(cacheDir);
+	}
+
+	@Test
+	public void shouldReplaceContentsWithRegexTokenValuesInMapUsingFusedEngine() throws Exception {
+		filenameAndPath = createTempFile("version=1.0\nname=app\nbuild=7");
+		String tokenValueMapFilename = createTempFile(asList("version\\=(\\S+)=version\\=$1-SNAPSHOT",
+				"name\\=.*=name\\=other", "(b)uild=$1uild-number"));
+
+		mojo.setTokenValueMap(tokenValueMapFilename);
+		mojo.setEngine("fused");
+		mojo.setFile(filenameAndPath);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo("version=1.0-SNAPSHOT\nname=other\nbuild-number=7"));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldKeepSequentialOrderForFusedReplacementsFeedingLaterTokens() throws Exception {
+		filenameAndPath = createTempFile("a b");
+		Replacement first = new Replacement();
+		first.setToken("a");
+		first.setValue("b");
+		Replacement second = new Replacement();
+		second.setToken("b");
+		second.setValue("c");
+
+		mojo.setReplacements(asList(first, second));
+		mojo.setEngine("fused");
+		mojo.setFile(filenameAndPath);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo("c c"));
+	}
+
 	@Test
 	public void shouldReplaceContentsWithTokenValuesInMapWithAbsolutePath() throws Exception {
 		String tokenValueMapFilename = createTempFile(asList(TOKEN + "=" + VALUE));
@@ -490,9 +803,31 @@ public class ReplacerMojoIntegrationTest {
 		assertThat(include2Results, equalTo(VALUE));
 	}
 
+	@Test
+	public void shouldReplaceContentsInIncludesConcurrently() throws Exception {
+		StringBuilder includes = new StringBuilder();
+		List<String> inputFiles = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			String include = createTempFile(TOKEN + i);
+			inputFiles.add(include);
+			includes.append(i == 0 ? "" : ",").append(include);
+		}
+
+		mojo.setFilesToInclude(includes.toString());
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setThreads("4");
+		mojo.execute();
+
+		for (int i = 0; i < inputFiles.size(); i++) {
+			assertThat(FileUtils.readFileToString(new File(inputFiles.get(i))), equalTo(VALUE + i));
+		}
+		verify(log).info("Replacement run on 20 files.");
+	}
+
     @Test
     public void shouldOnlyReplaceUpToMaxReplacements() throws Exception {
-        String randomBase = String.valueOf(RandomUtils.nextInt(10));
+        String randomBase = UUID.randomUUID().toString();
         String include1 = createTempFile(randomBase + "/prefix1", TOKEN);
         String include2 = createTempFile(randomBase + "/prefix2", TOKEN);
         List<String> includes = asList("target/" + randomBase + "**/prefix*");
@@ -512,6 +847,27 @@ public class ReplacerMojoIntegrationTest {
                 || (VALUE.equals(include1Results) && TOKEN.equals(include2Results)));
     }
 
+	@Test
+	public void shouldReplaceIncludesAsTheyAreFoundWithNioScanner() throws Exception {
+		String randomBase = UUID.randomUUID().toString();
+		String include1 = createTempFile(randomBase + "/a/prefix1", TOKEN);
+		String include2 = createTempFile(randomBase + "/b/prefix2", TOKEN);
+		String exclude = createTempFile(randomBase + "/node_modules/prefix3", TOKEN);
+
+		mojo.setIncludes(asList("target/" + randomBase + "*/**/prefix*"));
+		mojo.setExcludes(asList("**/node_modules/**"));
+		mojo.setScanner("nio");
+		mojo.setThreads("2");
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.execute();
+
+		assertThat(FileUtils.readFileToString(new File(include1)), equalTo(VALUE));
+		assertThat(FileUtils.readFileToString(new File(include2)), equalTo(VALUE));
+		assertThat(FileUtils.readFileToString(new File(exclude)), equalTo(TOKEN));
+		verify(log).info("Replacement run on 2 files.");
+	}
+
 	@Test
 	public void shouldReplaceContentsInIncludeButNotExcludesAndNotPreserveWhenDisabled() throws Exception {
 		String include1 = createTempFile("test/prefix1", TOKEN);
@@ -7,11 +7,15 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -19,9 +23,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -32,6 +38,7 @@ import org.hamcrest.Description;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -109,12 +116,52 @@ public class ReplacerMojoTest {
 		mojo.execute();
 		
 		assertSame(FILE, mojo.getFile());
-		verify(processor).replace(replacements, REGEX, BASE_DIR + File.separator + FILE, 
-				OUTPUT_FILE, REGEX_PATTERN_FLAGS, ENCODING);
+		verify(processor).replace(argThat(compiledFrom(replacements)), eq(REGEX), eq(BASE_DIR + File.separator + FILE), 
+				eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(ENCODING));
 		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, log);
 		verify(summaryBuilder).print(log);
 	}
 	
+	@Test
+	public void shouldReportFilesLeftUnchanged() throws Exception {
+		Replacement replacement = mock(Replacement.class);
+		List<Replacement> replacements = asList(replacement);
+		when(processor.replace(argThat(compiledFrom(replacements)), eq(REGEX), eq(BASE_DIR + File.separator + FILE), eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS),
+				eq(ENCODING))).thenReturn(false);
+
+		mojo.setRegexFlags(regexFlags);
+		mojo.setRegex(REGEX);
+		mojo.setReplacements(replacements);
+		mojo.setFile(FILE);
+		mojo.setOutputFile(OUTPUT_FILE);
+		mojo.setBasedir(BASE_DIR);
+		mojo.setEncoding(ENCODING);
+		mojo.execute();
+
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, log);
+		verify(summaryBuilder).addUnchanged(OUTPUT_FILE, log);
+	}
+
+	@Test
+	public void shouldNotReportWrittenFilesAsUnchanged() throws Exception {
+		Replacement replacement = mock(Replacement.class);
+		List<Replacement> replacements = asList(replacement);
+		when(processor.replace(argThat(compiledFrom(replacements)), eq(REGEX), eq(BASE_DIR + File.separator + FILE), eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS),
+				eq(ENCODING))).thenReturn(true);
+
+		mojo.setRegexFlags(regexFlags);
+		mojo.setRegex(REGEX);
+		mojo.setReplacements(replacements);
+		mojo.setFile(FILE);
+		mojo.setOutputFile(OUTPUT_FILE);
+		mojo.setBasedir(BASE_DIR);
+		mojo.setEncoding(ENCODING);
+		mojo.execute();
+
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, log);
+		verify(summaryBuilder, never()).addUnchanged(OUTPUT_FILE, log);
+	}
+
 	@Test
 	public void shouldSkipAndDoNothing() throws Exception {
 		mojo.setToken(TOKEN);
@@ -136,7 +183,7 @@ public class ReplacerMojoTest {
 		mojo.setReplacements(replacements);
 		mojo.setFile(FILE);
 		mojo.execute();
-		verify(processor).replace(replacements, REGEX, FILE, OUTPUT_FILE, 0, null);
+		verify(processor).replace(argThat(compiledFrom(replacements)), eq(REGEX), eq(FILE), eq(OUTPUT_FILE), eq(0), eq((String) null));
 		verify(summaryBuilder).add(FILE, OUTPUT_FILE, null, log);
 		verify(summaryBuilder).print(log);
 	}
@@ -152,7 +199,7 @@ public class ReplacerMojoTest {
         mojo.setMaxReplacements(1);
         mojo.setFile(FILE);
         mojo.execute();
-        verify(processor).replace(asList(replacement1), REGEX, FILE, OUTPUT_FILE, 0, null);
+        verify(processor).replace(argThat(compiledFrom(asList(replacement1))), eq(REGEX), eq(FILE), eq(OUTPUT_FILE), eq(0), eq((String) null));
         verify(summaryBuilder).add(FILE, OUTPUT_FILE, null, log);
         verify(summaryBuilder).print(log);
     }
@@ -171,7 +218,7 @@ public class ReplacerMojoTest {
 		mojo.execute();
 		
 		assertSame(FILE, mojo.getFile());
-		verify(processor).replace(replacements, REGEX, FILE, OUTPUT_FILE, REGEX_PATTERN_FLAGS, NO_ENCODING_SET);
+		verify(processor).replace(argThat(compiledFrom(replacements)), eq(REGEX), eq(FILE), eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(NO_ENCODING_SET));
 		verify(summaryBuilder).add(FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
 		verify(summaryBuilder).print(log);
 	}
@@ -190,8 +237,8 @@ public class ReplacerMojoTest {
 		mojo.setBasedir(BASE_DIR);
 		mojo.execute();
 
-		verify(processor).replace(replacements, REGEX, BASE_DIR + File.separator + FILE, 
-				OUTPUT_FILE, REGEX_PATTERN_FLAGS, NO_ENCODING_SET);
+		verify(processor).replace(argThat(compiledFrom(replacements)), eq(REGEX), eq(BASE_DIR + File.separator + FILE), 
+				eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(NO_ENCODING_SET));
 		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
 		verify(summaryBuilder, never()).print(log);
 	}
@@ -200,7 +247,7 @@ public class ReplacerMojoTest {
 	public void shouldReplaceContentsInIncludeAndExcludes() throws Exception {
 		List<String> includes = asList("include");
 		List<String> excludes = asList("exclude");
-		when(fileSelector.listIncludes(BASE_DIR, includes, excludes)).thenReturn(asList(FILE));
+		when(fileSelector.selectIncludes(BASE_DIR, includes, excludes)).thenReturn(asList(FILE).iterator());
 
 		mojo.setIncludes(includes);
 		mojo.setExcludes(excludes);
@@ -219,7 +266,7 @@ public class ReplacerMojoTest {
 	public void shouldReplaceContentsInFilesToIncludeAndExclude() throws Exception {
 		String includes = "include1, include2";
 		String excludes = "exclude1, exclude2";
-		when(fileSelector.listIncludes(BASE_DIR, asList("include1", "include2"), asList("exclude1", "exclude2"))).thenReturn(asList(FILE));
+		when(fileSelector.selectIncludes(BASE_DIR, asList("include1", "include2"), asList("exclude1", "exclude2"))).thenReturn(asList(FILE).iterator());
 
 		mojo.setFilesToInclude(includes);
 		mojo.setFilesToExclude(excludes);
@@ -234,6 +281,97 @@ public class ReplacerMojoTest {
 			eq(OUTPUT_FILE), anyInt(), eq(NO_ENCODING_SET));
 	}
 
+	@Test
+	public void shouldReplaceIncludesConcurrentlyAndReportInOrder() throws Exception {
+		List<String> includes = asList("include");
+		List<String> inputFiles = asList("file1", "file2", "file3");
+		when(fileSelector.selectIncludes(BASE_DIR, includes, null)).thenReturn(inputFiles.iterator());
+		for (String inputFile : inputFiles) {
+			when(outputFilenameBuilder.buildFrom(inputFile, mojo)).thenReturn("out-" + inputFile);
+		}
+
+		mojo.setIncludes(includes);
+		mojo.setExcludes(null);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setBasedir(BASE_DIR);
+		mojo.setThreads("2C");
+		mojo.execute();
+
+		InOrder inOrder = inOrder(summaryBuilder);
+		for (String inputFile : inputFiles) {
+			verify(processor).replace(anyListOf(Replacement.class), eq(REGEX), eq(BASE_DIR + File.separator + inputFile),
+					eq("out-" + inputFile), anyInt(), eq(NO_ENCODING_SET));
+			inOrder.verify(summaryBuilder).add(BASE_DIR + File.separator + inputFile, "out-" + inputFile,
+					NO_ENCODING_SET, log);
+		}
+	}
+
+	@Test
+	public void shouldReplaceRemainingIncludesConcurrentlyAndLogEveryFailure() throws Exception {
+		List<String> includes = asList("include");
+		List<String> inputFiles = asList("file1", "file2", "file3");
+		when(fileSelector.selectIncludes(BASE_DIR, includes, null)).thenReturn(inputFiles.iterator());
+		for (String inputFile : inputFiles) {
+			when(outputFilenameBuilder.buildFrom(inputFile, mojo)).thenReturn("out-" + inputFile);
+		}
+		doThrow(new IOException("first")).when(processor).replace(anyListOf(Replacement.class), anyBoolean(),
+				eq(BASE_DIR + File.separator + "file1"), anyString(), anyInt(), anyString());
+		doThrow(new IOException("second")).when(processor).replace(anyListOf(Replacement.class), anyBoolean(),
+				eq(BASE_DIR + File.separator + "file3"), anyString(), anyInt(), anyString());
+
+		mojo.setIncludes(includes);
+		mojo.setExcludes(null);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setBasedir(BASE_DIR);
+		mojo.setEncoding(ENCODING);
+		mojo.setThreads("3");
+		mojo.setIgnoreErrors(true);
+		mojo.execute();
+
+		verify(summaryBuilder).add(BASE_DIR + File.separator + "file2", "out-file2", ENCODING, log);
+		verify(summaryBuilder, times(1)).add(anyString(), anyString(), anyString(), isA(Log.class));
+		verify(log).error("Replacement failed on file3: second");
+		verify(log).error("first");
+	}
+
+	@Test
+	public void shouldStopTakingFoundIncludesAtMaxReplacementsAndCloseThem() throws Exception {
+		List<String> includes = asList("include");
+		ClosableIterator inputFiles = new ClosableIterator(asList("file1", "file2", "file3"));
+		when(fileSelector.selectIncludes(BASE_DIR, includes, null)).thenReturn(inputFiles);
+		when(outputFilenameBuilder.buildFrom(anyString(), eq(mojo))).thenReturn(OUTPUT_FILE);
+
+		mojo.setIncludes(includes);
+		mojo.setExcludes(null);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setBasedir(BASE_DIR);
+		mojo.setMaxReplacements(2);
+		mojo.setThreads("2");
+		mojo.execute();
+
+		verify(processor, times(2)).replace(anyListOf(Replacement.class), anyBoolean(), anyString(), anyString(),
+				anyInt(), anyString());
+		verify(processor, never()).replace(anyListOf(Replacement.class), anyBoolean(),
+				eq(BASE_DIR + File.separator + "file3"), anyString(), anyInt(), anyString());
+		verify(log).info("Max replacements has been exceeded. Limiting to the first: 2");
+		assertTrue(inputFiles.closed);
+	}
+
+	@Test (expected = MojoExecutionException.class)
+	public void shouldThrowExceptionForInvalidThreads() throws Exception {
+		when(fileSelector.selectIncludes(BASE_DIR, asList("include"), null)).thenReturn(asList(FILE, FILE).iterator());
+
+		mojo.setIncludes(asList("include"));
+		mojo.setExcludes(null);
+		mojo.setToken(TOKEN);
+		mojo.setBasedir(BASE_DIR);
+		mojo.setThreads("many");
+		mojo.execute();
+	}
+
 	@Test
 	public void shouldReplaceContentsWithTokenValuesInMapWithComments() throws Exception {
 		Replacement replacement = mock(Replacement.class);
@@ -250,8 +388,8 @@ public class ReplacerMojoTest {
 		mojo.setBasedir(BASE_DIR);
 		mojo.execute();
 
-		verify(processor).replace(replacements, 
-				REGEX, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, REGEX_PATTERN_FLAGS, NO_ENCODING_SET);
+		verify(processor).replace(argThat(compiledFrom(replacements)), 
+				eq(REGEX), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(NO_ENCODING_SET));
 	}
 
 	@Test
@@ -272,8 +410,8 @@ public class ReplacerMojoTest {
 		mojo.setEncoding(ENCODING);
 		mojo.execute();
 
-		verify(processor).replace(replacements, 
-				REGEX, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, REGEX_PATTERN_FLAGS, ENCODING);
+		verify(processor).replace(argThat(compiledFrom(replacements)), 
+				eq(REGEX), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(ENCODING));
 	}
 
 	@Test
@@ -368,8 +506,8 @@ public class ReplacerMojoTest {
 		mojo.setBasedir(BASE_DIR);
 		mojo.execute();
 
-		verify(processor).replace(replacements, REGEX, BASE_DIR  + File.separator + FILE, OUTPUT_FILE,
-			REGEX_PATTERN_FLAGS, NO_ENCODING_SET);
+		verify(processor).replace(argThat(compiledFrom(replacements)), eq(REGEX), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE),
+			eq(REGEX_PATTERN_FLAGS), eq(NO_ENCODING_SET));
 		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
 		verify(summaryBuilder).print(log);
 	}
@@ -388,7 +526,7 @@ public class ReplacerMojoTest {
 		mojo.execute();
 
 		assertThat(mojo.getVariableTokenValueMap(), equalTo(TOKEN_VALUE_MAP));
-		verify(processor).replace(replacements, true, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, 0, ENCODING);
+		verify(processor).replace(argThat(compiledFrom(replacements)), eq(true), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(0), eq(ENCODING));
 		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, log);
 		verify(summaryBuilder).print(log);
 	}
@@ -452,6 +590,29 @@ public class ReplacerMojoTest {
 		mojo.execute();
 	}
 	
+	private BaseMatcher<List<Replacement>> compiledFrom(final List<Replacement> replacements) {
+		return new BaseMatcher<List<Replacement>>() {
+			@SuppressWarnings("unchecked")
+			public boolean matches(Object arg0) {
+				List<Replacement> compiled = (List<Replacement>) arg0;
+				if (compiled.size() != replacements.size()) {
+					return false;
+				}
+				for (int i = 0; i < compiled.size(); i++) {
+					if (!(compiled.get(i) instanceof CompiledReplacement)
+							|| ((CompiledReplacement) compiled.get(i)).getSource() != replacements.get(i)) {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			public void describeTo(Description desc) {
+				desc.appendText("compiled from").appendValue(replacements);
+			}
+		};
+	}
+
 	private BaseMatcher<List<Replacement>> replacementOf(final String xpath, final String value, 
 			final boolean unescape, final String... tokens) {
 		return new BaseMatcher<List<Replacement>>() {
@@ -481,5 +642,30 @@ public class ReplacerMojoTest {
 			}
 		};
 	}
+
+	private static class ClosableIterator implements Iterator<String>, Closeable {
+		private final Iterator<String> files;
+		private boolean closed;
+
+		ClosableIterator(List<String> files) {
+			this.files = files.iterator();
+		}
+
+		public boolean hasNext() {
+			return files.hasNext();
+		}
+
+		public String next() {
+			return files.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			closed = true;
+		}
+	}
 }
 
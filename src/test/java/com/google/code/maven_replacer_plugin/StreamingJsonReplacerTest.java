@@ -0,0 +1,72 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class StreamingJsonReplacerTest {
+	private static final int NO_FLAGS = -1;
+	private static final String JSON = "{\"info\":{\"title\":\"old title\",\"version\":1.0},\"tags\":[\"a\",\"b<>\"],"
+			+ "\"items\":[{\"id\":1,\"name\":\"old\"},{\"id\":2,\"name\":\"old\",\"extra\":null}],\"count\":10}";
+
+	@Test
+	public void shouldSupportCompiledJsonPathsOnly() {
+		assertTrue(StreamingJsonReplacer.supports(replacement("old", "new", "$.items[*].name", null)));
+		assertFalse(StreamingJsonReplacer.supports(replacement("old", "new", "$..name", null)));
+		assertFalse(StreamingJsonReplacer.supports(replacement("old", "new", "$", null)));
+		assertFalse(StreamingJsonReplacer.supports(replacement(null, "new", "$.name", null)));
+	}
+
+	@Test
+	public void shouldReplaceAsJsonPathReplacer() throws Exception {
+		assertSameAsTree(replacement("old", "new", "$.info.title", null));
+		assertSameAsTree(replacement("old", "new", "$.items[*].name", "string"));
+		assertSameAsTree(replacement("1", "7", "$.items[1].id", "number"));
+		assertSameAsTree(replacement("^.*$", "{\"nested\":[1,2]}", "$.tags[0]", "object"));
+		assertSameAsTree(replacement("10", "", "$.count", "null"));
+		assertSameAsTree(replacement("b", "c", "$.tags", "object"));
+	}
+
+	@Test
+	public void shouldApplyReplacementsWithinEachOtherInOrder() throws Exception {
+		assertSameAsTree(replacement("^.*$", "{\"title\":\"old\"}", "$.items[0].name", "object"),
+				replacement("old", "new", "$.items[0].name.title", null),
+				replacement("new", "newer", "$.items[*].name.title", null));
+		assertSameAsTree(replacement("old", "new", "$.items[*].name", null),
+				replacement("\"id\":1", "\"id\":3", "$.items[0]", "object"));
+	}
+
+	@Test
+	public void shouldReportWhenNothingIsSelected() throws Exception {
+		StringWriter output = new StringWriter();
+		StreamingJsonReplacer replacer = new StreamingJsonReplacer(asList(replacement("old", "new", "$.missing", null)),
+				new TokenReplacer(), true, NO_FLAGS);
+
+		assertFalse(replacer.replace(new StringReader(JSON), output));
+	}
+
+	private void assertSameAsTree(Replacement... replacements) throws Exception {
+		List<Replacement> list = asList(replacements);
+		StringWriter output = new StringWriter();
+		assertTrue(new StreamingJsonReplacer(list, new TokenReplacer(), true, NO_FLAGS).replace(new StringReader(JSON),
+				output));
+
+		String expected = new JsonPathReplacer(new TokenReplacer()).replace(JSON,
+				new GroupedReplacement(list, null, "jsonpath replacements"), true, NO_FLAGS);
+		assertThat(output.toString(), equalTo(expected));
+	}
+
+	private Replacement replacement(String token, String value, String jsonpath, String jsontype) {
+		return new Replacement(new FileUtils(), token, value, false, null, null, jsonpath, jsontype);
+	}
+}
@@ -0,0 +1,112 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class StreamingXmlReplacerTest {
+	private static final int NO_FLAGS = -1;
+
+	@Test
+	public void shouldSupportAbsoluteChildPathsWithPositions() {
+		assertTrue(StreamingXmlReplacer.supports(replacement("token", "/a/b[2]/@id")));
+		assertTrue(StreamingXmlReplacer.supports(replacement("token", " /a/*/b/text() ")));
+		assertTrue(StreamingXmlReplacer.supports(inPlace(replacement("token", "/a/b[1]"))));
+
+		assertFalse(StreamingXmlReplacer.supports(replacement("token", "/a/b")));
+		assertFalse(StreamingXmlReplacer.supports(replacement("token", "//b/@id")));
+		assertFalse(StreamingXmlReplacer.supports(replacement("token", "/a/b[@id='1']")));
+		assertFalse(StreamingXmlReplacer.supports(replacement("token", "/a/p:b/text()")));
+		assertFalse(StreamingXmlReplacer.supports(replacement("token", "/a/@id/b")));
+		assertFalse(StreamingXmlReplacer.supports(replacement("token", "/@id")));
+		assertFalse(StreamingXmlReplacer.supports(replacement("token", "a/@id")));
+		assertFalse(StreamingXmlReplacer.supports(replacement("token", null)));
+		assertFalse(StreamingXmlReplacer.supports(replacement(null, "/a/@id")));
+	}
+
+	@Test
+	public void shouldReplaceSelectedAttributeKeepingMarkupAsWritten() throws Exception {
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><!DOCTYPE root><root z=\"token\" id=\"token\">"
+				+ "<!-- token --><item>a &amp; token &lt;</item><empty/><?pi data?></root>";
+
+		assertThat(replace(xml, replacement("token", "/root/@id")), equalTo(xml.replace("id=\"token\"", "id=\"value\"")));
+	}
+
+	@Test
+	public void shouldDropWhitespaceOutsideRootAndWriteReferencedCharactersAsCharacters() throws Exception {
+		String xml = "<?xml version=\"1.0\"?>\n<!-- token -->\n<root id='&#169;token'>&#x41;\n<item/>\n</root>\n";
+
+		assertThat(replace(xml, replacement("token", "/root/@id")), equalTo("<?xml version=\"1.0\"?><!-- token -->"
+				+ "<root id=\"\u00a9value\">A\n<item/>\n</root>"));
+	}
+
+	@Test
+	public void shouldReplaceTextOfPositionedElement() throws Exception {
+		String xml = "<root><item>token</item><other>token</other><item>token &amp; token</item></root>";
+
+		assertThat(replace(xml, replacement("token", "/root/item[2]/text()")),
+				equalTo("<root><item>token</item><other>token</other><item>value &amp; value</item></root>"));
+		assertThat(replace(xml, replacement("token", "/root/*[2]/text()")),
+				equalTo("<root><item>token</item><other>value</other><item>token &amp; token</item></root>"));
+	}
+
+	@Test
+	public void shouldReplaceTextSplitAcrossEntitiesAsOneTextNode() throws Exception {
+		assertThat(replace("<root>to&#107;en</root>", replacement("token", "/root/text()")),
+				equalTo("<root>value</root>"));
+	}
+
+	@Test
+	public void shouldReplaceWithinSelectedElementsInPlace() throws Exception {
+		String xml = "<root xmlns=\"urn:x\"><item a=\"token\">token<!--token--><sub b=\"token\"/><![CDATA[token]]>"
+				+ "</item><other>token</other></root>";
+
+		assertThat(replace(xml, inPlace(replacement("token", "/root/item"))), equalTo("<root xmlns=\"urn:x\">"
+				+ "<item a=\"value\">value<!--value--><sub b=\"value\"/><![CDATA[value]]></item><other>token</other></root>"));
+	}
+
+	@Test
+	public void shouldApplyReplacementsInOrder() throws Exception {
+		Replacement second = new Replacement(new FileUtils(), "value", "done", false, "/root/item/text()", null);
+		List<Replacement> replacements = asList(replacement("token", "/root/item/text()"), second,
+				replacement("token", "/root/@id"));
+
+		assertThat(replace("<root id=\"token\"><item>token</item></root>", replacements),
+				equalTo("<root id=\"value\"><item>done</item></root>"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectUnsupportedXPath() {
+		new StreamingXmlReplacer(asList(replacement("token", "//item")), new TokenReplacer(), false, NO_FLAGS);
+	}
+
+	private String replace(String xml, Replacement replacement) throws Exception {
+		return replace(xml, asList(replacement));
+	}
+
+	private String replace(String xml, List<Replacement> replacements) throws Exception {
+		StringWriter output = new StringWriter();
+		new StreamingXmlReplacer(replacements, new TokenReplacer(), false, NO_FLAGS).replace(new StringReader(xml),
+				output);
+		return output.toString();
+	}
+
+	private Replacement replacement(String token, String xpath) {
+		return new Replacement(new FileUtils(), token, "value", false, xpath, null);
+	}
+
+	private Replacement inPlace(Replacement replacement) {
+		replacement.setXpathInPlace(true);
+		return replacement;
+	}
+}
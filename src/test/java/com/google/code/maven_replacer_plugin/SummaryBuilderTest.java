@@ -1,10 +1,13 @@
 package com.google.code.maven_replacer_plugin;
 
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.junit.Test;
 
 public class SummaryBuilderTest {
@@ -19,5 +22,65 @@ public class SummaryBuilderTest {
 		builder.print(log);
 		verify(log, times(2)).debug("Replacement run on INPUT and writing to OUTPUT with encoding ENCODING");
 		verify(log).info("Replacement run on 2 files.");
+		verify(log, never()).info(startsWith("Pattern cache"));
+	}
+
+	@Test
+	public void shouldReportWrittenAndUnchangedFiles() {
+		Log log = mock(Log.class);
+
+		SummaryBuilder builder = new SummaryBuilder();
+		builder.add("INPUT1", "OUTPUT1", null, log);
+		builder.add("INPUT2", "OUTPUT2", null, log);
+		builder.addUnchanged("OUTPUT2", log);
+
+		builder.print(log);
+		verify(log).debug("Content of OUTPUT2 unchanged, not written");
+		verify(log).info("Replacement run on 2 files.");
+		verify(log).info("Wrote 1 file, 1 unchanged.");
+	}
+
+	@Test
+	public void shouldCountFilesAddedConcurrently() throws Exception {
+		final Log quietLog = new SystemStreamLog() {
+			@Override
+			public void debug(CharSequence content) {
+			}
+		};
+		final SummaryBuilder builder = new SummaryBuilder();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 250; j++) {
+						builder.add("INPUT", "OUTPUT", null, quietLog);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Log log = mock(Log.class);
+		builder.print(log);
+		verify(log).info("Replacement run on 1000 files.");
+	}
+
+	@Test
+	public void shouldPrintPatternCacheUsageSinceCreation() {
+		Log log = mock(Log.class);
+		PatternCache cache = new PatternCache(10);
+		cache.get("before", -1);
+
+		SummaryBuilder builder = new SummaryBuilder(cache);
+		cache.get("token", -1);
+		cache.get("token", -1);
+		cache.get("token", -1);
+
+		builder.print(log);
+		verify(log).info("Pattern cache, shared across the build: 2 hits, 1 miss while this execution ran.");
 	}
 }
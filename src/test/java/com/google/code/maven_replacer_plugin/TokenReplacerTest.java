@@ -83,6 +83,16 @@ public class TokenReplacerTest {
 		assertThat(results, equalTo("some "));
 	}
 	
+	@Test
+	public void shouldReuseCompiledPatternAcrossReplacements() throws Exception {
+		PatternCache cache = new PatternCache(10);
+		replacer = new TokenReplacer(cache);
+		replacer.replace("some token", replacement, true, NO_FLAGS);
+		replacer.replace("other token", replacement, true, NO_FLAGS);
+		assertThat(cache.getMisses(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(1L));
+	}
+
 	@Test
 	public void shouldReplaceWithGroups() throws Exception {
 		when(replacement.getToken()).thenReturn("test (.*) number");
@@ -0,0 +1,202 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TokenValueMapCacheTest {
+	private static final String ENCODING = "UTF-8";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File map;
+	private String directory;
+	private CountingLoader loader;
+
+	@Before
+	public void setUp() throws Exception {
+		map = folder.newFile("tokens.properties");
+		FileUtils.writeStringToFile(map, "token=value");
+		directory = new File(folder.getRoot(), "cache").getPath();
+		loader = new CountingLoader("token", "value");
+	}
+
+	@Test
+	public void shouldLoadMapOnceWhileUnchanged() throws Exception {
+		TokenValueMapCache cache = new TokenValueMapCache(2);
+
+		TokenValueTable table = cache.get(map.getPath(), true, false, ENCODING, null, loader);
+
+		assertThat(cache.get(map.getPath(), true, false, ENCODING, null, loader), sameInstance(table));
+		assertThat(loader.loads, equalTo(1));
+		assertThat(cache.size(), equalTo(1));
+	}
+
+	@Test
+	public void shouldLoadMapAgainWhenReadDifferently() throws Exception {
+		TokenValueMapCache cache = new TokenValueMapCache(2);
+
+		TokenValueTable table = cache.get(map.getPath(), true, false, ENCODING, null, loader);
+
+		assertThat(cache.get(map.getPath(), false, false, ENCODING, null, loader), not(sameInstance(table)));
+		assertThat(cache.get(map.getPath(), true, true, ENCODING, null, loader), not(sameInstance(table)));
+		assertThat(cache.get(map.getPath(), true, false, "ISO-8859-1", null, loader), not(sameInstance(table)));
+		assertThat(loader.loads, equalTo(4));
+	}
+
+	@Test
+	public void shouldLoadMapAgainWhenChanged() throws Exception {
+		TokenValueMapCache cache = new TokenValueMapCache(2);
+		TokenValueTable table = cache.get(map.getPath(), true, false, ENCODING, null, loader);
+
+		FileUtils.writeStringToFile(map, "token=value2");
+
+		assertThat(cache.get(map.getPath(), true, false, ENCODING, null, loader), not(sameInstance(table)));
+		assertThat(loader.loads, equalTo(2));
+	}
+
+	@Test
+	public void shouldAlwaysLoadFilesThatDoNotExist() throws Exception {
+		TokenValueMapCache cache = new TokenValueMapCache(2);
+		String missing = new File(folder.getRoot(), "missing").getPath();
+
+		cache.get(missing, true, false, ENCODING, directory, loader);
+		cache.get(missing, true, false, ENCODING, directory, loader);
+
+		assertThat(loader.loads, equalTo(2));
+		assertThat(cache.size(), equalTo(0));
+	}
+
+	@Test
+	public void shouldReadMapFromDirectoryInLaterBuilds() throws Exception {
+		new TokenValueMapCache(2).get(map.getPath(), true, false, ENCODING, directory, loader);
+
+		TokenValueTable table = new TokenValueMapCache(2).get(map.getPath(), true, false, ENCODING, directory,
+				loader);
+
+		assertThat(loader.loads, equalTo(1));
+		assertThat(table.size(), equalTo(1));
+		assertThat(table.getToken(0), equalTo("token"));
+		assertThat(table.getValue(0), equalTo("value"));
+		assertThat(table.get(0).getEncoding(), equalTo(ENCODING));
+	}
+
+	@Test
+	public void shouldWriteMapFoundInMemoryToDirectoryWithoutIt() throws Exception {
+		TokenValueMapCache cache = new TokenValueMapCache(2);
+		cache.get(map.getPath(), true, false, ENCODING, null, loader);
+
+		cache.get(map.getPath(), true, false, ENCODING, directory, loader);
+
+		assertThat(loader.loads, equalTo(1));
+		assertThat(new File(directory).list().length, equalTo(1));
+	}
+
+	@Test
+	public void shouldReplaceCachedFileWhenMapChanged() throws Exception {
+		new TokenValueMapCache(2).get(map.getPath(), true, false, ENCODING, directory, loader);
+		FileUtils.writeStringToFile(map, "token=changed value");
+		map.setLastModified(map.lastModified() + 2000);
+
+		CountingLoader changed = new CountingLoader("token", "changed value");
+		new TokenValueMapCache(2).get(map.getPath(), true, false, ENCODING, directory, changed);
+		TokenValueTable table = new TokenValueMapCache(2).get(map.getPath(), true, false, ENCODING, directory,
+				changed);
+
+		assertThat(changed.loads, equalTo(1));
+		assertThat(table.getValue(0), equalTo("changed value"));
+		assertThat(new File(directory).list().length, equalTo(1));
+	}
+
+	@Test
+	public void shouldLoadMapWhenCachedFileCannotBeRead() throws Exception {
+		new TokenValueMapCache(2).get(map.getPath(), true, false, ENCODING, directory, loader);
+		for (File cached : new File(directory).listFiles()) {
+			FileUtils.writeStringToFile(cached, "corrupt");
+		}
+
+		TokenValueTable table = new TokenValueMapCache(2).get(map.getPath(), true, false, ENCODING, directory,
+				loader);
+
+		assertThat(loader.loads, equalTo(2));
+		assertThat(table.getValue(0), equalTo("value"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void shouldMakeCachedTablesReadOnly() throws Exception {
+		TokenValueTable table = new TokenValueMapCache(2).get(map.getPath(), true, false, ENCODING, null, loader);
+
+		table.add("other", "value");
+	}
+
+	@Test
+	public void shouldRemoveLeastRecentlyUsedMapsBeyondMaxPairs() throws Exception {
+		TokenValueMapCache cache = new TokenValueMapCache(2);
+		File other = folder.newFile("other.properties");
+		File third = folder.newFile("third.properties");
+		TokenValueTable table = cache.get(map.getPath(), true, false, ENCODING, null, loader);
+		cache.get(other.getPath(), true, false, ENCODING, null, loader);
+		cache.get(map.getPath(), true, false, ENCODING, null, loader);
+
+		cache.get(third.getPath(), true, false, ENCODING, null, loader);
+
+		assertThat(cache.size(), equalTo(2));
+		assertThat(cache.pairs(), equalTo(2));
+		assertThat(cache.get(map.getPath(), true, false, ENCODING, null, loader), sameInstance(table));
+		assertThat(loader.loads, equalTo(3));
+	}
+
+	@Test
+	public void shouldNotCacheMapsWithMorePairsThanMax() throws Exception {
+		TokenValueMapCache cache = new TokenValueMapCache(1);
+		CountingLoader twoPairs = new CountingLoader("token", "value") {
+			@Override
+			public TokenValueTable load() throws IOException {
+				TokenValueTable table = super.load();
+				table.add("other", "value");
+				return table;
+			}
+		};
+
+		cache.get(map.getPath(), true, false, ENCODING, null, twoPairs);
+		TokenValueTable table = cache.get(map.getPath(), true, false, ENCODING, null, twoPairs);
+
+		assertThat(twoPairs.loads, equalTo(2));
+		assertThat(cache.size(), equalTo(0));
+		assertThat(table.isReadOnly(), equalTo(false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectNonPositiveSize() {
+		new TokenValueMapCache(0);
+	}
+
+	private static class CountingLoader implements TokenValueMapCache.Loader {
+		private final String token;
+		private final String value;
+		private int loads;
+
+		CountingLoader(String token, String value) {
+			this.token = token;
+			this.value = value;
+		}
+
+		public TokenValueTable load() throws IOException {
+			loads++;
+			TokenValueTable table = new TokenValueTable(null, ENCODING);
+			table.add(token, value);
+			return table;
+		}
+	}
+}
@@ -4,10 +4,15 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.StringReader;
 import java.util.List;
 
 import org.hamcrest.BaseMatcher;
@@ -40,7 +45,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldReturnReplacementsFromFile() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("token=value");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("token=value"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -51,7 +56,7 @@ public class TokenValueMapFactoryTest {
 
 	@Test
 	public void shouldReturnReplacementsFromFileAndIgnoreBlankLinesAndComments() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("\n  \ntoken1=value1\ntoken2 = value2\n#some comment\n");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("\n  \ntoken1=value1\ntoken2 = value2\n#some comment\n"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_ENABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -64,7 +69,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldReturnReplacementsFromFileAndIgnoreBlankLinesUsingCommentLinesIfCommentsDisabled() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("\n  \ntoken1=value1\ntoken2=value2\n#some=#comment\n");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("\n  \ntoken1=value1\ntoken2=value2\n#some=#comment\n"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -79,7 +84,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldIgnoreTokensWithNoSeparatedValue() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("#comment\ntoken2");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("#comment\ntoken2"));
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
 		assertTrue(replacements.isEmpty());
@@ -87,7 +92,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldReturnRegexReplacementsFromFile() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("\\=tok\\=en1=val\\=ue1\nto$ke..n2=value2");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("\\=tok\\=en1=val\\=ue1\nto$ke..n2=value2"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_ENABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -100,7 +105,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldReturnRegexReplacementsFromFileUnescaping() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("\\\\=tok\\\\=en1=val\\\\=ue1\nto$ke..n2=value2");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("\\\\=tok\\\\=en1=val\\\\=ue1\nto$ke..n2=value2"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_ENABLED, true, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -113,13 +118,13 @@ public class TokenValueMapFactoryTest {
 	
 	@Test (expected = IllegalArgumentException.class)
 	public void shouldThrowExceptionIfNoTokenForValue() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("=value");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("=value"));
 		factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 	}
 	
 	@Test
 	public void shouldSupportEmptyFileAndReturnNoReplacements() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader(""));
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
 		assertTrue(replacements.isEmpty());
@@ -144,6 +149,17 @@ public class TokenValueMapFactoryTest {
 		assertThat(replacements, hasItem(replacementWith("token1", "value1")));
 	}
 
+	@Test
+	public void shouldLoadFileIntoTokenValueTableUnescapingPairs() throws Exception {
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("a\\tb=c\\nd\ntoken=value"));
+
+		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, true, ENCODING);
+		assertTrue(replacements instanceof TokenValueTable);
+		assertThat(((TokenValueTable) replacements).valueOf("a\tb"), equalTo("c\nd"));
+		assertThat(replacements.get(1).getToken(), equalTo("token"));
+		assertThat(replacements.get(1).getEncoding(), equalTo(ENCODING));
+	}
+
 	private Matcher<Replacement> replacementWith(final String token, final String value) {
 		return new BaseMatcher<Replacement>() {
 			public boolean matches(Object o) {
@@ -156,4 +172,19 @@ public class TokenValueMapFactoryTest {
 			}
 		};
 	}
+
+	@Test
+	public void shouldLoadMapFilesOnceWhileUnchanged() throws Exception {
+		File file = File.createTempFile("tokens", ".properties");
+		file.deleteOnExit();
+		org.apache.commons.io.FileUtils.writeStringToFile(file, "token=value");
+		when(fileUtils.openReader(file.getPath(), ENCODING)).thenReturn(new StringReader("token=value"));
+		factory = new TokenValueMapFactory(fileUtils, new TokenValueMapCache(1));
+
+		List<Replacement> replacements = factory.replacementsForFile(file.getPath(), COMMENTS_DISABLED, false, ENCODING);
+
+		assertThat(factory.replacementsForFile(file.getPath(), COMMENTS_DISABLED, false, ENCODING),
+				sameInstance(replacements));
+		verify(fileUtils, times(1)).openReader(file.getPath(), ENCODING);
+	}
 }
@@ -0,0 +1,98 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class TokenValueTableTest {
+	private static final String ENCODING = "UTF-8";
+
+	private TokenValueTable table;
+
+	@Before
+	public void setUp() {
+		table = new TokenValueTable(new FileUtils(), ENCODING);
+	}
+
+	@Test
+	public void shouldLookUpTokensAcrossGrowth() {
+		for (int i = 0; i < 10000; i++) {
+			table.add("token" + i, "value" + i);
+		}
+
+		assertThat(table.size(), equalTo(10000));
+		assertThat(table.indexOfToken("token9999"), equalTo(9999));
+		assertThat(table.valueOf("token1234"), equalTo("value1234"));
+		assertThat(table.valueOf("missing"), nullValue());
+	}
+
+	@Test
+	public void shouldLookUpFirstOfRepeatedTokens() {
+		table.add("token", "first");
+		table.add("other", "value");
+		table.add("token", "second");
+
+		assertThat(table.size(), equalTo(3));
+		assertThat(table.valueOf("token"), equalTo("first"));
+		assertThat(table.getValue(2), equalTo("second"));
+	}
+
+	@Test
+	public void shouldReadAsPlainReplacements() {
+		table.add("token", "value");
+
+		Replacement replacement = table.get(0);
+		assertThat(replacement.getToken(), equalTo("token"));
+		assertThat(replacement.getValue(), equalTo("value"));
+		assertThat(replacement.getEncoding(), equalTo(ENCODING));
+		assertThat(replacement.getXpath(), nullValue());
+	}
+
+	@Test
+	public void shouldApplyEachDelimiterToEachPair() {
+		table.add("a", "1");
+		table.add("b", "2");
+
+		TokenValueTable delimited = table.withDelimiters(asList(new DelimiterBuilder("@"), new DelimiterBuilder("${*}")));
+		assertThat(delimited.size(), equalTo(4));
+		assertThat(delimited.getToken(0), equalTo("@a@"));
+		assertThat(delimited.getToken(1), equalTo("${a}"));
+		assertThat(delimited.getToken(3), equalTo("${b}"));
+		assertThat(delimited.valueOf("@b@"), equalTo("2"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void shouldRejectPairsOnceReadOnly() {
+		table.add("token", "value");
+		table.setReadOnly();
+
+		table.add("other", "value");
+	}
+
+	@Test
+	public void shouldKeepDelimitedTableOfReadOnlyTable() {
+		table.add("a", "1");
+		table.setReadOnly();
+
+		TokenValueTable delimited = table.withDelimiters(asList(new DelimiterBuilder("@")));
+
+		assertThat(table.withDelimiters(asList(new DelimiterBuilder("@"))), sameInstance(delimited));
+		assertThat(table.withDelimiters(asList(new DelimiterBuilder("${*}"))), not(sameInstance(delimited)));
+		assertThat(delimited.isReadOnly(), equalTo(true));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void shouldRejectPositionsOutsideTable() {
+		table.add("token", "value");
+
+		table.getToken(1);
+	}
+}
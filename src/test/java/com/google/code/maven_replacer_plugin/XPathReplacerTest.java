@@ -1,13 +1,24 @@
 package com.google.code.maven_replacer_plugin;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
 public class XPathReplacerTest {
 	private static final int NO_FLAGS = -1;
 	
@@ -92,4 +103,94 @@ public class XPathReplacerTest {
 			throw e;
 		}
 	}
+
+	@Test
+	public void shouldApplyGroupedReplacementsToOneParseAsIfAppliedOneAfterAnother() throws Exception {
+		List<Replacement> replacements = asList(
+				new Replacement(new FileUtils(), "<a>v</a>", "<a>v1</a>", false, "//a", null),
+				new Replacement(new FileUtils(), "old", "new", false, "/root/@id", null),
+				new Replacement(new FileUtils(), "v1", "w", false, "//a/text()", null));
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><root id=\"old\"><a>v</a><b>v</b></root>";
+
+		String sequential = xml;
+		for (Replacement each : replacements) {
+			sequential = new XPathReplacer(new TokenReplacer()).replace(sequential, each, false, NO_FLAGS);
+		}
+		String grouped = new XPathReplacer(new TokenReplacer()).replace(xml,
+				new GroupedReplacement(replacements, null, "3 xpath replacements"), false, NO_FLAGS);
+
+		assertThat(grouped, equalTo(sequential));
+		assertThat(grouped, containsString("<root id=\"new\"><a>w</a><b>v</b></root>"));
+	}
+
+	@Test
+	public void shouldReuseXmlProcessingAcrossReplacersAndThreads() throws Exception {
+		final Replacement replacement = new Replacement(new FileUtils(), "token", "value", false, "/root/@id", null);
+		final String xml = "<root id=\"token\"/>";
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 20; i++) {
+				results.add(executor.submit(new Callable<String>() {
+					public String call() {
+						return new XPathReplacer(new TokenReplacer()).replace(xml, replacement, false, NO_FLAGS);
+					}
+				}));
+			}
+			for (Future<String> result : results) {
+				assertThat(result.get(), containsString("<root id=\"value\"/>"));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldReplaceWithinMatchedElementsInPlace() throws Exception {
+		Replacement inPlace = new Replacement(new FileUtils(), "token", "value", false, "//item", null);
+		inPlace.setXpathInPlace(true);
+
+		String result = new XPathReplacer(new TokenReplacer()).replace("<root><item name=\"token\">token"
+				+ "<token>token</token><!--token--></item><other>token</other></root>", inPlace, false, NO_FLAGS);
+		assertThat(result, containsString("<root><item name=\"value\">value<token>value</token><!--value--></item>"
+				+ "<other>token</other></root>"));
+	}
+
+	@Test
+	public void shouldReplaceWithinRootElementInPlace() throws Exception {
+		Replacement inPlace = new Replacement(new FileUtils(), "token", "value", false, "/root", null);
+		inPlace.setXpathInPlace(true);
+
+		String result = new XPathReplacer(new TokenReplacer()).replace("<root>token</root>", inPlace, false, NO_FLAGS);
+		assertThat(result, containsString("<root>value</root>"));
+	}
+
+	@Test
+	public void shouldKeepFormattingOfUnchangedMarkupWhenPreservingFormat() throws Exception {
+		Replacement attribute = new Replacement(new FileUtils(), "token", "a<b", false, "/root/item/@name", null);
+		String xml = "<?xml version='1.0'?>\n<!-- header -->\n<root  b='1'   a=\"2\">\n"
+				+ "    <item name='token' />\n    <empty></empty>\n</root>\n";
+
+		String result = new XPathReplacer(new TokenReplacer(), true).replace(xml, attribute, false, NO_FLAGS);
+		assertThat(result, equalTo(xml.replace("'token'", "'a&lt;b'")));
+	}
+
+	@Test
+	public void shouldSpliceReplacedElementsAndTextWhenPreservingFormat() throws Exception {
+		Replacement element = new Replacement(new FileUtils(), "token", "value", false, "/root/a", null);
+		Replacement text = new Replacement(new FileUtils(), "token", "value", false, "/root/b/text()", null);
+		String xml = "<root>\n  <a  x='token'>token</a>\n  <b>token &amp; more</b>\n</root>";
+		XPathReplacer preserving = new XPathReplacer(new TokenReplacer(), true);
+
+		String result = preserving.replace(preserving.replace(xml, element, false, NO_FLAGS), text, false, NO_FLAGS);
+		assertThat(result, equalTo("<root>\n  <a x=\"value\">value</a>\n  <b>value &amp; more</b>\n</root>"));
+	}
+
+	@Test
+	public void shouldLeaveContentUntouchedWhenPreservingFormatAndNothingChanges() throws Exception {
+		Replacement missing = new Replacement(new FileUtils(), "token", "value", false, "/root/@missing", null);
+		String xml = "<root  a='1'/>";
+
+		assertThat(new XPathReplacer(new TokenReplacer(), true).replace(xml, missing, false, NO_FLAGS), equalTo(xml));
+	}
 }
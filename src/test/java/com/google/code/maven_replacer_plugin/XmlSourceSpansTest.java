@@ -0,0 +1,91 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+public class XmlSourceSpansTest {
+	private static final XmlSourceSpans.NodeSerializer NO_ELEMENTS = new XmlSourceSpans.NodeSerializer() {
+		public String serialize(Node node) {
+			throw new AssertionError("Unexpected element " + node);
+		}
+	};
+
+	@Test
+	public void shouldSpliceChangedNodesIntoSource() throws Exception {
+		String source = "<?xml version=\"1.0\"?>\n<!DOCTYPE root>\n<root a = \"1\" b='2'>\n"
+				+ "  <![CDATA[data]]><!--note--><?pi x?>text &amp; more\n</root>";
+		Document document = parse(source);
+		XmlSourceSpans spans = XmlSourceSpans.map(source, document);
+		assertThat(spans, notNullValue());
+
+		Element root = document.getDocumentElement();
+		Set<Node> changed = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		root.getAttributeNode("b").setValue("it's");
+		changed.add(root.getAttributeNode("b"));
+		for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.CDATA_SECTION_NODE) {
+				child.setNodeValue("x]]>y");
+			} else if (child.getNodeType() == Node.COMMENT_NODE) {
+				child.setNodeValue("changed");
+			} else if (child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().startsWith("text")) {
+				child.setNodeValue("a < b\n");
+			} else {
+				continue;
+			}
+			changed.add(child);
+		}
+
+		assertThat(spans.patch(changed, NO_ELEMENTS), equalTo("<?xml version=\"1.0\"?>\n<!DOCTYPE root>\n"
+				+ "<root a = \"1\" b='it&apos;s'>\n  <![CDATA[x]]]]><![CDATA[>y]]><!--changed--><?pi x?>a &lt; b\n</root>"));
+	}
+
+	@Test
+	public void shouldSpliceOnlyChangedPartOfNodesKeepingSourceAroundIt() throws Exception {
+		String source = "<root v=\"x\tq\" w=\"&#65;x\">\r\n<a>l1\r\nx &amp; &#169;\r\nl3</a><!--a\r\nx-->\r\n</root>\r\n";
+		Document document = parse(source);
+		XmlSourceSpans spans = XmlSourceSpans.map(source, document);
+		Element root = document.getDocumentElement();
+		Set<Node> changed = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		for (String name : asList("v", "w")) {
+			root.getAttributeNode(name).setValue(root.getAttribute(name).replace("x", "Y"));
+			changed.add(root.getAttributeNode(name));
+		}
+		Node text = root.getElementsByTagName("a").item(0).getFirstChild();
+		text.setNodeValue(text.getNodeValue().replace("x", "Y"));
+		changed.add(text);
+		Node comment = root.getElementsByTagName("a").item(0).getNextSibling();
+		comment.setNodeValue(comment.getNodeValue().replace("x", "Y"));
+		changed.add(comment);
+
+		assertThat(spans.patch(changed, NO_ELEMENTS), equalTo(source.replace("x", "Y")));
+	}
+
+	@Test
+	public void shouldNotMapDocumentsWithDeclaredEntities() throws Exception {
+		String source = "<!DOCTYPE root [<!ENTITY e \"entity\">]><root>&e;</root>";
+
+		assertThat(XmlSourceSpans.map(source, parse(source)), nullValue());
+	}
+
+	private static Document parse(String source) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setExpandEntityReferences(false);
+		return factory.newDocumentBuilder().parse(new InputSource(new StringReader(source)));
+	}
+}
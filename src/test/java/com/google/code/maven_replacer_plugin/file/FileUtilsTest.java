@@ -5,6 +5,7 @@ import static org.apache.commons.lang.StringUtils.join;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.text.StringStartsWith.startsWith;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -12,8 +13,11 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.UUID;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -42,6 +46,15 @@ public class FileUtilsTest {
 		assertFalse(fileUtils.fileNotExists(file.getAbsolutePath()));
 	}
 
+	@Test
+	public void shouldTellWhetherNamesStandForSameFile() throws Exception {
+		File file = folder.newFile("tempfile");
+		File other = folder.newFile("other");
+
+		assertTrue(fileUtils.isSameFile(file.getPath(), folder.getRoot() + "/./tempfile"));
+		assertFalse(fileUtils.isSameFile(file.getPath(), other.getPath()));
+	}
+
 	@Test
 	public void shouldEnsureFileFolderExists() throws Exception {
 		String tempFile = System.getProperty("java.io.tmpdir") + "/" + UUID.randomUUID() + "/tempfile";
@@ -95,6 +108,63 @@ public class FileUtilsTest {
 		assertThat(data, equalTo("test\n123\\t456"));
 	}
 	
+	@Test
+	public void shouldStreamThroughTempFileAndMoveItOverOutput() throws Exception {
+		File output = new File(folder.getRoot(), "dir/output");
+		String tempFile = fileUtils.createTempFileFor(output.getPath());
+		assertThat(new File(tempFile).getParentFile(), equalTo(output.getParentFile().getAbsoluteFile()));
+
+		Writer writer = fileUtils.openWriter(tempFile, "UTF-8");
+		writer.write(NON_ASCII_CONTENT);
+		writer.close();
+		fileUtils.moveFile(tempFile, output.getPath());
+
+		assertFalse(new File(tempFile).exists());
+		assertThat(fileUtils.fileSize(output.getPath()), equalTo((long) NON_ASCII_CONTENT.getBytes("UTF-8").length));
+		Reader reader = fileUtils.openReader(output.getPath(), "UTF-8");
+		assertThat(IOUtils.toString(reader), equalTo(NON_ASCII_CONTENT));
+		reader.close();
+	}
+
+	@Test
+	public void shouldMapFilesWithOneOrTwoBytesPerCharacter() throws Exception {
+		String tempFile = folder.newFile("mapped").getPath();
+		fileUtils.writeToFile(tempFile, "caf\u00e9", "ISO-8859-1");
+		assertThat(fileUtils.mapFile(tempFile, "ISO-8859-1").toString(), equalTo("caf\u00e9"));
+
+		fileUtils.writeToFile(tempFile, NON_ASCII_CONTENT, FileUtils.MAPPED_TEMP_ENCODING);
+		assertThat(fileUtils.mapFile(tempFile, FileUtils.MAPPED_TEMP_ENCODING).toString(), equalTo(NON_ASCII_CONTENT));
+
+		fileUtils.writeToFile(tempFile, CONTENT, "UTF-8");
+		assertThat(fileUtils.mapFile(tempFile, "UTF-8").toString(), equalTo(CONTENT));
+	}
+
+	@Test
+	public void shouldNotMapFilesWithVariableBytesPerCharacter() throws Exception {
+		String tempFile = folder.newFile("mapped").getPath();
+		fileUtils.writeToFile(tempFile, NON_ASCII_CONTENT, "UTF-8");
+		assertThat(fileUtils.mapFile(tempFile, "UTF-8"), nullValue());
+		assertThat(fileUtils.mapFile(tempFile, "UTF-16"), nullValue());
+		assertThat(fileUtils.mapFile(tempFile, "no-such-encoding"), nullValue());
+	}
+
+	@Test
+	public void shouldCompareFileContent() throws Exception {
+		String file = folder.newFile("existing").getPath();
+		String otherFile = folder.newFile("other").getPath();
+		fileUtils.writeToFile(file, NON_ASCII_CONTENT, "UTF-8");
+
+		assertTrue(fileUtils.hasContent(file, NON_ASCII_CONTENT, "UTF-8"));
+		assertFalse(fileUtils.hasContent(file, NON_ASCII_CONTENT, "UTF-16"));
+		assertFalse(fileUtils.hasContent(file, CONTENT, "UTF-8"));
+		assertFalse(fileUtils.hasContent(file + ".missing", NON_ASCII_CONTENT, "UTF-8"));
+
+		assertFalse(fileUtils.haveSameContent(file, otherFile));
+		fileUtils.writeToFile(otherFile, NON_ASCII_CONTENT, "UTF-8");
+		assertTrue(fileUtils.haveSameContent(file, otherFile));
+		assertFalse(fileUtils.haveSameContent(file, otherFile + ".missing"));
+	}
+
 	@Test
 	public void shouldReturnFilenameWhenJustFilenameParam() {
 		String result = fileUtils.createFullPath("tempFile");
@@ -0,0 +1,47 @@
+package com.google.code.maven_replacer_plugin.file;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.nio.ByteBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class MappedCharSequenceTest {
+
+	@Test
+	public void shouldDecodeSingleByteCharacters() throws Exception {
+		MappedCharSequence chars = sequence("café menu", "ISO-8859-1", 1);
+		assertThat(chars.length(), equalTo(9));
+		assertThat(chars.charAt(3), equalTo('é'));
+		assertThat(chars.subSequence(5, 9).toString(), equalTo("menu"));
+		assertThat(chars.subSequence(2, 9).subSequence(0, 2).toString(), equalTo("fé"));
+	}
+
+	@Test
+	public void shouldDecodeTwoByteCharacters() throws Exception {
+		MappedCharSequence chars = sequence("한국어 text", FileUtils.MAPPED_TEMP_ENCODING, 2);
+		assertThat(chars.length(), equalTo(8));
+		assertThat(chars.charAt(1), equalTo('국'));
+		assertThat(chars.toString(), equalTo("한국어 text"));
+	}
+
+	@Test
+	public void shouldLetMatcherRunOverCharacters() throws Exception {
+		Matcher matcher = Pattern.compile("v(\\d+)").matcher(sequence("name v12 end", "ISO-8859-1", 1));
+		assertThat(matcher.find(), equalTo(true));
+		assertThat(matcher.group(1), equalTo("12"));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void shouldRejectIndexesOutsideSequence() throws Exception {
+		sequence("abc", "ISO-8859-1", 1).subSequence(1, 3).charAt(2);
+	}
+
+	private MappedCharSequence sequence(String text, String encoding, int bytesPerChar) throws Exception {
+		ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(encoding));
+		return new MappedCharSequence(new ByteBuffer[] { bytes }, bytesPerChar, bytes.limit() / bytesPerChar);
+	}
+}
@@ -8,7 +8,9 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
@@ -55,4 +57,43 @@ public class FileSelectorTest {
 		List<String> files = selector.listIncludes(BACK_DIR_SYMBOL, asList(TEST_FILE), null);
 		assertThat(files, equalTo(asList(TEST_FILE)));
 	}
+
+	@Test
+	public void shouldSelectSameFilesWithNioScanner() {
+		selector.setScanner("nio");
+		selector.setParallelism(2);
+
+		assertThat(selector.listIncludes(BASE_DIR, asList("include1", "file*"), asList("file3")),
+				equalTo(asList("file1", "file2", "include1")));
+		assertThat(selector.listIncludes(BASE_DIR, asList("include1", "file*"), null),
+				equalTo(asList("file1", "file2", "file3", "include1")));
+	}
+
+	@Test
+	public void shouldSelectIncludesAsFound() {
+		selector.setScanner("nio");
+		Iterator<String> found = selector.selectIncludes(BASE_DIR, asList("include1", "file*"), asList("file3"));
+		List<String> files = new ArrayList<String>();
+		while (found.hasNext()) {
+			files.add(found.next());
+		}
+		Collections.sort(files);
+
+		assertThat(files, equalTo(asList("file1", "file2", "include1")));
+	}
+
+	@Test
+	public void shouldSelectIncludesOnceAllFoundWithAntScanner() {
+		Iterator<String> found = selector.selectIncludes(BASE_DIR, asList("include1", "file*"), asList("file3"));
+
+		assertThat(found.next(), equalTo("file1"));
+		assertThat(found.next(), equalTo("file2"));
+		assertThat(found.next(), equalTo("include1"));
+		assertThat(found.hasNext(), is(false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectUnknownScanner() {
+		selector.setScanner("other");
+	}
 }
\ No newline at end of file
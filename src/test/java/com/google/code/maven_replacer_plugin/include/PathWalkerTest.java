@@ -0,0 +1,132 @@
+package com.google.code.maven_replacer_plugin.include;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PathWalkerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String basedir;
+
+	@Before
+	public void setUp() throws Exception {
+		basedir = folder.getRoot().getPath();
+		for (String file : asList("a.txt", "b.xml", "src/c.txt", "src/main/d.txt", "src/main/e.xml",
+				"node_modules/lib/f.txt", "web/node_modules/g.txt", "web/h.txt")) {
+			FileUtils.writeStringToFile(new File(folder.getRoot(), file), file);
+		}
+	}
+
+	@Test
+	public void shouldSelectSameFilesAsAnt() {
+		assertSameAsAnt(asList("**/*.txt"), null);
+		assertSameAsAnt(asList("**/*.txt"), asList("**/node_modules/**"));
+		assertSameAsAnt(asList("src/"), asList("**/*.xml"));
+		assertSameAsAnt(asList("src\\main\\*", "*.xml"), Collections.<String>emptyList());
+		assertSameAsAnt(asList("**"), asList("node_modules/", "web/**/g.txt"));
+		assertSameAsAnt(asList("*/*.txt", "**/lib/*"), asList("web/*"));
+	}
+
+	@Test
+	public void shouldSelectFilesRelativeToBasedirInOrder() {
+		List<String> files = new PathWalker(basedir, asList("**/*.txt"), asList("**/node_modules/**")).walk(1);
+
+		assertThat(files, equalTo(asList("a.txt", path("src", "c.txt"), path("src", "main", "d.txt"),
+				path("web", "h.txt"))));
+	}
+
+	@Test
+	public void shouldWalkInParallel() {
+		List<String> files = new PathWalker(basedir, asList("**"), null).walk(4);
+
+		assertThat(files, equalTo(new PathWalker(basedir, asList("**"), null).walk(1)));
+		assertThat(files.size(), equalTo(8));
+	}
+
+	@Test
+	public void shouldNotFollowLinksBackIntoDirectoriesBeingWalked() throws Exception {
+		Files.createSymbolicLink(new File(folder.getRoot(), "src/main/loop").toPath(), folder.getRoot().toPath());
+		Files.createSymbolicLink(new File(folder.getRoot(), "linked").toPath(),
+				new File(folder.getRoot(), "web").toPath());
+
+		List<String> files = new PathWalker(basedir, asList("**/*.txt"), asList("**/node_modules/**")).walk(2);
+
+		assertThat(files, equalTo(asList("a.txt", path("linked", "h.txt"), path("src", "c.txt"),
+				path("src", "main", "d.txt"), path("web", "h.txt"))));
+	}
+
+	@Test
+	public void shouldStreamFilesAsFound() throws Exception {
+		Iterator<String> stream = new PathWalker(basedir, asList("**"), asList("**/node_modules/**")).stream(2);
+		List<String> files = new ArrayList<String>();
+		while (stream.hasNext()) {
+			files.add(stream.next());
+		}
+		Collections.sort(files);
+
+		assertThat(files, equalTo(new PathWalker(basedir, asList("**"), asList("**/node_modules/**")).walk(1)));
+		assertThat(stream.hasNext(), equalTo(false));
+		((Closeable) stream).close();
+	}
+
+	@Test
+	public void shouldStreamMoreFilesThanAreHeldWaiting() throws Exception {
+		for (int i = 0; i < 1500; i++) {
+			FileUtils.writeStringToFile(new File(folder.getRoot(), "many/" + (i % 10) + "/file" + i), "");
+		}
+		Iterator<String> stream = new PathWalker(basedir, asList("many/**"), null).stream(3);
+		int count = 0;
+		for (; stream.hasNext(); stream.next()) {
+			count++;
+		}
+
+		assertThat(count, equalTo(1500));
+	}
+
+	@Test
+	public void shouldStopWalkWhenStreamClosed() throws Exception {
+		for (int i = 0; i < 1500; i++) {
+			FileUtils.writeStringToFile(new File(folder.getRoot(), "many/file" + i), "");
+		}
+		Iterator<String> stream = new PathWalker(basedir, asList("many/**"), null).stream(1);
+
+		assertThat(stream.hasNext(), equalTo(true));
+		stream.next();
+		((Closeable) stream).close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldRejectMissingBasedir() {
+		new PathWalker(new File(basedir, "missing").getPath(), asList("**"), null).walk(1);
+	}
+
+	private void assertSameAsAnt(List<String> includes, List<String> excludes) {
+		FileSelector ant = new FileSelector();
+		assertThat(new PathWalker(basedir, includes, excludes).walk(2),
+				equalTo(ant.listIncludes(basedir, includes, excludes)));
+	}
+
+	private static String path(String... names) {
+		StringBuilder path = new StringBuilder(names[0]);
+		for (int i = 1; i < names.length; i++) {
+			path.append(File.separator).append(names[i]);
+		}
+		return path.toString();
+	}
+}